@@ -2,6 +2,7 @@ package develop.services.funkos;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 import develop.exceptions.storage.RutaInvalidaException;
 import develop.models.Funko;
 import develop.models.Model;
@@ -12,19 +13,32 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
 import java.util.UUID;
+import java.util.zip.GZIPOutputStream;
 
 public class FunkoStorageImpl implements FunkoStorage {
+    private static final int BUFFER_SIZE = 64 * 1024;
     private final Logger logger = LoggerFactory.getLogger(FunkoStorageImpl.class);
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+            .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+            .registerTypeAdapter(UUID.class, new UuidAdapter())
+            .create();
     private static FunkoStorageImpl instance;
 
     private FunkoStorageImpl() {}
@@ -36,40 +50,107 @@ public class FunkoStorageImpl implements FunkoStorage {
         return instance;
     }
 
+    /**
+     * Exporta los Funkos a un archivo JSON de la carpeta data a medida que llegan, escribiendo cada uno con un
+     * JsonWriter sobre un FileChannel con buffer, asi que la memoria usada no depende del numero de Funkos.
+     * Si el nombre termina en .json.gz el archivo se comprime con gzip.
+     * Se escribe en un archivo temporal de la misma carpeta que se mueve al destino al terminar, de forma que
+     * nunca queda un respaldo a medias: si falla la exportacion el temporal se borra y el archivo anterior se conserva.
+     *
+     * @param data Funkos que se exportan.
+     * @param file Nombre del archivo (.json o .json.gz).
+     * @return Un Mono que termina cuando el archivo esta escrito.
+     */
     @Override
-    public Mono<Void> exportJson(List<Funko> data, String file) {
-        return Mono.fromCallable(() -> {
-                    if (!validarRuta(file)) {
-                        logger.error("Ruta de fichero invalida: " + file);
-                        throw new RutaInvalidaException("Ruta de fichero invalida: " + file);
-                    } else {
-                        String appPath = System.getProperty("user.dir");
-                        String dataPath = appPath + File.separator + "data";
-                        String backupFile = dataPath + File.separator + file;
-                        Gson gson = new GsonBuilder()
-                                .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
-                                .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
-                                .registerTypeAdapter(UUID.class, new UuidAdapter())
-                                .setPrettyPrinting()
-                                .create();
-                        String json = gson.toJson(data);
-                        logger.debug("Escribiendo el archivo backup: " + backupFile);
-                        Files.writeString(new File(backupFile).toPath(), json);
-                    }
-                    return null;
-                })
-                .onErrorMap(e -> {
-                    if (e instanceof RutaInvalidaException) {
-                        return e;
-                    }
-                    return new RuntimeException("Error al escribir el archivo de respaldo", e);
-                })
+    public Mono<Void> exportJson(Flux<Funko> data, String file) {
+        if (!validarRuta(file)) {
+            logger.error("Ruta de fichero invalida: " + file);
+            return Mono.error(new RutaInvalidaException("Ruta de fichero invalida: " + file));
+        }
+        Path backupFile = Paths.get(System.getProperty("user.dir"), "data", file);
+        return Mono.using(
+                        () -> new JsonExport(backupFile, isGzip(file)),
+                        export -> data.publishOn(Schedulers.boundedElastic())
+                                .doOnNext(export::write)
+                                .then(Mono.fromRunnable(export::commit)),
+                        JsonExport::close
+                )
+                .onErrorMap(e -> new RuntimeException("Error al escribir el archivo de respaldo", e))
                 .then();
     }
 
+    /**
+     * Escritura de un respaldo JSON en un archivo temporal que solo se mueve al destino con {@link #commit()}.
+     */
+    private class JsonExport {
+        private final Path target;
+        private final Path temp;
+        private final FileChannel channel;
+        private final BufferedOutputStream buffer;
+        private final GZIPOutputStream gzip;
+        private final JsonWriter writer;
+        private boolean committed = false;
+
+        JsonExport(Path target, boolean gzip) throws IOException {
+            this.target = target;
+            this.temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            this.channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.buffer = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+            this.gzip = gzip ? new GZIPOutputStream(buffer, BUFFER_SIZE) : null;
+            this.writer = new JsonWriter(new OutputStreamWriter(gzip ? this.gzip : buffer, StandardCharsets.UTF_8));
+            writer.setIndent("  ");
+            writer.beginArray();
+            logger.debug("Escribiendo el archivo backup: " + target);
+        }
+
+        void write(Funko funko) {
+            gson.toJson(funko, Funko.class, writer);
+        }
+
+        void commit() {
+            try {
+                writer.endArray();
+                writer.flush();
+                if (gzip != null) {
+                    gzip.finish();
+                }
+                buffer.flush();
+                channel.force(true);
+                writer.close();
+                try {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                committed = true;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void close() {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.debug("Error al cerrar el archivo temporal: " + e.getMessage());
+            }
+            if (!committed) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    logger.error("No se pudo borrar el archivo temporal: " + temp);
+                }
+            }
+        }
+    }
+
+    private boolean isGzip(String ruta) {
+        return ruta.toLowerCase().endsWith(".json.gz");
+    }
+
     private boolean validarRuta(String ruta) {
         String[] partes = ruta.split("\\.");
-        if(partes.length > 1 && partes[partes.length - 1].equalsIgnoreCase("json")) {
+        if (isGzip(ruta) || partes.length > 1 && partes[partes.length - 1].equalsIgnoreCase("json")) {
             return true;
         } else {
             return false;
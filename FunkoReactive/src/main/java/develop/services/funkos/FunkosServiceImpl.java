@@ -13,7 +13,6 @@ import reactor.core.publisher.Mono;
 import java.io.*;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
 import java.util.UUID;
 
 public class FunkosServiceImpl implements FunkosService {
@@ -133,8 +132,7 @@ public class FunkosServiceImpl implements FunkosService {
 
     public Mono<Void> exportFile(String file) throws IOException {
         logger.debug("Exportando archivos a Json");
-        List<Funko> funkoList = funkosRepository.findAll().collectList().block();
-        return storage.exportJson(funkoList, file);
+        return storage.exportJson(funkosRepository.findAll(), file);
     }
 
     public Flux<Notificacion<Funko>> getNotifications() {
@@ -7,12 +7,29 @@ import reactor.core.publisher.Mono;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
 
 
 public interface Storage<T> {
 
-    Mono<Void> exportJson(List<T> data, String file) throws IOException;
+    /**
+     * Exporta una lista de elementos a un archivo JSON.
+     *
+     * @param data Elementos que se exportan.
+     * @param file Nombre del archivo.
+     * @return Un Mono que termina cuando el archivo esta escrito.
+     */
+    default Mono<Void> exportJson(List<T> data, String file) throws IOException {
+        return exportJson(Flux.fromIterable(data), file);
+    }
+
+    /**
+     * Exporta a un archivo JSON los elementos a medida que los emite el Flux, sin guardarlos todos en memoria.
+     *
+     * @param data Elementos que se exportan.
+     * @param file Nombre del archivo (.json, o .json.gz para comprimirlo con gzip).
+     * @return Un Mono que termina cuando el archivo esta escrito.
+     */
+    Mono<Void> exportJson(Flux<T> data, String file);
 
     Flux<T> importCsv() throws IOException;
 }
\ No newline at end of file
@@ -264,14 +264,15 @@ class FunkoServiceImplTest {
         );
 
         // Cuando se llame al método al repositorio simulamos...
-        when(repository.findAll()).thenReturn(Flux.fromIterable(funkos));
-        when(storage.exportJson(funkos, file)).thenReturn(Mono.empty());
+        var flux = Flux.fromIterable(funkos);
+        when(repository.findAll()).thenReturn(flux);
+        when(storage.exportJson(flux, file)).thenReturn(Mono.empty());
 
         // Act
         service.exportFile(file).block();
 
-        // Comprobamos que se ha llamado al método del repositorio y del almacenamiento
-        verify(storage, times(1)).exportJson(funkos, file);
+        // Comprobamos que se pasa el Flux del repositorio al almacenamiento, sin reunirlo en una lista
+        verify(storage, times(1)).exportJson(flux, file);
         verify(repository, times(1)).findAll();
     }
 
@@ -1,5 +1,7 @@
 package develop.services;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
 import develop.exceptions.storage.RutaInvalidaException;
 import develop.models.Funko;
 import develop.models.IdGenerator;
@@ -12,9 +14,16 @@ import develop.services.funkos.FunkoStorageImpl;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.SQLException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -22,6 +31,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -113,4 +123,52 @@ public class FunkoStorageTest {
         String expectedMessage = "Ruta de fichero invalida: "+ rutaInvalida;
         assertTrue(exception.getMessage().contains(expectedMessage));
     }
+
+    @Test
+    void exportFunkosJsonGzip() throws IOException {
+        File f = new File(System.getProperty("user.dir") + File.separator + "data" + File.separator + "funkos_test.json.gz");
+
+        Flux<Funko> funkos = Flux.range(1, 1000).map(i -> Funko.builder()
+                .id((long) i)
+                .COD(UUID.randomUUID())
+                .name("Test-" + i)
+                .model(Model.OTROS)
+                .price(19.99)
+                .releaseData(LocalDate.of(2020, 1, 1))
+                .build());
+
+        funkosStorage.exportJson(funkos, "funkos_test.json.gz").block(); // Exportamos a un archivo comprimido
+
+        // Leemos el archivo descomprimido y comprobamos que tiene todos los funkos
+        try (var reader = new InputStreamReader(new GZIPInputStream(new FileInputStream(f)), StandardCharsets.UTF_8)) {
+            JsonArray json = JsonParser.parseReader(reader).getAsJsonArray();
+            assertAll(() -> assertEquals(1000, json.size()),
+                    () -> assertEquals("Test-1000", json.get(999).getAsJsonObject().get("name").getAsString())
+            );
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    void exportFunkosJsonErrorConservaElArchivoAnterior() throws IOException {
+        Path data = Paths.get(System.getProperty("user.dir"), "data");
+        Path f = data.resolve("funkos_test_error.json");
+        Files.writeString(f, "[]"); // Respaldo anterior
+
+        Flux<Funko> funkos = Flux.concat(
+                Flux.just(Funko.builder().id(1L).COD(UUID.randomUUID()).name("Test-1").model(Model.OTROS).price(19.99).releaseData(LocalDate.of(2020, 1, 1)).build()),
+                Flux.error(new IllegalStateException("Error en la base de datos"))
+        );
+
+        // Si falla a mitad de la exportacion el respaldo anterior no se toca y no quedan archivos temporales
+        assertThrows(RuntimeException.class, () -> funkosStorage.exportJson(funkos, "funkos_test_error.json").block());
+        try (var files = Files.list(data)) {
+            assertAll(() -> assertEquals("[]", Files.readString(f)),
+                    () -> assertTrue(files.noneMatch(p -> p.getFileName().toString().endsWith(".tmp")))
+            );
+        } finally {
+            Files.delete(f);
+        }
+    }
 }
@@ -1,7 +1,7 @@
 plugins {
     id("java")
     //shadowjar
-    id("com.github.johnrengelman.shadow") version "7.1.2"
+    id("com.github.johnrengelman.shadow") version "8.1.1"
 }
 
 group = "develop"
@@ -38,11 +38,15 @@ dependencies {
 }
 
 
+// Java 21 para poder atender cada conexion con un hilo virtual
+java {
+    toolchain {
+        languageVersion.set(JavaLanguageVersion.of(21))
+    }
+}
+
 tasks.withType<JavaCompile> {
     options.encoding = "UTF-8"
-    // version para compilar y ejecutar en Java 11, subir a 17
-    sourceCompatibility = "17"
-    targetCompatibility = "17"
 }
 /*
 tasks.jar {
@@ -2,9 +2,11 @@ package develop.client;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
 import develop.client.exceptions.ClientException;
 import develop.common.models.*;
+import develop.common.protocol.BinaryCodec;
+import develop.common.protocol.FrameReader;
+import develop.common.protocol.WireCodec;
 import develop.common.utils.LocalDateAdapter;
 import develop.common.utils.LocalDateTimeAdapter;
 import develop.common.utils.PropertiesReader;
@@ -41,9 +43,11 @@ public class Client {
             .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
             .registerTypeAdapter(java.util.UUID.class, new UuidAdapter()).create();
     private SSLSocket socket;
-    private PrintWriter out;
-    private BufferedReader in;
+    private OutputStream out;
+    private FrameReader in;
+    private WireCodec codec;
     private String token;
+    private long lastRequestId = 0;
 
     /**
      * Metodo principal que inicia la aplicacion del cliente y si hay un error se muestra en
@@ -85,6 +89,9 @@ public class Client {
             // Enviamos el Request para Obtener funko por id
             sendRequestGetFunkoById(token, "1");
 
+            // Enviamos varias peticiones seguidas por la misma conexion sin esperar a las respuestas
+            sendRequestsGetFunkosByIdPipelined(token, List.of("2", "3", "4", "5", "6"));
+
             // Enviamos ahora 4 request para guardar 4 funkos
             sendRequestPostFunko(token, Funko.builder().releaseData(LocalDate.of(2022, 1,1)).cod(UUID.randomUUID()).id(92L).name("Maria").price(9.0).model(Model.OTROS).build());
             sendRequestPostFunko(token,Funko.builder().releaseData(LocalDate.of(2022, 1,1)).cod(UUID.randomUUID()).id(93L).name("Juan").price(9.0).model(Model.OTROS).build());
@@ -112,12 +119,27 @@ public class Client {
             // Enviamos Request para borrar funko con if 1 (este nos dara error ya que hemos borrado el funko con id 91)
             sendRequestDeleteFunko(token, "91");
 
+            // Enviamos un lote de 3 funkos en una sola peticion y despues los borramos, junto a un id que no existe
+            var savedIds = sendRequestBatchPostFunkos(token, List.of(
+                    Funko.builder().releaseData(LocalDate.of(2023, 3, 1)).cod(UUID.randomUUID()).name("Lote-1").price(5.0).model(Model.MARVEL).build(),
+                    Funko.builder().releaseData(LocalDate.of(2023, 3, 2)).cod(UUID.randomUUID()).name("Lote-2").price(6.0).model(Model.DISNEY).build(),
+                    Funko.builder().releaseData(LocalDate.of(2023, 3, 3)).cod(UUID.randomUUID()).name("Lote-3").price(7.0).model(Model.ANIME).build()));
+            var idsToDelete = new ArrayList<>(savedIds);
+            idsToDelete.add(9999L);
+            sendRequestBatchDeleteFunkos(token, idsToDelete);
+
+            // Renovamos el token (y la sesion de la conexion si el servidor la usa) antes de que expire
+            token = sendRequestReauth(token);
+
             // Evniamos Request para obtener todos los Funkos
             sendRequestGetAllFunkos(token);
 
             // Enviamos Request para obtener Funkos por su Año de creacion siendo este 2023
             sendRequestGetFunkoByReleaseData(token, "2023");
 
+            // Recorremos todos los Funkos por paginas de 40 siguiendo el cursor que devuelve el servidor
+            sendRequestGetFunkosByPages(token, 40);
+
             // Finalmente enviamos Request para desloguearnos
             sendRequestSalir();
         } catch (ClientException ex) {
@@ -137,8 +159,6 @@ public class Client {
     private void closeConnection() throws IOException {
         logger.debug("Cerrando la conexión con el servidor: " + HOST + ":" + PORT);
         System.out.println("🔵 Cerrando Cliente");
-        if (in != null)
-            in.close();
         if (out != null)
             out.close();
         if (socket != null)
@@ -166,12 +186,49 @@ public class Client {
 
         logger.debug("Conectando al servidor: " + HOST + ":" + PORT);
 
-        out = new PrintWriter(socket.getOutputStream(), true);
-        in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        codec = WireCodec.forName(myConfig.get("protocol"));
+        out = new BufferedOutputStream(socket.getOutputStream());
+        InputStream input = socket.getInputStream();
+        if (codec instanceof BinaryCodec) {
+            // Pedimos el protocolo binario y esperamos a que el servidor lo confirme
+            out.write(WireCodec.BINARY_MAGIC);
+            out.flush();
+            if (input.read() != (WireCodec.BINARY_MAGIC & 0xFF)) {
+                throw new IOException("El servidor no acepta el protocolo binario");
+            }
+        }
+        in = new FrameReader(input, codec);
+        logger.debug("Protocolo: " + myConfig.get("protocol"));
         System.out.println("✅ Cliente conectado a " + HOST + ":" + PORT);
         infoSession(socket);
 
     }
+    /**
+     * Envia una peticion al servidor con el protocolo de la conexion.
+     *
+     * @param request La peticion.
+     * @throws IOException Si ocurre un error durante la comunicacion con el servidor.
+     */
+    private void send(Request request) throws IOException {
+        out.write(codec.encodeRequest(request));
+        out.flush();
+    }
+
+    /**
+     * Espera la siguiente respuesta del servidor.
+     *
+     * @return La respuesta recibida.
+     * @throws IOException     Si ocurre un error durante la comunicacion con el servidor.
+     * @throws ClientException Si el servidor ha cerrado la conexion.
+     */
+    private Response receive() throws IOException, ClientException {
+        byte[] frame = in.readFrame();
+        if (frame == null) {
+            throw new ClientException("El servidor ha cerrado la conexión");
+        }
+        return codec.decodeResponse(frame);
+    }
+
     /**
      * Envia una solicitud de inicio de sesion al servidor y almacena el token devuelto.
      *
@@ -185,11 +242,9 @@ public class Client {
         System.out.println("Petición enviada de tipo: " + LOGIN);
         logger.debug("Petición enviada: " + request);
 
-        out.println(gson.toJson(request));
-
         try {
-            Response response = gson.fromJson(in.readLine(), new TypeToken<Response>() {
-            }.getType());
+            send(request);
+            Response response = receive();
 
             logger.debug("Respuesta recibida: " + response.toString());
 
@@ -208,8 +263,41 @@ public class Client {
         }
         return myToken;
     }
+    /**
+     * Envia una solicitud para renovar la autenticacion con el token actual y devuelve el token nuevo.
+     *
+     * @param currentToken El token actual, aun valido.
+     * @return El token nuevo, o el actual si no se ha podido renovar.
+     * @throws IOException     Si ocurre un error durante la comunicacion con el servidor.
+     * @throws ClientException Si se recibe una respuesta inesperada del servidor.
+     */
+    private String sendRequestReauth(String currentToken) throws IOException, ClientException {
+        Request request = new Request(REAUTH, null, currentToken, LocalDateTime.now().toString());
+        System.out.println("Petición enviada de tipo: " + REAUTH);
+        logger.debug("Petición enviada: " + request);
+
+        send(request);
+
+        Response response = receive();
+        logger.debug("Respuesta recibida: " + response.toString());
+        System.out.println("Respuesta recibida de tipo: " + response.status());
+
+        switch (response.status()) {
+            case TOKEN -> {
+                System.out.println("🟢 Mi nuevo token es: " + response.content());
+                return response.content();
+            }
+            case ERROR -> {
+                System.err.println("🔴 Error: " + response.content());
+                return currentToken;
+            }
+            default -> throw new ClientException("Tipo de respuesta no esperado: " + response.content());
+        }
+    }
+
     /**
      * Envia una solicitud al servidor para obtener todos los Funkos disponibles.
+     * La respuesta llega por streaming (cabecera, fragmentos y fin) y se muestra segun se recibe cada fragmento.
      *
      * @param token El token de autenticacion del cliente.
      * @throws ClientException Si se recibe una respuesta inesperada del servidor.
@@ -220,21 +308,37 @@ public class Client {
         System.out.println("Petición enviada de tipo: " + GETALL);
         logger.debug("Petición enviada: " + request);
 
-        out.println(gson.toJson(request));
+        send(request);
 
-        Response response = gson.fromJson(in.readLine(), new TypeToken<Response>() {
-        }.getType());
+        Response response = receive();
         logger.debug("Respuesta recibida: " + response.toString());
 
         System.out.println("Respuesta recibida de tipo: " + response.status());
 
         switch (response.status()) {
-            case OK -> {
-                List<Funko> responseContent = gson.fromJson(response.content(), new TypeToken<List<Funko>>() {
-                }.getType());
-                System.out.println("🟢 Los funkos son: " + responseContent);
+            case STREAM -> {
+                System.out.println("🟢 Los funkos son: ");
+                while (true) {
+                    Response chunk = receive();
+                    switch (chunk.status()) {
+                        case CHUNK -> {
+                            List<Funko> funkos = codec.decodeFunkos(chunk.content());
+                            funkos.forEach(funko -> System.out.println("   " + funko));
+                        }
+                        case END -> {
+                            System.out.println("🟢 Total de funkos recibidos: " + chunk.content());
+                            return;
+                        }
+                        case ERROR -> {
+                            System.err.println("🔴 Error: " + chunk.content());
+                            return;
+                        }
+                        default -> throw new ClientException("Fragmento no esperado al obtener los funkos: " + chunk.status());
+                    }
+                }
             }
             case ERROR -> System.err.println("🔴 Error: " + response.content());
+            default -> throw new ClientException("Error no esperado al obtener los funkos");
         }
     }
 
@@ -251,17 +355,15 @@ public class Client {
         System.out.println("Petición enviada de tipo: " + GETBYID);
         logger.debug("Petición enviada: " + request);
 
-        out.println(gson.toJson(request));
+        send(request);
 
-        Response response = gson.fromJson(in.readLine(), new TypeToken<Response>() {
-        }.getType());
+        Response response = receive();
         logger.debug("Respuesta recibida: " + response.toString());
         System.out.println("Respuesta recibida de tipo: " + response.status());
 
         switch (response.status()) {
             case OK -> {
-                Funko responseContent = gson.fromJson(response.content(), new TypeToken<Funko>() {
-                }.getType());
+                Funko responseContent = codec.decodeFunko(response.content());
                 System.out.println("🟢 El funko solicitado es: " + responseContent);
             }
             case ERROR ->
@@ -269,6 +371,47 @@ public class Client {
             default -> throw new ClientException("Error no esperado al obtener el funko");
         }
     }
+    /**
+     * Envia seguidas varias solicitudes para obtener Funkos por su ID, sin esperar a cada respuesta.
+     * Cada solicitud lleva su propio identificador y las respuestas se emparejan por el, ya que el servidor
+     * puede completarlas en otro orden.
+     *
+     * @param token El token de autenticacion del cliente.
+     * @param ids   Los ID de los Funkos que se desean obtener.
+     * @throws IOException     Si ocurre un error durante la comunicacion con el servidor.
+     * @throws ClientException Si se recibe una respuesta inesperada del servidor.
+     */
+    private void sendRequestsGetFunkosByIdPipelined(String token, List<String> ids) throws IOException, ClientException {
+        Map<Long, String> inFlight = new HashMap<>();
+        for (String id : ids) {
+            Request request = new Request(GETBYID, id, token, LocalDateTime.now().toString(), ++lastRequestId);
+            inFlight.put(request.requestId(), id);
+            logger.debug("Petición enviada: " + request);
+            out.write(codec.encodeRequest(request));
+        }
+        out.flush();
+        System.out.println("Peticiones enviadas de tipo: " + GETBYID + " en curso: " + inFlight.size());
+
+        while (!inFlight.isEmpty()) {
+            Response response = receive();
+            logger.debug("Respuesta recibida: " + response.toString());
+
+            String id = inFlight.remove(response.requestId());
+            if (id == null) {
+                throw new ClientException("Respuesta para una petición desconocida: " + response.requestId());
+            }
+            switch (response.status()) {
+                case OK -> {
+                    Funko responseContent = codec.decodeFunko(response.content());
+                    System.out.println("🟢 Petición " + response.requestId() + ", el funko solicitado es: " + responseContent);
+                }
+                case ERROR ->
+                        System.err.println("🔴 Error: Funko no encontrado con id: " + id + ". " + response.content());
+                default -> throw new ClientException("Error no esperado al obtener el funko");
+            }
+        }
+    }
+
     /**
      * Envia una solicitud al servidor para obtener Funkos por su modelo.
      *
@@ -282,23 +425,59 @@ public class Client {
         System.out.println("Petición enviada de tipo: " + GETBYMODEL);
         logger.debug("Petición enviada: " + request);
 
-        out.println(gson.toJson(request));
+        send(request);
 
-        Response response = gson.fromJson(in.readLine(), new TypeToken<Response>() {
-        }.getType());
+        Response response = receive();
         logger.debug("Respuesta recibida: " + response.toString());
 
         System.out.println("Respuesta recibida de tipo: " + response.status());
         switch (response.status()) {
             case OK -> {
-                List<Funko> responseContent = gson.fromJson(response.content(), new TypeToken<List<Funko>>() {
-                }.getType());
+                List<Funko> responseContent = codec.decodeFunkos(response.content());
                 System.out.println("🟢 Los funkos por modelo " + modelo + " son: " + responseContent);
             }
             case ERROR -> System.err.println("🔴 Error: " + response.content());
         }
     }
 
+    /**
+     * Recorre todos los Funkos por paginas: cada peticion GETPAGE continua desde el cursor devuelto
+     * en la respuesta anterior, hasta que el servidor responde sin cursor.
+     *
+     * @param token    El token de autenticacion del cliente.
+     * @param pageSize Numero de Funkos por pagina.
+     * @throws IOException     Si ocurre un error durante la comunicacion con el servidor.
+     * @throws ClientException Si se recibe una respuesta inesperada del servidor.
+     */
+    private void sendRequestGetFunkosByPages(String token, int pageSize) throws IOException, ClientException {
+        Long cursor = 0L;
+        int page = 0;
+        while (cursor != null) {
+            Request request = new Request(GETPAGE, "after=" + cursor + ",limit=" + pageSize, token, LocalDateTime.now().toString());
+            System.out.println("Petición enviada de tipo: " + GETPAGE);
+            logger.debug("Petición enviada: " + request);
+
+            send(request);
+
+            Response response = receive();
+            logger.debug("Respuesta recibida: " + response.toString());
+
+            System.out.println("Respuesta recibida de tipo: " + response.status());
+            switch (response.status()) {
+                case OK -> {
+                    List<Funko> funkos = codec.decodeFunkos(response.content());
+                    System.out.println("🟢 Página " + (++page) + " con " + funkos.size() + " funkos: " + funkos);
+                    cursor = response.nextCursor();
+                }
+                case ERROR -> {
+                    System.err.println("🔴 Error: " + response.content());
+                    cursor = null;
+                }
+                default -> throw new ClientException("Tipo de respuesta no esperado: " + response.content());
+            }
+        }
+    }
+
     /**
      * Envia una solicitud al servidor para obtener Funkos por su ano de lanzamiento.
      *
@@ -312,17 +491,15 @@ public class Client {
         System.out.println("Petición enviada de tipo: " + GETBYRELEASEDATA);
         logger.debug("Petición enviada: " + request);
 
-        out.println(gson.toJson(request));
+        send(request);
 
-        Response response = gson.fromJson(in.readLine(), new TypeToken<Response>() {
-        }.getType());
+        Response response = receive();
         logger.debug("Respuesta recibida: " + response.toString());
 
         System.out.println("Respuesta recibida de tipo: " + response.status());
         switch (response.status()) {
             case OK -> {
-                List<Funko> responseContent = gson.fromJson(response.content(), new TypeToken<List<Funko>>() {
-                }.getType());
+                List<Funko> responseContent = codec.decodeFunkos(response.content());
                 System.out.println("🟢 Los funkos con ano de lanzamiento " + anoLanzamiento + " son: " + responseContent);
             }
             case ERROR -> System.err.println("🔴 Error: " + response.content());
@@ -337,23 +514,21 @@ public class Client {
      * @throws ClientException Si se recibe una respuesta inesperada del servidor.
      */
     private void sendRequestPostFunko(String token, Funko funko) throws IOException, ClientException {
-        var funkoJson = gson.toJson(funko);
+        var funkoJson = codec.encodeFunko(funko);
         Request request = new Request(POST, funkoJson, token, LocalDateTime.now().toString());
         System.out.println("Petición enviada de tipo: " + POST);
         logger.debug("Petición enviada: " + request);
 
-        out.println(gson.toJson(request));
+        send(request);
 
-        Response response = gson.fromJson(in.readLine(), new TypeToken<Response>() {
-        }.getType());
+        Response response = receive();
         logger.debug("Respuesta recibida: " + response.toString());
 
         System.out.println("Respuesta recibida de tipo: " + response.status());
 
         switch (response.status()) {
             case OK -> {
-                Funko responseContent = gson.fromJson(response.content(), new TypeToken<Funko>() {
-                }.getType());
+                Funko responseContent = codec.decodeFunko(response.content());
                 System.out.println("🟢 El funko insertado es: " + responseContent);
             }
             case ERROR ->
@@ -370,22 +545,20 @@ public class Client {
      * @throws ClientException Si se recibe una respuesta inesperada del servidor.
      */
     private void sendRequestPutFunko(String token, Funko funko) throws IOException, ClientException {
-        var funkoJson = gson.toJson(funko);
+        var funkoJson = codec.encodeFunko(funko);
         Request request = new Request(UPDATE, funkoJson, token, LocalDateTime.now().toString());
         System.out.println("Petición enviada de tipo: " + UPDATE);
         logger.debug("Petición enviada: " + request);
 
-        out.println(gson.toJson(request));
+        send(request);
 
-        Response response = gson.fromJson(in.readLine(), new TypeToken<Response>() {
-        }.getType());
+        Response response = receive();
         logger.debug("Respuesta recibida: " + response.toString());
         System.out.println("Respuesta recibida de tipo: " + response.status());
 
         switch (response.status()) {
             case OK -> {
-                Funko responseContent = gson.fromJson(response.content(), new TypeToken<Funko>() {
-                }.getType());
+                Funko responseContent = codec.decodeFunko(response.content());
                 System.out.println("🟢 El Funko actualizado es: " + responseContent);
             }
             case ERROR ->
@@ -407,18 +580,16 @@ public class Client {
         System.out.println("Petición enviada de tipo: " + DELETE);
         logger.debug("Petición enviada: " + request);
 
-        out.println(gson.toJson(request));
+        send(request);
 
-        Response response = gson.fromJson(in.readLine(), new TypeToken<Response>() {
-        }.getType());
+        Response response = receive();
         logger.debug("Respuesta recibida: " + response.toString());
 
         System.out.println("Respuesta recibida de tipo: " + response.status());
 
         switch (response.status()) {
             case OK -> {
-                Funko responseContent = gson.fromJson(response.content(), new TypeToken<Funko>() {
-                }.getType());
+                Funko responseContent = codec.decodeFunko(response.content());
                 System.out.println("🟢 El Funko eliminado es: " + responseContent);
             }
             case ERROR ->
@@ -427,6 +598,74 @@ public class Client {
         }
     }
 
+    /**
+     * Envia en una sola solicitud varios Funkos para guardarlos.
+     *
+     * @param token  El token de autenticacion del cliente.
+     * @param funkos Los Funkos que se desean guardar.
+     * @return Los ID asignados a los Funkos guardados.
+     * @throws IOException     Si ocurre un error durante la comunicacion con el servidor.
+     * @throws ClientException Si se recibe una respuesta inesperada del servidor.
+     */
+    private List<Long> sendRequestBatchPostFunkos(String token, List<Funko> funkos) throws IOException, ClientException {
+        Request request = new Request(BATCH_POST, codec.encodeFunkos(funkos), token, LocalDateTime.now().toString());
+        System.out.println("Petición enviada de tipo: " + BATCH_POST + " con " + funkos.size() + " funkos");
+        logger.debug("Petición enviada: " + request);
+
+        send(request);
+
+        return receiveBatchResults();
+    }
+
+    /**
+     * Envia en una sola solicitud varios ID de Funkos para eliminarlos.
+     *
+     * @param token El token de autenticacion del cliente.
+     * @param ids   Los ID de los Funkos que se desean eliminar.
+     * @throws IOException     Si ocurre un error durante la comunicacion con el servidor.
+     * @throws ClientException Si se recibe una respuesta inesperada del servidor.
+     */
+    private void sendRequestBatchDeleteFunkos(String token, List<Long> ids) throws IOException, ClientException {
+        Request request = new Request(BATCH_DELETE, codec.encodeIds(ids), token, LocalDateTime.now().toString());
+        System.out.println("Petición enviada de tipo: " + BATCH_DELETE + " con " + ids.size() + " ids");
+        logger.debug("Petición enviada: " + request);
+
+        send(request);
+
+        receiveBatchResults();
+    }
+
+    /**
+     * Recibe y muestra la respuesta a una solicitud por lotes.
+     *
+     * @return Los ID de los elementos procesados correctamente.
+     */
+    private List<Long> receiveBatchResults() throws IOException, ClientException {
+        Response response = receive();
+        logger.debug("Respuesta recibida: " + response.toString());
+        System.out.println("Respuesta recibida de tipo: " + response.status());
+
+        switch (response.status()) {
+            case OK -> {
+                List<Long> ids = new ArrayList<>();
+                for (BatchResult result : codec.decodeBatchResults(response.content())) {
+                    if (result.status() == BatchResult.Status.OK) {
+                        System.out.println("🟢 Elemento " + result.index() + ": Funko con id " + result.id());
+                        ids.add(result.id());
+                    } else {
+                        System.err.println("🔴 Elemento " + result.index() + ": " + result.status() + ". " + result.message());
+                    }
+                }
+                return ids;
+            }
+            case ERROR -> {
+                System.err.println("🔴 Error: " + response.content());
+                return List.of();
+            }
+            default -> throw new ClientException("Error no esperado en la petición por lotes");
+        }
+    }
+
     /**
      * Envía una solicitud al servidor para cerrar la sesion del cliente.
      * Esta solicitud provoca la desconexion del cliente del servidor.
@@ -439,10 +678,9 @@ public class Client {
         System.out.println("Petición enviada de tipo: " + SALIR);
         logger.debug("Petición enviada: " + request);
 
-        out.println(gson.toJson(request));
+        send(request);
 
-        Response response = gson.fromJson(in.readLine(), new TypeToken<Response>() {
-        }.getType());
+        Response response = receive();
         logger.debug("Respuesta recibida: " + response.toString());
 
         System.out.println("Respuesta recibida de tipo: " + response.status());
@@ -480,6 +718,7 @@ public class Client {
             Map<String, String> configMap = new HashMap<>();
             configMap.put("keyFile", keyFile);
             configMap.put("keyPassword", keyPassword);
+            configMap.put("protocol", properties.getProperty("protocol", "JSON"));
 
             return configMap;
         } catch (FileNotFoundException e) {
@@ -0,0 +1,16 @@
+package develop.common.models;
+
+/**
+ * Clase que representa el resultado de un elemento de una peticion por lotes: su posicion en el lote,
+ * el ID del Funko afectado, el estado y un mensaje opcional.
+ */
+public record BatchResult(int index, long id, Status status, String message) {
+    /**
+     * Enumeracion que define los estados posibles de un elemento del lote.
+     */
+    public enum Status {
+        OK,        // El elemento se ha procesado
+        NOT_FOUND, // No existe ningun Funko con ese ID
+        INVALID    // El elemento no tiene los datos obligatorios y no se ha procesado
+    }
+}
@@ -1,26 +1,21 @@
 package develop.common.models;
 
 
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLong;
 /**
  * Clase que implementa un generador de identificadores unicos para los Funkos.
+ * No usa cerrojos (ni synchronized ni ReentrantLock) para no bloquear los hilos virtuales del servidor.
  */
 public class IdGenerator {
-    private static IdGenerator instance;
-    private static long id = 0;
-    private final Lock locker = new ReentrantLock(true);
+    private static final IdGenerator instance = new IdGenerator();
+    private static final AtomicLong id = new AtomicLong(0);
 
     /**
-     * Metodo estatico que devuelve una instancia del generador de identificadores.
-     * Si la instancia aun no existe, se crea una nueva.
+     * Metodo estatico que devuelve la instancia unica del generador de identificadores.
      *
      * @return Instancia unica del generador de identificadores.
      */
-    public static synchronized IdGenerator getInstance(){
-        if(instance == null){
-            instance = new IdGenerator();
-        }
+    public static IdGenerator getInstance(){
         return instance;
     }
     /**
@@ -29,16 +24,23 @@ public class IdGenerator {
      * @return El nuevo identificador unico generado.
      */
     public Long getIdAndIncrement() {
-        locker.lock();
-        id++;
-        locker.unlock();
-        return id;
+        return id.incrementAndGet();
     }
+    /**
+     * Hace que los siguientes identificadores sean mayores que uno ya usado, por ejemplo el mayor guardado
+     * en la base de datos al arrancar sin borrar las tablas.
+     *
+     * @param usedId Identificador ya usado.
+     */
+    public void ensureAbove(long usedId) {
+        id.accumulateAndGet(usedId, Math::max);
+    }
+
     /**
      * Restablece el identificador a su valor inicial (cero).
      */
     public void resetId() {
-        id = 0L;
+        id.set(0L);
     }
 }
 
@@ -12,6 +12,7 @@ import lombok.Setter;
 public class Notificacion<T> {
     private Tipo tipo; //Tipo de notificacion
     private T contenido;//Contenido de la notificacion
+    private long cantidad = 1;//Numero de Funkos a los que se refiere la notificacion
 
     /**
      * Se crea un constructor de Notificacion con el tipo y contenido
@@ -23,6 +24,16 @@ public class Notificacion<T> {
         this.contenido = contenido;
     }
 
+    /**
+     * Se crea una notificacion que resume una operacion sobre varios Funkos, sin contenido
+     * @param tipo El tipo de notificacion que se recibira
+     * @param cantidad El numero de Funkos a los que se refiere
+     */
+    public Notificacion(Tipo tipo, long cantidad) {
+        this.tipo = tipo;
+        this.cantidad = cantidad;
+    }
+
     /**
      * Devuelve una represantacion en cadena de la notificacion
      * @return Una cadena que muestra el tipo y el contenido de la notificacion
@@ -32,13 +43,14 @@ public class Notificacion<T> {
         return "Notificacion{" +
                 "tipo=" + tipo +
                 ", contenido=" + contenido +
+                ", cantidad=" + cantidad +
                 '}';
     }
 
     /**
-     * Y enumeracion que define los tipos de notificaciones, NEW, UPDATED Y DELETED.
+     * Y enumeracion que define los tipos de notificaciones, NEW, UPDATED, DELETED e IMPORTED (resumen de una importacion).
      */
     public enum Tipo {
-        NEW, UPDATED, DELETED
+        NEW, UPDATED, DELETED, IMPORTED
     }
 }
\ No newline at end of file
@@ -1,9 +1,24 @@
 package develop.common.models;
 
 /**
- * Clase que representa una solicitud con un tipo, contenido, token y marca de tiempo de creacion.
+ * Clase que representa una solicitud con un tipo, contenido, token, marca de tiempo de creacion
+ * e identificador de peticion.
+ * El identificador lo elige el cliente y el servidor lo devuelve en la respuesta, para poder enviar varias
+ * peticiones seguidas por la misma conexion y emparejar las respuestas aunque lleguen en otro orden.
  */
-public record Request(Type type, String content, String token, String createdAt) {
+public record Request(Type type, String content, String token, String createdAt, Long requestId) {
+    /**
+     * Crea una solicitud sin identificador de peticion.
+     *
+     * @param type      Tipo de la solicitud.
+     * @param content   Contenido de la solicitud.
+     * @param token     Token de autenticacion.
+     * @param createdAt Marca de tiempo de creacion.
+     */
+    public Request(Type type, String content, String token, String createdAt) {
+        this(type, content, token, createdAt, null);
+    }
+
     /**
      * Enumeracion que define los tipos posibles de solicitud.
      */
@@ -17,6 +32,11 @@ public record Request(Type type, String content, String token, String createdAt)
         GETBYRELEASEDATA, // Solicitud para obtener por fecha de lanzamiento
         POST,            // Solicitud para crear (POST)
         UPDATE,          // Solicitud para actualizar (PUT)
-        DELETE           // Solicitud para eliminar (DELETE)
+        DELETE,          // Solicitud para eliminar (DELETE)
+        BATCH_POST,      // Solicitud para crear varios Funkos a la vez
+        BATCH_UPDATE,    // Solicitud para actualizar varios Funkos a la vez
+        BATCH_DELETE,    // Solicitud para eliminar varios Funkos por su ID a la vez
+        REAUTH,          // Solicitud para renovar el token y la sesion de la conexion
+        GETPAGE          // Solicitud para obtener una pagina de Funkos
     }
 }
@@ -1,9 +1,33 @@
 package develop.common.models;
 
 /**
- * Clase que representa una respuesta con un estado, contenido y marca de tiempo de creacion.
+ * Clase que representa una respuesta con un estado, contenido, marca de tiempo de creacion,
+ * el identificador de la peticion a la que responde y, en las respuestas paginadas, el cursor de la pagina siguiente.
  */
-public record Response(Status status, String content, String createdAt) {
+public record Response(Status status, String content, String createdAt, Long requestId, Long nextCursor) {
+    /**
+     * Crea una respuesta sin identificador de peticion.
+     *
+     * @param status    Estado de la respuesta.
+     * @param content   Contenido de la respuesta.
+     * @param createdAt Marca de tiempo de creacion.
+     */
+    public Response(Status status, String content, String createdAt) {
+        this(status, content, createdAt, null, null);
+    }
+
+    /**
+     * Crea una respuesta sin cursor de pagina siguiente.
+     *
+     * @param status    Estado de la respuesta.
+     * @param content   Contenido de la respuesta.
+     * @param createdAt Marca de tiempo de creacion.
+     * @param requestId Identificador de la peticion a la que responde.
+     */
+    public Response(Status status, String content, String createdAt, Long requestId) {
+        this(status, content, createdAt, requestId, null);
+    }
+
     /**
      * Enumeracion que define los estados posibles de respuesta.
      */
@@ -11,6 +35,9 @@ public record Response(Status status, String content, String createdAt) {
         OK,     // Respuesta exitosa
         ERROR,  // Respuesta de error
         BYE,    // Respuesta de cierre de sesion
-        TOKEN   // Respuesta que contiene un token
+        TOKEN,  // Respuesta que contiene un token
+        STREAM, // Cabecera de una respuesta enviada en varios fragmentos
+        CHUNK,  // Fragmento de una respuesta con un lote de elementos
+        END     // Fin de una respuesta enviada en varios fragmentos, con el total de elementos
     }
 }
@@ -0,0 +1,308 @@
+package develop.common.protocol;
+
+import develop.common.models.BatchResult;
+import develop.common.models.Funko;
+import develop.common.models.Model;
+import develop.common.models.Request;
+import develop.common.models.Response;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Protocolo binario: cada trama es su longitud en varint seguida del contenido.
+ * Los identificadores van en varint, los UUID en 16 bytes, el modelo en un byte, el precio en 8 bytes
+ * y las fechas en dias desde la epoca. La marca de tiempo de creacion de las peticiones y respuestas no se envia.
+ * Los Funkos del contenido se codifican igual y viajan en la cadena como bytes ISO-8859-1, sin escapar nada.
+ */
+public class BinaryCodec implements WireCodec {
+    private static final BinaryCodec INSTANCE = new BinaryCodec();
+    private static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    private static final int NULL_ORDINAL = 0xFF;
+    // Bits de presencia de los campos opcionales
+    private static final int HAS_CONTENT = 1;
+    private static final int HAS_TOKEN = 2;
+    private static final int HAS_REQUEST_ID = 4;
+    private static final int HAS_NEXT_CURSOR = 8;
+    private static final int HAS_COD = 1;
+    private static final int HAS_NAME = 2;
+    private static final int HAS_RELEASE_DATA = 4;
+    private static final int HAS_CREATED_AT = 8;
+    private static final int HAS_UPDATED_AT = 16;
+
+    private BinaryCodec() {
+    }
+
+    public static BinaryCodec getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public boolean sendsTimestamps() {
+        return false;
+    }
+
+    @Override
+    public int frameLength(ByteBuffer buffer) throws IOException {
+        long length = 0;
+        int index = buffer.position();
+        for (int shift = 0; ; shift += 7) {
+            if (index >= buffer.limit()) {
+                return -1;
+            }
+            int b = buffer.get(index++) & 0xFF;
+            length |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+            if (shift > 28) {
+                throw new IOException("Longitud de trama no válida");
+            }
+        }
+        if (length > MAX_FRAME_SIZE) {
+            throw new IOException("Trama demasiado grande: " + length + " bytes");
+        }
+        int total = (index - buffer.position()) + (int) length;
+        return buffer.remaining() >= total ? total : -1;
+    }
+
+    @Override
+    public byte[] encodeRequest(Request request) {
+        BinaryOutput out = new BinaryOutput(64);
+        out.write(ordinal(request.type()));
+        out.write((request.content() != null ? HAS_CONTENT : 0)
+                | (request.token() != null ? HAS_TOKEN : 0)
+                | (request.requestId() != null ? HAS_REQUEST_ID : 0));
+        if (request.content() != null) {
+            out.writeString(request.content());
+        }
+        if (request.token() != null) {
+            out.writeString(request.token());
+        }
+        if (request.requestId() != null) {
+            out.writeZigZag(request.requestId());
+        }
+        return out.toFrame();
+    }
+
+    @Override
+    public Request decodeRequest(byte[] frame) {
+        BinaryInput in = body(frame);
+        Request.Type type = value(Request.Type.values(), in.readByte());
+        int flags = in.readByte();
+        String content = (flags & HAS_CONTENT) != 0 ? in.readString() : null;
+        String token = (flags & HAS_TOKEN) != 0 ? in.readString() : null;
+        Long requestId = (flags & HAS_REQUEST_ID) != 0 ? in.readZigZag() : null;
+        return new Request(type, content, token, null, requestId);
+    }
+
+    @Override
+    public byte[] encodeResponse(Response response) {
+        BinaryOutput out = new BinaryOutput(64);
+        out.write(ordinal(response.status()));
+        out.write((response.content() != null ? HAS_CONTENT : 0)
+                | (response.requestId() != null ? HAS_REQUEST_ID : 0)
+                | (response.nextCursor() != null ? HAS_NEXT_CURSOR : 0));
+        if (response.content() != null) {
+            out.writeString(response.content());
+        }
+        if (response.requestId() != null) {
+            out.writeZigZag(response.requestId());
+        }
+        if (response.nextCursor() != null) {
+            out.writeZigZag(response.nextCursor());
+        }
+        return out.toFrame();
+    }
+
+    @Override
+    public Response decodeResponse(byte[] frame) {
+        BinaryInput in = body(frame);
+        Response.Status status = value(Response.Status.values(), in.readByte());
+        int flags = in.readByte();
+        String content = (flags & HAS_CONTENT) != 0 ? in.readString() : null;
+        Long requestId = (flags & HAS_REQUEST_ID) != 0 ? in.readZigZag() : null;
+        Long nextCursor = (flags & HAS_NEXT_CURSOR) != 0 ? in.readZigZag() : null;
+        return new Response(status, content, null, requestId, nextCursor);
+    }
+
+    @Override
+    public PreparedResponse prepareResponse(Response.Status status, String content) {
+        BinaryOutput out = new BinaryOutput(content.length() + 5);
+        out.writeString(content);
+        byte[] encodedContent = out.toByteArray();
+        int statusOrdinal = ordinal(status);
+        return requestId -> {
+            BinaryOutput tail = new BinaryOutput(10);
+            if (requestId != null) {
+                tail.writeZigZag(requestId);
+            }
+            int length = 2 + encodedContent.length + tail.size();
+            BinaryOutput frame = new BinaryOutput(length + 5);
+            frame.writeVarint(length);
+            frame.write(statusOrdinal);
+            frame.write(HAS_CONTENT | (requestId != null ? HAS_REQUEST_ID : 0));
+            frame.writeBytes(encodedContent);
+            frame.writeBytes(tail.toByteArray());
+            return frame.toByteArray();
+        };
+    }
+
+    @Override
+    public String encodeFunko(Funko funko) {
+        BinaryOutput out = new BinaryOutput(64);
+        writeFunko(out, funko);
+        return out.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public Funko decodeFunko(String content) {
+        return readFunko(new BinaryInput(content.getBytes(StandardCharsets.ISO_8859_1), 0));
+    }
+
+    @Override
+    public String encodeFunkos(List<Funko> funkos) {
+        BinaryOutput out = new BinaryOutput(funkos.size() * 64 + 5);
+        out.writeVarint(funkos.size());
+        funkos.forEach(funko -> writeFunko(out, funko));
+        return out.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public List<Funko> decodeFunkos(String content) {
+        BinaryInput in = new BinaryInput(content.getBytes(StandardCharsets.ISO_8859_1), 0);
+        int size = (int) in.readVarint();
+        List<Funko> funkos = new ArrayList<>(Math.min(size, 1024));
+        for (int i = 0; i < size; i++) {
+            funkos.add(readFunko(in));
+        }
+        return funkos;
+    }
+
+    @Override
+    public String encodeIds(List<Long> ids) {
+        BinaryOutput out = new BinaryOutput(ids.size() * 3 + 5);
+        out.writeVarint(ids.size());
+        ids.forEach(out::writeZigZag);
+        return out.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public List<Long> decodeIds(String content) {
+        BinaryInput in = new BinaryInput(content.getBytes(StandardCharsets.ISO_8859_1), 0);
+        int size = (int) in.readVarint();
+        List<Long> ids = new ArrayList<>(Math.min(size, 1024));
+        for (int i = 0; i < size; i++) {
+            ids.add(in.readZigZag());
+        }
+        return ids;
+    }
+
+    @Override
+    public String encodeBatchResults(List<BatchResult> results) {
+        BinaryOutput out = new BinaryOutput(results.size() * 6 + 5);
+        out.writeVarint(results.size());
+        for (BatchResult result : results) {
+            out.writeVarint(result.index());
+            out.writeZigZag(result.id());
+            out.write(ordinal(result.status()));
+            out.write(result.message() != null ? HAS_CONTENT : 0);
+            if (result.message() != null) {
+                out.writeString(result.message());
+            }
+        }
+        return out.toString(StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public List<BatchResult> decodeBatchResults(String content) {
+        BinaryInput in = new BinaryInput(content.getBytes(StandardCharsets.ISO_8859_1), 0);
+        int size = (int) in.readVarint();
+        List<BatchResult> results = new ArrayList<>(Math.min(size, 1024));
+        for (int i = 0; i < size; i++) {
+            int index = (int) in.readVarint();
+            long id = in.readZigZag();
+            BatchResult.Status status = value(BatchResult.Status.values(), in.readByte());
+            String message = (in.readByte() & HAS_CONTENT) != 0 ? in.readString() : null;
+            results.add(new BatchResult(index, id, status, message));
+        }
+        return results;
+    }
+
+    private void writeFunko(BinaryOutput out, Funko funko) {
+        out.write((funko.getCod() != null ? HAS_COD : 0)
+                | (funko.getName() != null ? HAS_NAME : 0)
+                | (funko.getReleaseData() != null ? HAS_RELEASE_DATA : 0)
+                | (funko.getCreatedAt() != null ? HAS_CREATED_AT : 0)
+                | (funko.getUpdatedAt() != null ? HAS_UPDATED_AT : 0));
+        out.writeZigZag(funko.getId());
+        out.writeZigZag(funko.getMyId());
+        if (funko.getCod() != null) {
+            out.writeUuid(funko.getCod());
+        }
+        if (funko.getName() != null) {
+            out.writeString(funko.getName());
+        }
+        out.write(ordinal(funko.getModel()));
+        out.writeDouble(funko.getPrice());
+        if (funko.getReleaseData() != null) {
+            out.writeZigZag(funko.getReleaseData().toEpochDay());
+        }
+        if (funko.getCreatedAt() != null) {
+            writeDateTime(out, funko.getCreatedAt());
+        }
+        if (funko.getUpdatedAt() != null) {
+            writeDateTime(out, funko.getUpdatedAt());
+        }
+    }
+
+    private Funko readFunko(BinaryInput in) {
+        int flags = in.readByte();
+        return Funko.builder()
+                .id(in.readZigZag())
+                .myId(in.readZigZag())
+                .cod((flags & HAS_COD) != 0 ? in.readUuid() : null)
+                .name((flags & HAS_NAME) != 0 ? in.readString() : null)
+                .model(value(Model.values(), in.readByte()))
+                .price(in.readDouble())
+                .releaseData((flags & HAS_RELEASE_DATA) != 0 ? LocalDate.ofEpochDay(in.readZigZag()) : null)
+                .createdAt((flags & HAS_CREATED_AT) != 0 ? readDateTime(in) : null)
+                .updatedAt((flags & HAS_UPDATED_AT) != 0 ? readDateTime(in) : null)
+                .build();
+    }
+
+    private static void writeDateTime(BinaryOutput out, LocalDateTime dateTime) {
+        out.writeZigZag(dateTime.toEpochSecond(ZoneOffset.UTC));
+        out.writeVarint(dateTime.getNano());
+    }
+
+    private static LocalDateTime readDateTime(BinaryInput in) {
+        return LocalDateTime.ofEpochSecond(in.readZigZag(), (int) in.readVarint(), ZoneOffset.UTC);
+    }
+
+    private static BinaryInput body(byte[] frame) {
+        BinaryInput in = new BinaryInput(frame, 0);
+        in.readVarint(); // Longitud de la trama, ya comprobada al leerla
+        return in;
+    }
+
+    private static int ordinal(Enum<?> value) {
+        return value != null ? value.ordinal() : NULL_ORDINAL;
+    }
+
+    private static <T> T value(T[] values, int ordinal) {
+        if (ordinal == NULL_ORDINAL) {
+            return null;
+        }
+        if (ordinal >= values.length) {
+            throw new IllegalArgumentException("Valor no válido en la trama: " + ordinal);
+        }
+        return values[ordinal];
+    }
+}
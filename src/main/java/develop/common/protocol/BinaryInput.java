@@ -0,0 +1,68 @@
+package develop.common.protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Lector del protocolo binario sobre un array de bytes.
+ */
+class BinaryInput {
+    private final byte[] data;
+    private int position;
+
+    BinaryInput(byte[] data, int position) {
+        this.data = data;
+        this.position = position;
+    }
+
+    int readByte() {
+        if (position >= data.length) {
+            throw new IllegalArgumentException("Trama binaria incompleta");
+        }
+        return data[position++] & 0xFF;
+    }
+
+    long readVarint() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint demasiado largo");
+    }
+
+    long readZigZag() {
+        long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    long readLong() {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | readByte();
+        }
+        return value;
+    }
+
+    double readDouble() {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    UUID readUuid() {
+        return new UUID(readLong(), readLong());
+    }
+
+    String readString() {
+        long header = readVarint();
+        int length = (int) (header >>> 1);
+        if (length < 0 || length > data.length - position) {
+            throw new IllegalArgumentException("Trama binaria incompleta");
+        }
+        String value = new String(data, position, length, (header & 1) == 0 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+}
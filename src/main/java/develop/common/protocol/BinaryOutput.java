@@ -0,0 +1,79 @@
+package develop.common.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Buffer de escritura del protocolo binario, con enteros de longitud variable (varint).
+ */
+class BinaryOutput extends ByteArrayOutputStream {
+
+    BinaryOutput(int size) {
+        super(size);
+    }
+
+    void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        write((int) value);
+    }
+
+    /**
+     * Escribe un entero con signo en zigzag, para que los valores negativos pequeños tambien ocupen poco.
+     */
+    void writeZigZag(long value) {
+        writeVarint((value << 1) ^ (value >> 63));
+    }
+
+    void writeLong(long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            write((int) (value >>> shift));
+        }
+    }
+
+    void writeDouble(double value) {
+        writeLong(Double.doubleToLongBits(value));
+    }
+
+    void writeUuid(UUID uuid) {
+        writeLong(uuid.getMostSignificantBits());
+        writeLong(uuid.getLeastSignificantBits());
+    }
+
+    /**
+     * Escribe una cadena con su longitud. Si todos sus caracteres caben en un byte se escribe en ISO-8859-1
+     * (asi viajan sin expandirse los contenidos binarios) y si no en UTF-8. El bit bajo de la longitud indica cual.
+     */
+    void writeString(String value) {
+        if (isLatin1(value)) {
+            writeVarint((long) value.length() << 1);
+            writeBytes(value.getBytes(StandardCharsets.ISO_8859_1));
+        } else {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(((long) bytes.length << 1) | 1);
+            writeBytes(bytes);
+        }
+    }
+
+    /**
+     * Devuelve la trama: la longitud del contenido escrito como varint seguida del contenido.
+     */
+    byte[] toFrame() {
+        BinaryOutput frame = new BinaryOutput(count + 5);
+        frame.writeVarint(count);
+        frame.write(buf, 0, count);
+        return frame.toByteArray();
+    }
+
+    private static boolean isLatin1(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,56 @@
+package develop.common.protocol;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Lee tramas completas de un flujo bloqueante segun el protocolo de la conexion.
+ */
+public class FrameReader {
+    private final InputStream in;
+    private final WireCodec codec;
+    private ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+    /**
+     * Crea un lector de tramas.
+     *
+     * @param in    Flujo de entrada de la conexion.
+     * @param codec Protocolo de la conexion.
+     */
+    public FrameReader(InputStream in, WireCodec codec) {
+        this.in = in;
+        this.codec = codec;
+    }
+
+    /**
+     * Lee la siguiente trama, esperando hasta que este completa.
+     *
+     * @return Los bytes de la trama, o null si el otro extremo ha cerrado la conexion.
+     * @throws IOException Si ocurre un error de lectura o la trama no es valida.
+     */
+    public byte[] readFrame() throws IOException {
+        while (true) {
+            buffer.flip();
+            int length = codec.frameLength(buffer);
+            if (length > 0) {
+                byte[] frame = new byte[length];
+                buffer.get(frame);
+                buffer.compact();
+                return frame;
+            }
+            buffer.compact();
+            if (!buffer.hasRemaining()) {
+                ByteBuffer bigger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                bigger.put(buffer);
+                buffer = bigger;
+            }
+            int read = in.read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            if (read < 0) {
+                return null;
+            }
+            buffer.position(buffer.position() + read);
+        }
+    }
+}
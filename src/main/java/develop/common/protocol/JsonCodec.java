@@ -0,0 +1,146 @@
+package develop.common.protocol;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import develop.common.models.BatchResult;
+import develop.common.models.Funko;
+import develop.common.models.Request;
+import develop.common.models.Response;
+import develop.common.utils.LocalDateAdapter;
+import develop.common.utils.LocalDateTimeAdapter;
+import develop.common.utils.UuidAdapter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Protocolo JSON: cada trama es un objeto JSON en una linea y los Funkos viajan como cadenas JSON dentro del contenido.
+ */
+public class JsonCodec implements WireCodec {
+    private static final JsonCodec INSTANCE = new JsonCodec();
+    private static final int MAX_FRAME_SIZE = 16 * 1024 * 1024;
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+            .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+            .registerTypeAdapter(UUID.class, new UuidAdapter()).create();
+
+    private JsonCodec() {
+    }
+
+    public static JsonCodec getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public boolean sendsTimestamps() {
+        return true;
+    }
+
+    @Override
+    public int frameLength(ByteBuffer buffer) throws IOException {
+        int end = buffer.position() + Math.min(buffer.remaining(), MAX_FRAME_SIZE);
+        for (int i = buffer.position(); i < end; i++) {
+            if (buffer.get(i) == '\n') {
+                return i - buffer.position() + 1;
+            }
+        }
+        if (buffer.remaining() >= MAX_FRAME_SIZE) {
+            throw new IOException("Trama demasiado grande: más de " + MAX_FRAME_SIZE + " bytes sin fin de línea");
+        }
+        return -1;
+    }
+
+    @Override
+    public byte[] encodeRequest(Request request) {
+        return (gson.toJson(request) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Request decodeRequest(byte[] frame) {
+        return gson.fromJson(line(frame), Request.class);
+    }
+
+    @Override
+    public byte[] encodeResponse(Response response) {
+        return (gson.toJson(response) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public Response decodeResponse(byte[] frame) {
+        return gson.fromJson(line(frame), Response.class);
+    }
+
+    @Override
+    public PreparedResponse prepareResponse(Response.Status status, String content) {
+        String json = gson.toJson(new Response(status, content, null));
+        // Sin la llave final, para añadir detras la marca de tiempo y el identificador de cada peticion
+        byte[] head = json.substring(0, json.length() - 1).getBytes(StandardCharsets.UTF_8);
+        return requestId -> {
+            String tail = ",\"createdAt\":\"" + LocalDateTime.now() + "\""
+                    + (requestId != null ? ",\"requestId\":" + requestId : "") + "}\n";
+            byte[] frame = Arrays.copyOf(head, head.length + tail.length());
+            for (int i = 0; i < tail.length(); i++) {
+                frame[head.length + i] = (byte) tail.charAt(i); // Solo lleva caracteres ASCII
+            }
+            return frame;
+        };
+    }
+
+    @Override
+    public String encodeFunko(Funko funko) {
+        return gson.toJson(funko);
+    }
+
+    @Override
+    public Funko decodeFunko(String content) {
+        return gson.fromJson(content, Funko.class);
+    }
+
+    @Override
+    public String encodeFunkos(List<Funko> funkos) {
+        return gson.toJson(funkos);
+    }
+
+    @Override
+    public List<Funko> decodeFunkos(String content) {
+        return gson.fromJson(content, new TypeToken<List<Funko>>() {
+        }.getType());
+    }
+
+    @Override
+    public String encodeIds(List<Long> ids) {
+        return gson.toJson(ids);
+    }
+
+    @Override
+    public List<Long> decodeIds(String content) {
+        return gson.fromJson(content, new TypeToken<List<Long>>() {
+        }.getType());
+    }
+
+    @Override
+    public String encodeBatchResults(List<BatchResult> results) {
+        return gson.toJson(results);
+    }
+
+    @Override
+    public List<BatchResult> decodeBatchResults(String content) {
+        return gson.fromJson(content, new TypeToken<List<BatchResult>>() {
+        }.getType());
+    }
+
+    private static String line(byte[] frame) {
+        int end = frame.length;
+        while (end > 0 && (frame[end - 1] == '\n' || frame[end - 1] == '\r')) {
+            end--;
+        }
+        return new String(frame, 0, end, StandardCharsets.UTF_8);
+    }
+}
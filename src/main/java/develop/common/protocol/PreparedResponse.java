@@ -0,0 +1,18 @@
+package develop.common.protocol;
+
+/**
+ * Respuesta con el contenido ya codificado por un {@link WireCodec}, que se puede enviar muchas veces: cada trama
+ * solo añade lo que cambia de una peticion a otra (su identificador y, si el protocolo la envia, la marca de tiempo),
+ * sin volver a serializar el contenido.
+ */
+@FunctionalInterface
+public interface PreparedResponse {
+
+    /**
+     * Construye la trama completa de la respuesta.
+     *
+     * @param requestId Identificador de la peticion a la que responde, o null.
+     * @return Los bytes de la trama.
+     */
+    byte[] toFrame(Long requestId);
+}
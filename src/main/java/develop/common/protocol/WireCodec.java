@@ -0,0 +1,161 @@
+package develop.common.protocol;
+
+import develop.common.models.BatchResult;
+import develop.common.models.Funko;
+import develop.common.models.Request;
+import develop.common.models.Response;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Codificacion de las tramas del protocolo entre cliente y servidor y de los Funkos que viajan en su contenido.
+ * El protocolo se elige al conectar: el cliente que quiere el formato binario envia primero {@link #BINARY_MAGIC}
+ * y el servidor lo devuelve para confirmarlo. Si el primer byte es cualquier otro se usa JSON, que es el formato por defecto.
+ */
+public interface WireCodec {
+    byte BINARY_MAGIC = (byte) 0xB1; // Primer byte de una conexion que usa el protocolo binario
+
+    /**
+     * Devuelve el codec que corresponde al primer byte recibido en una conexion.
+     *
+     * @param first Primer byte recibido.
+     * @return El codec binario si es {@link #BINARY_MAGIC}, el JSON en otro caso.
+     */
+    static WireCodec forFirstByte(byte first) {
+        return first == BINARY_MAGIC ? BinaryCodec.getInstance() : JsonCodec.getInstance();
+    }
+
+    /**
+     * Devuelve el codec a partir de su nombre en la configuracion (JSON o BINARY).
+     *
+     * @param name Nombre del protocolo.
+     * @return El codec correspondiente, JSON si el nombre no es BINARY.
+     */
+    static WireCodec forName(String name) {
+        return "BINARY".equalsIgnoreCase(name) ? BinaryCodec.getInstance() : JsonCodec.getInstance();
+    }
+
+    /**
+     * Indica si las tramas llevan la marca de tiempo de creacion. Si no la llevan no hace falta generarla.
+     *
+     * @return true si la marca de tiempo se envia.
+     */
+    boolean sendsTimestamps();
+
+    /**
+     * Busca una trama completa al principio del buffer, sin consumirlo.
+     *
+     * @param buffer Buffer en modo lectura con los bytes recibidos.
+     * @return Longitud en bytes de la primera trama completa, delimitador incluido, o -1 si aun no esta completa.
+     * @throws IOException Si la trama no es valida o supera el tamaño maximo.
+     */
+    int frameLength(ByteBuffer buffer) throws IOException;
+
+    /**
+     * Codifica una peticion como trama completa.
+     *
+     * @param request La peticion.
+     * @return Los bytes de la trama.
+     */
+    byte[] encodeRequest(Request request);
+
+    /**
+     * Decodifica una trama completa devuelta por {@link #frameLength(ByteBuffer)}.
+     *
+     * @param frame Los bytes de la trama.
+     * @return La peticion.
+     */
+    Request decodeRequest(byte[] frame);
+
+    /**
+     * Codifica una respuesta como trama completa.
+     *
+     * @param response La respuesta.
+     * @return Los bytes de la trama.
+     */
+    byte[] encodeResponse(Response response);
+
+    /**
+     * Decodifica una trama completa devuelta por {@link #frameLength(ByteBuffer)}.
+     *
+     * @param frame Los bytes de la trama.
+     * @return La respuesta.
+     */
+    Response decodeResponse(byte[] frame);
+
+    /**
+     * Codifica de antemano una respuesta para enviarla muchas veces. Las tramas que genera son iguales a las de
+     * {@link #encodeResponse(Response)} con la marca de tiempo actual, si el protocolo la envia, y sin cursor.
+     *
+     * @param status  Estado de la respuesta.
+     * @param content Contenido de la respuesta.
+     * @return La respuesta preparada.
+     */
+    PreparedResponse prepareResponse(Response.Status status, String content);
+
+    /**
+     * Codifica un Funko para enviarlo como contenido de una peticion o respuesta.
+     *
+     * @param funko El Funko.
+     * @return El contenido codificado.
+     */
+    String encodeFunko(Funko funko);
+
+    /**
+     * Decodifica un Funko del contenido de una peticion o respuesta.
+     *
+     * @param content El contenido codificado.
+     * @return El Funko.
+     */
+    Funko decodeFunko(String content);
+
+    /**
+     * Codifica una lista de Funkos para enviarla como contenido de una respuesta.
+     *
+     * @param funkos Los Funkos.
+     * @return El contenido codificado.
+     */
+    String encodeFunkos(List<Funko> funkos);
+
+    /**
+     * Decodifica una lista de Funkos del contenido de una respuesta.
+     *
+     * @param content El contenido codificado.
+     * @return Los Funkos.
+     */
+    List<Funko> decodeFunkos(String content);
+
+    /**
+     * Codifica una lista de identificadores para enviarla como contenido de una peticion por lotes.
+     *
+     * @param ids Los identificadores.
+     * @return El contenido codificado.
+     */
+    String encodeIds(List<Long> ids);
+
+    /**
+     * Decodifica una lista de identificadores del contenido de una peticion por lotes.
+     *
+     * @param content El contenido codificado.
+     * @return Los identificadores.
+     */
+    List<Long> decodeIds(String content);
+
+    /**
+     * Codifica los resultados de una peticion por lotes para enviarlos como contenido de la respuesta.
+     *
+     * @param results Los resultados de cada elemento.
+     * @return El contenido codificado.
+     */
+    String encodeBatchResults(List<BatchResult> results);
+
+    /**
+     * Decodifica los resultados de una peticion por lotes del contenido de la respuesta.
+     *
+     * @param content El contenido codificado.
+     * @return Los resultados de cada elemento.
+     */
+    List<BatchResult> decodeBatchResults(String content);
+}
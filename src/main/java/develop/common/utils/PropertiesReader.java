@@ -46,4 +46,15 @@ public class PropertiesReader {
             throw new FileNotFoundException("No se encuentra la propiedad " + key + " en el fichero " + fileName);
         }
     }
+
+    /**
+     * Obtiene el valor de una propiedad opcional a partir de su clave.
+     *
+     * @param key          Clave de la propiedad que se desea obtener.
+     * @param defaultValue Valor que se devuelve si la propiedad no esta en el archivo.
+     * @return El valor de la propiedad o el valor por defecto.
+     */
+    public String getProperty(String key, String defaultValue) {
+        return properties.getProperty(key, defaultValue);
+    }
 }
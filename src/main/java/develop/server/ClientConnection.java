@@ -0,0 +1,40 @@
+package develop.server;
+
+import develop.common.models.Response;
+import develop.common.protocol.WireCodec;
+
+import java.io.IOException;
+
+/**
+ * Canal de salida de una conexion con un cliente, independiente del motor de E/S que la atiende
+ * (un hilo por conexion o un bucle de eventos NIO) y del protocolo negociado al conectar.
+ */
+public interface ClientConnection {
+    /**
+     * Envia una respuesta al cliente, codificada con el protocolo de la conexion.
+     *
+     * @param response La respuesta que se envia.
+     */
+    void send(Response response);
+
+    /**
+     * Envia una trama ya codificada con el protocolo de la conexion, por ejemplo de una {@link develop.common.protocol.PreparedResponse}.
+     *
+     * @param frame Los bytes de la trama.
+     */
+    void sendFrame(byte[] frame);
+
+    /**
+     * Devuelve el protocolo negociado con el cliente, para codificar el contenido de las respuestas.
+     *
+     * @return El codec de la conexion.
+     */
+    WireCodec codec();
+
+    /**
+     * Cierra la conexion con el cliente una vez enviados los mensajes pendientes.
+     *
+     * @throws IOException Si ocurre un error al cerrar la conexion.
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,513 @@
+package develop.server;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import develop.common.models.*;
+import develop.common.utils.LocalDateAdapter;
+import develop.common.utils.LocalDateTimeAdapter;
+import develop.common.utils.UuidAdapter;
+import develop.server.exceptions.server.ServerException;
+import develop.server.repositories.users.UsersRepository;
+import develop.server.services.services.funkos.FunkosQuery;
+import develop.server.services.services.funkos.FunkosService;
+import develop.server.services.token.TokenService;
+import org.mindrot.jbcrypt.BCrypt;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Clase que procesa las peticiones de un cliente y envia las respuestas por su conexion.
+ * Es comun a todos los motores del servidor, que solo se encargan de leer las peticiones y de escribir las respuestas.
+ * En modo sesion, tras el login el usuario y la expiracion del token quedan asociados a la conexion y las
+ * peticiones siguientes no vuelven a verificar el token hasta que expira o se renueva con REAUTH.
+ */
+public class RequestProcessor {
+    private static final int STREAM_BATCH_SIZE = 50; // Funkos por fragmento en las respuestas por streaming
+    private static final int DEFAULT_PAGE_SIZE = 50; // Funkos por pagina si la peticion GETPAGE no indica limite
+    private static final int MAX_PAGE_SIZE = 1000; // Maximo de Funkos por pagina
+    private final Logger logger = LoggerFactory.getLogger(RequestProcessor.class);
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapter(LocalDate.class, new LocalDateAdapter())
+            .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
+            .registerTypeAdapter(UUID.class, new UuidAdapter()).create();
+    private final ClientConnection connection;
+    private final FunkosService funkosService;
+    private final boolean sessionMode;
+    private final LongSupplier clock;
+    // Sesion de la conexion: se usan desde el hilo que procesa las peticiones, que puede cambiar en el motor NIO
+    private volatile User sessionUser;
+    private volatile long sessionExpiresAt;
+
+    /**
+     * Crea un procesador de peticiones para una conexion.
+     *
+     * @param connection    La conexion por la que se envian las respuestas.
+     * @param funkosService El servicio de Funkos.
+     * @param sessionMode   Si el usuario autenticado se guarda en la conexion tras el login.
+     */
+    public RequestProcessor(ClientConnection connection, FunkosService funkosService, boolean sessionMode) {
+        this(connection, funkosService, sessionMode, System::currentTimeMillis);
+    }
+
+    /**
+     * Crea un procesador de peticiones con otro reloj para la expiracion de la sesion.
+     *
+     * @param connection    La conexion por la que se envian las respuestas.
+     * @param funkosService El servicio de Funkos.
+     * @param sessionMode   Si el usuario autenticado se guarda en la conexion tras el login.
+     * @param clock         Reloj en milisegundos desde la epoca; {@link System#currentTimeMillis()} salvo en las pruebas.
+     */
+    public RequestProcessor(ClientConnection connection, FunkosService funkosService, boolean sessionMode, LongSupplier clock) {
+        this.connection = connection;
+        this.funkosService = funkosService;
+        this.sessionMode = sessionMode;
+        this.clock = clock;
+    }
+
+    /**
+     * Procesa una peticion ya decodificada con el protocolo de la conexion.
+     * Si la peticion falla con una excepcion del servidor se responde con un ERROR antes de propagarla,
+     * para que el motor cierre la conexion.
+     *
+     * @param request La peticion.
+     * @throws IOException     Excepcion de E/S.
+     * @throws ServerException Excepcion de servidor.
+     */
+    public void process(Request request) throws IOException, ServerException {
+        try {
+            handleRequest(request);
+        } catch (ServerException ex) {
+            reply(request, Response.Status.ERROR, ex.getMessage());
+            throw ex;
+        }
+    }
+
+    /**
+     * Envia una respuesta a una peticion, con el identificador de la peticion para que el cliente
+     * pueda emparejarla aunque tenga otras peticiones en curso en la misma conexion.
+     *
+     * @param request La peticion a la que se responde.
+     * @param status  Estado de la respuesta.
+     * @param content Contenido de la respuesta.
+     */
+    private void reply(Request request, Response.Status status, String content) {
+        reply(request, status, content, null);
+    }
+
+    /**
+     * Envia una respuesta paginada, con el cursor para pedir la pagina siguiente.
+     *
+     * @param request    La peticion a la que se responde.
+     * @param status     Estado de la respuesta.
+     * @param content    Contenido de la respuesta.
+     * @param nextCursor Cursor de la pagina siguiente, o null si no hay mas paginas.
+     */
+    private void reply(Request request, Response.Status status, String content, Long nextCursor) {
+        var createdAt = connection.codec().sendsTimestamps() ? LocalDateTime.now().toString() : null;
+        connection.send(new Response(status, content, createdAt, request.requestId(), nextCursor));
+    }
+
+    /**
+     * Maneja una solicitud del cliente y toma acciones en funcion del tipo de solicitud.
+     *
+     * @param request La solicitud del cliente.
+     * @throws IOException      Excepcion de E/S.
+     * @throws ServerException Excepcion de servidor.
+     */
+    private void handleRequest(Request request) throws IOException, ServerException {
+        logger.debug("Petición para procesar: " + request);
+
+        switch (request.type()) {
+            case LOGIN -> processLogin(request);
+            case SALIR -> processSalir(request);
+            case GETALL -> procesasGetAll(request);
+            case GETBYID -> procesasGetById(request);
+            case GETBYMODEL-> procesasGetByModel(request);
+            case GETBYRELEASEDATA-> procesasGetByReleaseData(request);
+            case POST -> procesarPost(request);
+            case UPDATE -> procesasUpdate(request);
+            case DELETE -> procesasDelete(request);
+            case BATCH_POST, BATCH_UPDATE, BATCH_DELETE -> procesarBatch(request);
+            case REAUTH -> procesarReauth(request);
+            case GETPAGE -> procesasGetPage(request);
+            default -> reply(request, Response.Status.ERROR, "No tengo ni idea");
+        }
+    }
+
+    private void processSalir(Request request) throws IOException {
+        reply(request, Response.Status.BYE, "Adios");
+        connection.close();
+    }
+
+    private void processLogin(Request request) throws ServerException {
+        logger.debug("Petición de login recibida: " + request);
+        Login login = gson.fromJson(String.valueOf(request.content()), new TypeToken<Login>() {
+        }.getType());
+
+        var user = UsersRepository.getInstance().findByByUsername(login.username());
+        if (user.isEmpty() || !BCrypt.checkpw(login.password(), user.get().password())) {
+            logger.warn("Usuario no encontrado o falla la contraseña");
+            throw new ServerException("Usuario o contraseña incorrectos");
+        }
+
+        var token = TokenService.getInstance().createToken(user.get(), Server.TOKEN_SECRET, Server.TOKEN_EXPIRATION);
+        bindSession(user.get(), token);
+
+        logger.debug("Respuesta enviada: " + token);
+        reply(request, Response.Status.TOKEN, token);
+    }
+
+    /**
+     * Renueva la autenticacion: con una sesion o un token aun validos se emite un token nuevo
+     * y, en modo sesion, se alarga la sesion de la conexion hasta su expiracion.
+     */
+    private void procesarReauth(Request request) throws ServerException {
+        var user = procesarToken(request.token());
+        var token = TokenService.getInstance().createToken(user.get(), Server.TOKEN_SECRET, Server.TOKEN_EXPIRATION);
+        bindSession(user.get(), token);
+
+        logger.debug("Sesión renovada para el usuario: " + user.get().username());
+        reply(request, Response.Status.TOKEN, token);
+    }
+
+    /**
+     * Asocia el usuario a la conexion hasta que expire el token, si el modo sesion esta activo.
+     */
+    private void bindSession(User user, String token) {
+        if (sessionMode) {
+            sessionExpiresAt = TokenService.getInstance().getExpiresAt(token, Server.TOKEN_SECRET);
+            sessionUser = user;
+        }
+    }
+
+    /**
+     * Obtiene el usuario de la peticion. En modo sesion se usa el de la conexion mientras no expire;
+     * si no, el del token, y los tokens ya verificados se resuelven sin volver a comprobar la firma.
+     */
+    private Optional<User> procesarToken(String token) throws ServerException {
+        var current = sessionUser;
+        if (current != null) {
+            if (clock.getAsLong() < sessionExpiresAt) {
+                return Optional.of(current);
+            }
+            logger.debug("Sesión expirada para el usuario: " + current.username());
+            sessionUser = null;
+        }
+        var user = TokenService.getInstance().resolveUser(token, Server.TOKEN_SECRET);
+        if (user.isEmpty()) {
+            logger.error("Token no válido o usuario no autenticado correctamente");
+            throw new ServerException("Token no válido");
+        }
+        logger.debug("Token válido");
+        return user;
+    }
+
+    /**
+     * Envia todos los Funkos por streaming: una cabecera STREAM, un fragmento CHUNK por cada lote de Funkos
+     * segun se leen de la base de datos y un END con el total, sin cargar la lista entera en memoria.
+     * Si el resultado esta en la cache de consultas se envian sus fragmentos ya codificados.
+     */
+    private void procesasGetAll(Request request) throws ServerException {
+        procesarToken(request.token());
+
+        funkosService.findSnapshot(FunkosQuery.all())
+                .switchIfEmpty(Mono.fromRunnable(() -> streamGetAll(request)))
+                .subscribe(snapshot -> {
+                    reply(request, Response.Status.STREAM, String.valueOf(STREAM_BATCH_SIZE));
+                    for (String chunk : snapshot.encodedChunks(connection.codec(), STREAM_BATCH_SIZE)) {
+                        reply(request, Response.Status.CHUNK, chunk);
+                    }
+                    logger.debug("Respuesta enviada desde la cache: " + snapshot.funkos().size() + " funkos");
+                    reply(request, Response.Status.END, String.valueOf(snapshot.funkos().size()));
+                });
+    }
+
+    private void streamGetAll(Request request) {
+        var total = new AtomicLong(0);
+        reply(request, Response.Status.STREAM, String.valueOf(STREAM_BATCH_SIZE));
+        funkosService.findAll()
+                .buffer(STREAM_BATCH_SIZE)
+                .subscribe(
+                        funkos -> {
+                            total.addAndGet(funkos.size());
+                            reply(request, Response.Status.CHUNK, connection.codec().encodeFunkos(funkos));
+                        },
+                        error -> {
+                            logger.error("Error al obtener los funkos: " + error.getMessage());
+                            reply(request, Response.Status.ERROR, error.getMessage());
+                        },
+                        () -> {
+                            logger.debug("Respuesta enviada: " + total.get() + " funkos");
+                            reply(request, Response.Status.END, String.valueOf(total.get()));
+                        }
+                );
+    }
+
+    /**
+     * Envia una pagina de Funkos ordenados por ID. El contenido son pares clave=valor separados por comas:
+     * after=ID para seguir desde un cursor (after=0 o sin after para la primera pagina), offset=N para saltar
+     * N Funkos, y limit=N con el tamaño de la pagina. Si la pagina esta completa la respuesta lleva como cursor
+     * el ID de su ultimo Funko; si no, el cursor es null y no hay mas paginas.
+     */
+    private void procesasGetPage(Request request) throws ServerException {
+        procesarToken(request.token());
+        long after = 0;
+        Long offset = null;
+        int limit = DEFAULT_PAGE_SIZE;
+        try {
+            if (request.content() != null && !request.content().isBlank()) {
+                for (String param : request.content().split(",")) {
+                    var pair = param.split("=", 2);
+                    var value = pair[1].trim();
+                    switch (pair[0].trim()) {
+                        case "after" -> after = Long.parseLong(value);
+                        case "offset" -> offset = Long.parseLong(value);
+                        case "limit" -> limit = Integer.parseInt(value);
+                        default -> throw new IllegalArgumentException(pair[0]);
+                    }
+                }
+            }
+            if (limit <= 0 || after < 0 || (offset != null && offset < 0)) {
+                throw new IllegalArgumentException();
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Página no válida: " + request.content());
+            reply(request, Response.Status.ERROR, "Página no válida: " + request.content());
+            return;
+        }
+        int pageSize = Math.min(limit, MAX_PAGE_SIZE);
+        var funkosFlux = offset != null
+                ? funkosService.findAll(pageSize, offset)
+                : funkosService.findPage(after, pageSize);
+        funkosFlux
+                .collectList()
+                .subscribe(
+                        funkos -> {
+                            logger.debug("Respuesta enviada: página de " + funkos.size() + " funkos");
+                            var nextCursor = funkos.size() == pageSize ? funkos.get(funkos.size() - 1).getId() : null;
+                            reply(request, Response.Status.OK, connection.codec().encodeFunkos(funkos), nextCursor);
+                        },
+                        error -> {
+                            logger.error("Error al obtener la página de funkos: " + error.getMessage());
+                            reply(request, Response.Status.ERROR, error.getMessage());
+                        }
+                );
+    }
+
+    /**
+     * Envia un Funko por su identificador. Si esta en la cache se envia su respuesta ya codificada: solo se
+     * añaden a la trama el identificador de la peticion y la marca de tiempo, sin volver a serializar el Funko.
+     */
+    private void procesasGetById(Request request) throws ServerException {
+        procesarToken(request.token());
+
+        var id = parseId(request);
+        if (id == null) {
+            return;
+        }
+        funkosService.findResponseById(id, connection.codec()).subscribe(
+                response -> {
+                    logger.debug("Respuesta enviada: funko con id " + id);
+                    connection.sendFrame(response.toFrame(request.requestId()));
+                },
+                error -> {
+                    logger.warn("Funko no encontrado con id: " + request.content());
+                    reply(request, Response.Status.ERROR, error.getMessage());
+                }
+        );
+    }
+
+    /**
+     * Lee el identificador del contenido de la peticion; si no es un numero responde con un error.
+     *
+     * @return El identificador o null si no es valido.
+     */
+    private Long parseId(Request request) {
+        try {
+            return Long.parseLong(request.content().trim());
+        } catch (RuntimeException e) {
+            logger.warn("Id no válido: " + request.content());
+            reply(request, Response.Status.ERROR, "Id no válido: " + request.content());
+            return null;
+        }
+    }
+
+    /**
+     * Codifica el resultado de una consulta: el ya codificado de la cache de consultas si lo hay, o el de la
+     * consulta a la base de datos, que lo deja guardado para la siguiente vez.
+     */
+    private Mono<String> encodedQuery(FunkosQuery query, Flux<Funko> funkosFlux) {
+        var codec = connection.codec();
+        return funkosService.findSnapshot(query)
+                .map(snapshot -> snapshot.encoded(codec))
+                .switchIfEmpty(Mono.defer(() -> funkosFlux.collectList().map(codec::encodeFunkos)));
+    }
+
+    private void procesasGetByModel(Request request) throws ServerException {
+        procesarToken(request.token());
+        Model model;
+        try {
+            model = Model.valueOf(request.content());
+        } catch (IllegalArgumentException | NullPointerException e) {
+            logger.warn("Modelo no válido: " + request.content());
+            reply(request, Response.Status.ERROR, "Modelo no válido: " + request.content());
+            return;
+        }
+        encodedQuery(FunkosQuery.byModel(model), funkosService.findAllByModel(model))
+                .subscribe(
+                        resJson -> {
+                            logger.debug("Respuesta enviada: funkos del modelo " + model);
+                            reply(request, Response.Status.OK, resJson);
+                        },
+                        error -> {
+                            logger.error("Error al obtener los funkos por modelo: " + error.getMessage());
+                            reply(request, Response.Status.ERROR, error.getMessage());
+                        }
+                );
+    }
+
+    /**
+     * Busca los Funkos por fecha de lanzamiento. El contenido es un año (2023) o un rango de fechas
+     * separadas por una coma (2023-01-01,2023-06-30).
+     */
+    private void procesasGetByReleaseData(Request request) throws ServerException {
+        procesarToken(request.token());
+        FunkosQuery query;
+        Flux<Funko> funkosFlux;
+        try {
+            var range = request.content().split(",");
+            if (range.length == 2) {
+                var from = LocalDate.parse(range[0].trim());
+                var to = LocalDate.parse(range[1].trim());
+                query = FunkosQuery.byReleaseDate(from, to);
+                funkosFlux = funkosService.findAllByReleaseDate(from, to);
+            } else {
+                int year = Integer.parseInt(request.content().trim());
+                query = FunkosQuery.byReleaseYear(year);
+                funkosFlux = funkosService.findAllByReleaseYear(year);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Fecha de lanzamiento no válida: " + request.content());
+            reply(request, Response.Status.ERROR, "Fecha de lanzamiento no válida: " + request.content());
+            return;
+        }
+        encodedQuery(query, funkosFlux)
+                .subscribe(
+                        resJson -> {
+                            logger.debug("Respuesta enviada: funkos lanzados en " + request.content());
+                            reply(request, Response.Status.OK, resJson);
+                        },
+                        error -> {
+                            logger.error("Error al obtener los funkos por fecha de lanzamiento: " + error.getMessage());
+                            reply(request, Response.Status.ERROR, error.getMessage());
+                        }
+                );
+    }
+
+
+    private void procesarPost(Request request) throws ServerException {
+        var user = procesarToken(request.token());
+        if (user.isPresent() && user.get().role().equals(User.Role.ADMIN)) {
+            Funko funkoToSave = connection.codec().decodeFunko(request.content());
+            funkosService.save(funkoToSave).subscribe(
+                    funko -> {
+                        logger.debug("Respuesta enviada: " + funko);
+                        var resJson = connection.codec().encodeFunko(funko); // Mandamos todo como cadenas contenido
+                        reply(request, Response.Status.OK, resJson);
+                    },
+                    error -> {
+                        logger.error("Funko no encontrado con id: " + error.getMessage());
+                        reply(request, Response.Status.ERROR, error.getMessage());
+                    }
+            );
+        } else {
+            logger.error("Usuario no autenticado correctamente o no tiene permisos para esta acción");
+            throw new ServerException("Usuario no autenticado correctamente o no tiene permisos para esta acción");
+        }
+    }
+
+    private void procesasUpdate(Request request) throws ServerException {
+        var user = procesarToken(request.token());
+        if (user.isPresent() && user.get().role().equals(User.Role.ADMIN)) {
+            Funko funkoToUpdate = connection.codec().decodeFunko(request.content());
+            funkosService.update(funkoToUpdate).subscribe(
+                    funko -> {
+                        logger.debug("Respuesta enviada: " + funko);
+                        var resJson = connection.codec().encodeFunko(funko); // Mandamos todo como cadenas contenido
+                        reply(request, Response.Status.OK, resJson); // Respuesta
+                    },
+                    error -> {
+                        logger.error("Funko no encontrado con id: " + error.getMessage());
+                        reply(request, Response.Status.ERROR, error.getMessage());
+                    }
+            );
+        } else {
+            logger.error("Usuario no autenticado correctamente o no tiene permisos para esta acción");
+            throw new ServerException("Usuario no autenticado correctamente o no tiene permisos para esta acción");
+        }
+    }
+
+
+    private void procesasDelete(Request request) throws ServerException {
+        var user = procesarToken(request.token());
+        if (user.isPresent() && user.get().role().equals(User.Role.ADMIN)) { // Solo los admin pueden crear
+            var myId = parseId(request);
+            if (myId == null) {
+                return;
+            }
+            funkosService.deleteById(myId).subscribe(
+                    funko -> {
+                        var resJson = connection.codec().encodeFunko(funko); // Mandamos todo como cadenas
+                        reply(request, Response.Status.OK, resJson);
+                    },
+                    error -> {
+                        logger.error("Funko no encontrado con id: " + request.content());
+                        reply(request, Response.Status.ERROR, error.getMessage());
+                    }
+            );
+        } else {
+            logger.error("Usuario no autenticado correctamente o no tiene permisos para esta acción");
+            throw new ServerException("Usuario no autenticado correctamente o no tiene permisos para esta acción");
+        }
+    }
+
+    /**
+     * Procesa una peticion por lotes: el token y los permisos se comprueban una sola vez para todo el lote,
+     * el lote se ejecuta en una sola transaccion y la respuesta lleva el resultado de cada elemento.
+     */
+    private void procesarBatch(Request request) throws ServerException {
+        var user = procesarToken(request.token());
+        if (user.isPresent() && user.get().role().equals(User.Role.ADMIN)) {
+            var codec = connection.codec();
+            Flux<BatchResult> results = switch (request.type()) {
+                case BATCH_POST -> funkosService.saveAll(codec.decodeFunkos(request.content()));
+                case BATCH_UPDATE -> funkosService.updateAll(codec.decodeFunkos(request.content()));
+                default -> funkosService.deleteAllById(codec.decodeIds(request.content()));
+            };
+            results.collectList().subscribe(
+                    batch -> {
+                        logger.debug("Respuesta enviada: " + batch.size() + " resultados de " + request.type());
+                        reply(request, Response.Status.OK, codec.encodeBatchResults(batch));
+                    },
+                    error -> {
+                        logger.error("Error al procesar el lote: " + error.getMessage());
+                        reply(request, Response.Status.ERROR, error.getMessage());
+                    }
+            );
+        } else {
+            logger.error("Usuario no autenticado correctamente o no tiene permisos para esta acción");
+            throw new ServerException("Usuario no autenticado correctamente o no tiene permisos para esta acción");
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package develop.server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Escritor unico de una conexion. Los mensajes se pueden enviar desde cualquier hilo (los callbacks de Reactor
+ * terminan en hilos distintos), pero solo un hilo a la vez los escribe, cada trama entera,
+ * asi que las respuestas nunca se mezclan. El hilo que escribe vacia tambien lo que otros hayan encolado mientras
+ * y hace un solo flush por tanda.
+ */
+public class SerializedWriter {
+    private final Logger logger = LoggerFactory.getLogger(SerializedWriter.class);
+    private final Queue<byte[]> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger(0);
+    private final OutputStream out;
+    private volatile boolean failed = false;
+
+    /**
+     * Crea el escritor sobre la salida de la conexion.
+     *
+     * @param out Salida de la conexion. Solo la usa este escritor.
+     */
+    public SerializedWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Encola una trama y, si ningun otro hilo esta escribiendo, escribe todas las pendientes.
+     *
+     * @param frame La trama ya codificada que se envia.
+     */
+    public void write(byte[] frame) {
+        if (failed) {
+            return;
+        }
+        queue.add(frame);
+        if (pending.getAndIncrement() != 0) {
+            return; // Lo escribe el hilo que ya esta escribiendo
+        }
+        int missed = 1;
+        do {
+            drain();
+            missed = pending.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void drain() {
+        byte[] frame;
+        try {
+            while ((frame = queue.poll()) != null) {
+                if (!failed) {
+                    out.write(frame);
+                }
+            }
+            if (!failed) {
+                out.flush();
+            }
+        } catch (IOException e) {
+            logger.error("Error al escribir en la conexión: " + e.getMessage());
+            failed = true;
+            queue.clear();
+        }
+    }
+}
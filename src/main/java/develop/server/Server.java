@@ -3,18 +3,23 @@ package develop.server;
 
 import develop.common.models.IdGenerator;
 import develop.common.utils.PropertiesReader;
+import develop.server.repositories.funkos.FunkosOffHeapRepository;
+import develop.server.repositories.funkos.FunkosRepository;
 import develop.server.repositories.funkos.FunkosRepositoryImpl;
 import develop.server.services.services.database.DatabaseManager;
+import develop.server.nio.NioServer;
 import develop.server.services.services.funkos.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLServerSocket;
 import javax.net.ssl.SSLServerSocketFactory;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
@@ -28,7 +33,8 @@ public class Server {
     private static final AtomicLong clientNumber = new AtomicLong(0);
     private static final Logger logger = LoggerFactory.getLogger(Server.class);
     private static final int PUERTO = 3000;
-    private static final FunkosServiceImpl funkosService = FunkosServiceImpl.getInstance(FunkosRepositoryImpl.getInstance(DatabaseManager.getInstance(), IdGenerator.getInstance()), FunkosNotificationImpl.getInstance(), FunkosStorageImpl.getInstance());
+    private static final int BACKLOG = 1024; // Cola de conexiones pendientes de aceptar
+    private static final FunkosServiceImpl funkosService = FunkosServiceImpl.getInstance(createFunkosRepository(), FunkosNotificationImpl.getInstance(), FunkosStorageImpl.getInstance());
 
     /**
      * Metodo principal que inicia el servidor.
@@ -47,6 +53,9 @@ public class Server {
                             case DELETED:
                                 System.out.println("🔴 Funko eliminado: " + notificacion.getContenido());
                                 break;
+                            case IMPORTED:
+                                System.out.println("🔵 Funkos importados: " + notificacion.getCantidad());
+                                break;
                         }
                     },
                     error -> System.err.println("Se ha producido un error: " + error),
@@ -54,32 +63,90 @@ public class Server {
             );
 
 
-            FunkosServiceImpl funkosService = FunkosServiceImpl.getInstance(FunkosRepositoryImpl.getInstance(DatabaseManager.getInstance(), IdGenerator.getInstance()) , FunkosNotificationImpl.getInstance(), FunkosStorageImpl.getInstance());
-            funkosService.importFile().subscribe(funko -> funkosService.save(funko).block());
-
             var myConfig = readConfigFile();
 
+            if (myConfig.get("importMode").equalsIgnoreCase("INCREMENTAL")) {
+                funkosService.importIncremental().block();
+            } else {
+                funkosService.importAll().block();
+            }
+
             logger.debug("Configurando TSL");
             System.setProperty("javax.net.ssl.keyStore", myConfig.get("keyFile"));
             System.setProperty("javax.net.ssl.keyStorePassword", myConfig.get("keyPassword"));
 
-            SSLServerSocketFactory serverFactory = (SSLServerSocketFactory) SSLServerSocketFactory.getDefault();
-            SSLServerSocket serverSocket = (SSLServerSocket) serverFactory.createServerSocket(PUERTO);
+            boolean sessionMode = Boolean.parseBoolean(myConfig.get("sessionMode"));
+            switch (myConfig.get("serverEngine").toUpperCase()) {
+                case "NIO" -> startNioServer(funkosService, Integer.parseInt(myConfig.get("eventLoopThreads")), sessionMode);
+                case "VIRTUAL" -> startBlockingServer(funkosService, Thread.ofVirtual().name("client-virtual-", 1), sessionMode);
+                default -> startBlockingServer(funkosService, Thread.ofPlatform().name("client-", 1), sessionMode);
+            }
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+        }
+    }
+    /**
+     * Arranca un motor con un hilo por cada conexion aceptada: de plataforma (BLOCKING) o virtual (VIRTUAL).
+     *
+     * @param funkosService El servicio de Funkos.
+     * @param threads       Constructor de los hilos que atienden cada conexion.
+     * @param sessionMode   Si el usuario autenticado se guarda en la conexion tras el login.
+     * @throws IOException Si no se puede abrir el puerto de escucha.
+     */
+    private static void startBlockingServer(FunkosService funkosService, Thread.Builder threads, boolean sessionMode) throws IOException {
+        SSLServerSocketFactory serverFactory = (SSLServerSocketFactory) SSLServerSocketFactory.getDefault();
+        SSLServerSocket serverSocket = (SSLServerSocket) serverFactory.createServerSocket(PUERTO, BACKLOG);
 
-            logger.debug("Protocolos soportados: " + Arrays.toString(serverSocket.getSupportedProtocols()));
-            serverSocket.setEnabledCipherSuites(new String[]{"TLS_AES_128_GCM_SHA256"});
-            serverSocket.setEnabledProtocols(new String[]{"TLSv1.3"});
+        logger.debug("Protocolos soportados: " + Arrays.toString(serverSocket.getSupportedProtocols()));
+        serverSocket.setEnabledCipherSuites(new String[]{"TLS_AES_128_GCM_SHA256"});
+        serverSocket.setEnabledProtocols(new String[]{"TLSv1.3"});
 
 
-            System.out.println("🚀 Servidor escuchando en el puerto 3000");
+        System.out.println("🚀 Servidor escuchando en el puerto 3000");
 
-            while (true) {
-                new ClientHandler(serverSocket.accept(), clientNumber.incrementAndGet(), funkosService).start();
-            }
+        while (true) {
+            threads.start(new ClientHandler(serverSocket.accept(), clientNumber.incrementAndGet(), funkosService, sessionMode));
+        }
+    }
+
+    /**
+     * Arranca el motor NIO: unos pocos bucles de eventos con Selector y SSLEngine atienden todas las conexiones.
+     *
+     * @param funkosService    El servicio de Funkos.
+     * @param eventLoopThreads Numero de bucles de eventos (0 para usar uno por procesador).
+     * @param sessionMode      Si el usuario autenticado se guarda en la conexion tras el login.
+     * @throws IOException Si no se puede abrir el puerto de escucha.
+     */
+    private static void startNioServer(FunkosService funkosService, int eventLoopThreads, boolean sessionMode) throws IOException {
+        try {
+            NioServer server = new NioServer(PUERTO, SSLContext.getDefault(), eventLoopThreads, funkosService, sessionMode);
+            System.out.println("🚀 Servidor (NIO) escuchando en el puerto 3000");
+            server.start();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("No se puede crear el contexto TLS: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Crea el repositorio de Funkos del almacen configurado (storageEngine): H2 (la base de datos, por defecto)
+     * u OFFHEAP (en memoria fuera del heap, para catalogos muy grandes que no se conservan al parar el servidor).
+     *
+     * @return El repositorio de Funkos.
+     */
+    private static FunkosRepository createFunkosRepository() {
+        String storageEngine = "H2";
+        try {
+            storageEngine = new PropertiesReader("server.properties").getProperty("storageEngine", storageEngine);
         } catch (IOException e) {
-            System.err.println("Error: " + e.getMessage());
+            logger.error("Error al leer el almacén de funkos, se usa la base de datos: " + e.getLocalizedMessage());
+        }
+        if (storageEngine.equalsIgnoreCase("OFFHEAP")) {
+            logger.debug("Funkos guardados en memoria fuera del heap");
+            return FunkosOffHeapRepository.getInstance(IdGenerator.getInstance());
         }
+        return FunkosRepositoryImpl.getInstance(DatabaseManager.getInstance(), IdGenerator.getInstance());
     }
+
     /**
      * Lee la configuracion del servidor desde un archivo de propiedades.
      *
@@ -94,6 +161,10 @@ public class Server {
             String keyPassword = properties.getProperty("keyPassword");
             String tokenSecret = properties.getProperty("tokenSecret");
             String tokenExpiration = properties.getProperty("tokenExpiration");
+            String serverEngine = properties.getProperty("serverEngine", "BLOCKING");
+            String eventLoopThreads = properties.getProperty("eventLoopThreads", "0");
+            String sessionMode = properties.getProperty("sessionMode", "false");
+            String importMode = properties.getProperty("importMode", "FULL");
 
             if (keyFile.isEmpty() || keyPassword.isEmpty()) {
                 throw new IllegalStateException("Hay errores al procesar el fichero de propiedades o una de ellas está vacía");
@@ -108,6 +179,10 @@ public class Server {
             configMap.put("keyPassword", keyPassword);
             configMap.put("tokenSecret", tokenSecret);
             configMap.put("tokenExpiration", tokenExpiration);
+            configMap.put("serverEngine", serverEngine);
+            configMap.put("eventLoopThreads", eventLoopThreads);
+            configMap.put("sessionMode", sessionMode);
+            configMap.put("importMode", importMode);
 
             return configMap;
         } catch (FileNotFoundException e) {
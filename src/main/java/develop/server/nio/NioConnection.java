@@ -0,0 +1,381 @@
+package develop.server.nio;
+
+import develop.common.models.Response;
+import develop.common.protocol.WireCodec;
+import develop.server.ClientConnection;
+import develop.server.RequestProcessor;
+import develop.server.exceptions.server.ServerException;
+import develop.server.services.services.funkos.FunkosService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Conexion TLS no bloqueante con un cliente, atendida por un {@link NioEventLoop}.
+ * El cifrado se hace con un SSLEngine y el protocolo es el mismo que el del motor bloqueante,
+ * JSON o binario segun el primer byte que envia el cliente.
+ * Las peticiones se procesan en orden en el pool de trabajadores, para no bloquear el bucle de eventos.
+ * Las respuestas solo las cifra y escribe el hilo del bucle, asi que llegan enteras aunque se envien desde varios hilos.
+ */
+public class NioConnection implements ClientConnection {
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    private static final int MAX_WRAP_BUFFERS = 16;
+    private final Logger logger = LoggerFactory.getLogger(NioConnection.class);
+    private final NioEventLoop loop;
+    private final SocketChannel channel;
+    private final SSLEngine engine;
+    private final Executor workers;
+    private final long clientNumber;
+    private final RequestProcessor processor;
+    // Escrituras pedidas desde cualquier hilo, pendientes de cifrar
+    private final Queue<ByteBuffer> outbox = new ConcurrentLinkedQueue<>();
+    // Peticiones recibidas pendientes de procesar
+    private final Queue<byte[]> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean processing = new AtomicBoolean(false);
+    // Estado que solo se toca desde el hilo del bucle de eventos
+    private final ArrayDeque<ByteBuffer> pendingWrites = new ArrayDeque<>();
+    private ByteBuffer netIn;
+    private ByteBuffer appIn;
+    private ByteBuffer netOut;
+    private SelectionKey key;
+    private volatile WireCodec codec;
+    private volatile boolean closeRequested = false;
+    private boolean closed = false;
+
+    /**
+     * Crea una conexion no bloqueante.
+     *
+     * @param loop          Bucle de eventos que atiende la conexion.
+     * @param channel       Canal del cliente, en modo no bloqueante.
+     * @param engine        SSLEngine en modo servidor para la conexion.
+     * @param workers       Pool en el que se procesan las peticiones.
+     * @param funkosService El servicio de Funkos.
+     * @param sessionMode   Si el usuario autenticado se guarda en la conexion tras el login.
+     * @param clientNumber  Numero de cliente.
+     */
+    public NioConnection(NioEventLoop loop, SocketChannel channel, SSLEngine engine, Executor workers, FunkosService funkosService, boolean sessionMode, long clientNumber) {
+        this.loop = loop;
+        this.channel = channel;
+        this.engine = engine;
+        this.workers = workers;
+        this.clientNumber = clientNumber;
+        this.processor = new RequestProcessor(this, funkosService, sessionMode);
+        int packetSize = engine.getSession().getPacketBufferSize();
+        this.netIn = ByteBuffer.allocate(packetSize);
+        this.netOut = ByteBuffer.allocate(packetSize);
+        this.appIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+    }
+
+    /**
+     * Registra la conexion en el Selector de su bucle e inicia el handshake TLS.
+     * Debe ejecutarse en el hilo del bucle de eventos.
+     */
+    void register() {
+        try {
+            logger.debug("Conectando con el cliente nº: " + clientNumber + " : " + channel.getRemoteAddress());
+            key = channel.register(loop.selector(), SelectionKey.OP_READ, this);
+            engine.beginHandshake();
+        } catch (IOException e) {
+            logger.error("Error al registrar la conexión: " + e.getMessage());
+            abort();
+        }
+    }
+
+    /**
+     * Atiende los eventos del Selector para esta conexion.
+     *
+     * @param key La clave seleccionada.
+     * @throws IOException Si ocurre un error de E/S en el canal.
+     */
+    void handle(SelectionKey key) throws IOException {
+        if (key.isReadable()) {
+            int read = channel.read(netIn);
+            if (read < 0) {
+                logger.debug("El cliente nº " + clientNumber + " ha cerrado la conexión");
+                try {
+                    engine.closeInbound();
+                } catch (SSLException e) {
+                    logger.debug("Cierre TLS incompleto: " + e.getMessage());
+                }
+                abort();
+                return;
+            }
+        }
+        pump();
+    }
+
+    /**
+     * Codifica y encola una respuesta para el cliente. Se puede llamar desde cualquier hilo.
+     *
+     * @param response La respuesta que se envia.
+     */
+    @Override
+    public void send(Response response) {
+        outbox.add(ByteBuffer.wrap(codec.encodeResponse(response)));
+        scheduleFlush();
+    }
+
+    /**
+     * Encola una trama ya codificada para el cliente. Se puede llamar desde cualquier hilo.
+     *
+     * @param frame Los bytes de la trama.
+     */
+    @Override
+    public void sendFrame(byte[] frame) {
+        outbox.add(ByteBuffer.wrap(frame));
+        scheduleFlush();
+    }
+
+    @Override
+    public WireCodec codec() {
+        return codec;
+    }
+
+    /**
+     * Cierra la conexion una vez enviados los mensajes pendientes.
+     */
+    @Override
+    public void close() {
+        closeRequested = true;
+        scheduleFlush();
+    }
+
+    /**
+     * Cierra el canal de inmediato, sin esperar a los mensajes pendientes.
+     */
+    void abort() {
+        closed = true;
+        closeRequested = true;
+        inbox.clear();
+        outbox.clear();
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Error al cerrar el canal: " + e.getMessage());
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            loop.execute(() -> {
+                flushScheduled.set(false);
+                try {
+                    pump();
+                } catch (IOException e) {
+                    logger.debug("Error al escribir en la conexión: " + e.getMessage());
+                    abort();
+                }
+            });
+        }
+    }
+
+    /**
+     * Avanza la maquina de estados del SSLEngine mientras haya progreso: handshake, descifrado de lo recibido
+     * y cifrado de lo pendiente de enviar. Despues vuelca al canal y entrega las peticiones completas.
+     */
+    private void pump() throws IOException {
+        if (closed) {
+            return;
+        }
+        boolean progress = true;
+        while (progress && !closed) {
+            switch (engine.getHandshakeStatus()) {
+                case NEED_TASK -> {
+                    Runnable task;
+                    while ((task = engine.getDelegatedTask()) != null) {
+                        task.run();
+                    }
+                    progress = true;
+                }
+                case NEED_WRAP -> progress = wrap(EMPTY);
+                case NEED_UNWRAP, NEED_UNWRAP_AGAIN -> progress = unwrap();
+                default -> progress = unwrap() | wrapPending();
+            }
+        }
+        if (closed) {
+            return;
+        }
+        flushNet();
+        deliverRequests();
+        if (closeRequested && outbox.isEmpty() && pendingWrites.isEmpty() && netOut.position() == 0) {
+            closeGracefully();
+            return;
+        }
+        if (key.isValid()) {
+            key.interestOps(netOut.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+        }
+    }
+
+    private boolean unwrap() throws IOException {
+        if (netIn.position() == 0) {
+            return false;
+        }
+        netIn.flip();
+        SSLEngineResult result;
+        try {
+            result = engine.unwrap(netIn, appIn);
+        } finally {
+            netIn.compact();
+        }
+        switch (result.getStatus()) {
+            case BUFFER_OVERFLOW -> {
+                appIn = enlarge(appIn, engine.getSession().getApplicationBufferSize());
+                return true;
+            }
+            case BUFFER_UNDERFLOW -> {
+                if (!netIn.hasRemaining()) {
+                    netIn = enlarge(netIn, engine.getSession().getPacketBufferSize());
+                }
+                return false;
+            }
+            case CLOSED -> {
+                closeRequested = true;
+                return false;
+            }
+            default -> {
+                return result.bytesConsumed() > 0 || result.bytesProduced() > 0;
+            }
+        }
+    }
+
+    private boolean wrapPending() throws IOException {
+        ByteBuffer next;
+        while (pendingWrites.size() < MAX_WRAP_BUFFERS && (next = outbox.poll()) != null) {
+            pendingWrites.add(next);
+        }
+        if (pendingWrites.isEmpty()) {
+            return false;
+        }
+        boolean progress = wrap(pendingWrites.toArray(new ByteBuffer[0]));
+        while (!pendingWrites.isEmpty() && !pendingWrites.peek().hasRemaining()) {
+            pendingWrites.poll();
+        }
+        return progress;
+    }
+
+    private boolean wrap(ByteBuffer... src) throws IOException {
+        int packetSize = engine.getSession().getPacketBufferSize();
+        if (netOut.remaining() < packetSize) {
+            flushNet();
+            if (netOut.remaining() < packetSize) {
+                if (netOut.capacity() < packetSize) {
+                    netOut = enlarge(netOut, packetSize);
+                }
+                return false;
+            }
+        }
+        SSLEngineResult result = engine.wrap(src, netOut);
+        if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+            closeRequested = true;
+        }
+        return result.bytesConsumed() > 0 || result.bytesProduced() > 0;
+    }
+
+    private void flushNet() throws IOException {
+        if (netOut.position() > 0) {
+            netOut.flip();
+            channel.write(netOut);
+            netOut.compact();
+        }
+    }
+
+    private void deliverRequests() throws IOException {
+        appIn.flip();
+        if (codec == null && appIn.hasRemaining()) {
+            negotiateProtocol();
+        }
+        boolean delivered = false;
+        int length;
+        while (codec != null && (length = codec.frameLength(appIn)) > 0) {
+            byte[] frame = new byte[length];
+            appIn.get(frame);
+            if (!closeRequested) {
+                inbox.add(frame);
+                delivered = true;
+            }
+        }
+        appIn.compact();
+        if (delivered) {
+            scheduleProcessing();
+        }
+    }
+
+    /**
+     * Elige el protocolo segun el primer byte recibido: la marca del binario se consume y se devuelve como confirmacion.
+     */
+    private void negotiateProtocol() {
+        byte first = appIn.get(appIn.position());
+        codec = WireCodec.forFirstByte(first);
+        if (first == WireCodec.BINARY_MAGIC) {
+            appIn.get();
+            outbox.add(ByteBuffer.wrap(new byte[]{WireCodec.BINARY_MAGIC}));
+            scheduleFlush();
+        }
+        logger.debug("Protocolo del cliente nº " + clientNumber + ": " + codec.getClass().getSimpleName());
+    }
+
+    private void scheduleProcessing() {
+        if (processing.compareAndSet(false, true)) {
+            workers.execute(this::processRequests);
+        }
+    }
+
+    /**
+     * Procesa en orden las peticiones recibidas. Solo un trabajador a la vez procesa las de una conexion.
+     */
+    private void processRequests() {
+        byte[] frame;
+        while (!closeRequested && (frame = inbox.poll()) != null) {
+            try {
+                processor.process(codec.decodeRequest(frame));
+            } catch (ServerException ex) {
+                logger.warn("Cerrando la conexión tras un error: " + ex.getMessage());
+                close();
+            } catch (IOException | RuntimeException e) {
+                logger.error("Error: " + e.getMessage());
+                close();
+            }
+        }
+        processing.set(false);
+        if (!closeRequested && !inbox.isEmpty()) {
+            scheduleProcessing();
+        }
+    }
+
+    private void closeGracefully() {
+        logger.debug("Cerrando la conexión con el cliente nº: " + clientNumber);
+        try {
+            engine.closeOutbound();
+            while (!engine.isOutboundDone() && wrap(EMPTY)) {
+                // Generamos el close_notify
+            }
+            flushNet();
+        } catch (IOException e) {
+            logger.debug("Error al cerrar TLS: " + e.getMessage());
+        }
+        abort();
+    }
+
+    private static ByteBuffer enlarge(ByteBuffer buffer, int minCapacity) {
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(minCapacity, buffer.capacity() * 2));
+        buffer.flip();
+        bigger.put(buffer);
+        return bigger;
+    }
+}
@@ -0,0 +1,123 @@
+package develop.server.nio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Bucle de eventos que multiplexa con un unico Selector todas las conexiones que tiene asignadas.
+ * Todas las operaciones sobre los canales y los SSLEngine de sus conexiones se ejecutan en su hilo.
+ */
+public class NioEventLoop implements Runnable {
+    private final Logger logger = LoggerFactory.getLogger(NioEventLoop.class);
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+    private Thread thread;
+
+    /**
+     * Crea un bucle de eventos con su propio Selector.
+     *
+     * @throws IOException Si no se puede abrir el Selector.
+     */
+    public NioEventLoop() throws IOException {
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Arranca el bucle de eventos en un nuevo hilo.
+     *
+     * @param name Nombre del hilo.
+     */
+    public void start(String name) {
+        thread = new Thread(this, name);
+        thread.start();
+    }
+
+    /**
+     * Selector del bucle, sobre el que se registran sus conexiones.
+     *
+     * @return El Selector del bucle.
+     */
+    Selector selector() {
+        return selector;
+    }
+
+    /**
+     * Indica si el hilo actual es el del bucle de eventos.
+     *
+     * @return true si se llama desde el hilo del bucle.
+     */
+    boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Encola una tarea para que se ejecute en el hilo del bucle y lo despierta.
+     *
+     * @param task La tarea a ejecutar.
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Detiene el bucle de eventos.
+     */
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                selector.select();
+                runTasks();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    NioConnection connection = (NioConnection) key.attachment();
+                    try {
+                        connection.handle(key);
+                    } catch (IOException | CancelledKeyException e) {
+                        logger.debug("Conexión cerrada: " + e.getMessage());
+                        connection.abort();
+                    } catch (RuntimeException e) {
+                        // Un fallo en una conexion (SSLEngine, tramas) solo cierra esa conexion, no el bucle
+                        logger.error("Error en una conexión, se cierra: " + e.getMessage());
+                        connection.abort();
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Error en el bucle de eventos: " + e.getMessage());
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.error("Error al cerrar el selector: " + e.getMessage());
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.error("Error en una tarea del bucle de eventos: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package develop.server.nio;
+
+import develop.server.services.services.funkos.FunkosService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servidor no bloqueante (motor NIO): acepta conexiones y las reparte entre un numero fijo de bucles de eventos,
+ * cada uno con su Selector, en lugar de crear un hilo por cliente.
+ */
+public class NioServer {
+    private final Logger logger = LoggerFactory.getLogger(NioServer.class);
+    private final AtomicLong clientNumber = new AtomicLong(0);
+    private final int port;
+    private final SSLContext sslContext;
+    private final FunkosService funkosService;
+    private final boolean sessionMode;
+    private final NioEventLoop[] eventLoops;
+    private final ExecutorService workers;
+
+    /**
+     * Crea el servidor no bloqueante.
+     *
+     * @param port             Puerto de escucha.
+     * @param sslContext       Contexto TLS con el almacen de claves del servidor.
+     * @param eventLoopThreads Numero de bucles de eventos (0 para usar uno por procesador).
+     * @param funkosService    El servicio de Funkos.
+     * @param sessionMode      Si el usuario autenticado se guarda en la conexion tras el login.
+     * @throws IOException Si no se pueden abrir los selectores.
+     */
+    public NioServer(int port, SSLContext sslContext, int eventLoopThreads, FunkosService funkosService, boolean sessionMode) throws IOException {
+        this.port = port;
+        this.sslContext = sslContext;
+        this.funkosService = funkosService;
+        this.sessionMode = sessionMode;
+        int processors = Runtime.getRuntime().availableProcessors();
+        this.eventLoops = new NioEventLoop[eventLoopThreads > 0 ? eventLoopThreads : processors];
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new NioEventLoop();
+        }
+        this.workers = Executors.newFixedThreadPool(processors);
+    }
+
+    /**
+     * Arranca los bucles de eventos y acepta conexiones en el hilo actual.
+     *
+     * @throws IOException Si no se puede abrir el puerto de escucha.
+     */
+    public void start() throws IOException {
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i].start("nio-event-loop-" + i);
+        }
+        logger.debug("Bucles de eventos arrancados: " + eventLoops.length);
+
+        try (ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+            serverChannel.bind(new InetSocketAddress(port), 1024);
+            while (true) {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                long number = clientNumber.incrementAndGet();
+                NioEventLoop loop = eventLoops[(int) (number % eventLoops.length)];
+                NioConnection connection = new NioConnection(loop, channel, createEngine(), workers, funkosService, sessionMode, number);
+                loop.execute(connection::register);
+            }
+        } finally {
+            for (NioEventLoop loop : eventLoops) {
+                loop.shutdown();
+            }
+            workers.shutdown();
+        }
+    }
+
+    private SSLEngine createEngine() {
+        SSLEngine engine = sslContext.createSSLEngine();
+        engine.setUseClientMode(false);
+        engine.setEnabledCipherSuites(new String[]{"TLS_AES_128_GCM_SHA256"});
+        engine.setEnabledProtocols(new String[]{"TLSv1.3"});
+        return engine;
+    }
+}
@@ -0,0 +1,505 @@
+package develop.server.repositories.funkos;
+
+import develop.common.models.Funko;
+import develop.common.models.IdGenerator;
+import develop.common.models.Model;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Implementacion de la interfaz FunkosRepository que guarda los Funkos en memoria fuera del heap
+ * ({@link OffHeapFunkoStore}), para catalogos muy grandes que no tienen que sobrevivir a un reinicio del servidor.
+ * Las lecturas se hacen con el cerrojo de lectura y las escrituras con el de escritura, cada operacion de lote
+ * de una vez, asi que se ven enteras o no se ven, como las transacciones de la base de datos.
+ * Los recorridos filtran los registros sin crear los Funkos y leen de {@value #SCAN_BATCH} en
+ * {@value #SCAN_BATCH} registros, soltando el cerrojo entre lotes; continuan por ID, asi que no les afecta
+ * que se compacte el almacen a mitad.
+ */
+public class FunkosOffHeapRepository implements FunkosRepository {
+    private static final int CHUNK_RECORDS = 16_384; // Registros por bloque de memoria (1,25 MB)
+    private static final int SCAN_BATCH = 1_024; // Registros que se leen cada vez que se toma el cerrojo en un recorrido
+    private static final int IMPORT_BATCH_ROWS = 5_000; // Funkos que se guardan cada vez que se toma el cerrojo en la carga masiva
+    private static FunkosOffHeapRepository instance;
+    private final Logger logger = LoggerFactory.getLogger(FunkosOffHeapRepository.class);
+    private final IdGenerator idGenerator;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final OffHeapFunkoStore store = new OffHeapFunkoStore(CHUNK_RECORDS);
+    private final Map<String, ImportCheckpoint> checkpoints = new HashMap<>();
+    private long lastId; // Ultimo ID asignado; como el AUTO_INCREMENT, no vuelve atras al borrar
+
+    private FunkosOffHeapRepository(IdGenerator idGenerator) {
+        this.idGenerator = idGenerator;
+    }
+
+    public synchronized static FunkosOffHeapRepository getInstance(IdGenerator idGenerator) {
+        if (instance == null) {
+            instance = new FunkosOffHeapRepository(idGenerator);
+        }
+        return instance;
+    }
+
+    /**
+     * Obtiene todos los Funkos guardados.
+     *
+     * @return Un Flux que emite todos los Funkos, ordenados por ID.
+     */
+    @Override
+    public Flux<Funko> findAll() {
+        logger.debug("Buscando todos los funkos");
+        return scan(0, view -> true);
+    }
+
+    /**
+     * Obtiene una pagina de Funkos a partir de un cursor. El primer registro se busca por biseccion,
+     * asi que el coste de cada pagina no depende de lo lejos que este.
+     *
+     * @param afterId ID del ultimo Funko de la pagina anterior (0 para la primera pagina).
+     * @param limit   Numero maximo de Funkos de la pagina.
+     * @return Un Flux que emite los Funkos de la pagina, ordenados por ID.
+     */
+    @Override
+    public Flux<Funko> findPage(long afterId, int limit) {
+        logger.debug("Buscando pagina de funkos después del id " + afterId + " con límite " + limit);
+        return scan(afterId, view -> true).take(limit);
+    }
+
+    /**
+     * Obtiene una pagina de Funkos saltando los primeros, que hay que recorrer; para recorrer catalogos grandes
+     * es mejor {@link #findPage(long, int)}.
+     *
+     * @param limit  Numero maximo de Funkos de la pagina.
+     * @param offset Numero de Funkos que se saltan.
+     * @return Un Flux que emite los Funkos de la pagina, ordenados por ID.
+     */
+    @Override
+    public Flux<Funko> findAll(int limit, long offset) {
+        logger.debug("Buscando pagina de funkos con límite " + limit + " y desplazamiento " + offset);
+        return scan(0, view -> true).skip(offset).take(limit);
+    }
+
+    /**
+     * Busca los Funkos cuyo nombre contiene la cadena, distinguiendo mayusculas como el LIKE de la base de datos.
+     * Se comparan los bytes del nombre sin decodificarlo.
+     *
+     * @param nombre La cadena que se busca en el nombre.
+     * @return Un Flux que emite los Funkos encontrados, ordenados por ID.
+     */
+    @Override
+    public Flux<Funko> findByNombre(String nombre) {
+        logger.debug("Buscando todos los funkos por nombre");
+        byte[] needle = nombre.getBytes(StandardCharsets.UTF_8);
+        return scan(0, view -> view.nameContains(needle));
+    }
+
+    /**
+     * Busca los Funkos de un modelo.
+     *
+     * @param model El modelo de los Funkos que se buscan.
+     * @return Un Flux que emite los Funkos encontrados, ordenados por ID.
+     */
+    @Override
+    public Flux<Funko> findByModel(Model model) {
+        logger.debug("Buscando todos los funkos por modelo: " + model);
+        return scan(0, view -> view.isModel(model));
+    }
+
+    /**
+     * Busca los Funkos lanzados entre dos fechas.
+     *
+     * @param from Primera fecha del rango, incluida.
+     * @param to   Ultima fecha del rango, incluida.
+     * @return Un Flux que emite los Funkos encontrados, ordenados por fecha de lanzamiento y despues por ID.
+     */
+    @Override
+    public Flux<Funko> findByReleaseDateBetween(LocalDate from, LocalDate to) {
+        logger.debug("Buscando todos los funkos con fecha de lanzamiento entre " + from + " y " + to);
+        long fromDay = from.toEpochDay();
+        long toDay = to.toEpochDay();
+        return scan(0, view -> view.isReleasedBetween(fromDay, toDay))
+                .collectSortedList(Comparator.comparing(Funko::getReleaseData).thenComparingLong(Funko::getId))
+                .flatMapIterable(funkos -> funkos);
+    }
+
+    /**
+     * Busca un Funko por su ID.
+     *
+     * @param id El identificador del Funko.
+     * @return Un Mono que emite una copia del Funko o vacio si no existe.
+     */
+    @Override
+    public Mono<Funko> findById(Long id) {
+        logger.debug("Buscando funko por id: " + id);
+        return read(() -> {
+            int slot = store.slotOf(id);
+            return slot < 0 ? null : store.view().moveTo(slot).toFunko();
+        });
+    }
+
+    /**
+     * Busca un Funko por su UUID. Si el UUID se repite devuelve el de menor ID.
+     *
+     * @param uuid El UUID del Funko que se busca.
+     * @return Un Mono que emite una copia del Funko o vacio si no existe.
+     */
+    @Override
+    public Mono<Funko> findByUuid(UUID uuid) {
+        logger.debug("Buscando funko por uuid: " + uuid);
+        return read(() -> {
+            int slot = store.slotOf(uuid);
+            return slot < 0 ? null : store.view().moveTo(slot).toFunko();
+        });
+    }
+
+    /**
+     * Guarda un Funko y le asigna su ID y su MyId.
+     *
+     * @param funko La entidad que se va a guardar.
+     * @return Un Mono que emite el Funko guardado, con su ID y su MyId.
+     */
+    @Override
+    public Mono<Funko> save(Funko funko) {
+        logger.debug("Guardando funko: " + funko);
+        return write(() -> {
+            funko.setMyId(idGenerator.getIdAndIncrement());
+            insert(funko);
+            return funko;
+        });
+    }
+
+    /**
+     * Actualiza el nombre, el modelo y el precio de un Funko.
+     *
+     * @param funko La entidad que se va a actualizar.
+     * @return Un Mono que emite el Funko tal y como queda guardado, o vacio si no existe.
+     */
+    @Override
+    public Mono<Funko> update(Funko funko) {
+        logger.debug("Actualizando funko: " + funko);
+        return write(() -> {
+            int slot = store.slotOf(funko.getId());
+            if (slot < 0) {
+                return null;
+            }
+            funko.setUpdatedAt(LocalDateTime.now());
+            store.update(slot, funko.getName(), funko.getModel(), funko.getPrice(), funko.getUpdatedAt());
+            return store.view().moveTo(slot).toFunko();
+        });
+    }
+
+    /**
+     * Elimina un Funko por su ID.
+     *
+     * @param id El identificador de la entidad que se va a eliminar.
+     * @return Un Mono que emite un boolean indicando si se realizo el borrado o no.
+     */
+    @Override
+    public Mono<Boolean> deleteById(Long id) {
+        logger.debug("Borrando funko por id: " + id);
+        return deleteAndGetById(id).map(deleted -> true).defaultIfEmpty(false);
+    }
+
+    /**
+     * Elimina un Funko y lo devuelve.
+     *
+     * @param id El identificador del Funko que se va a eliminar.
+     * @return Un Mono que emite el Funko eliminado, o vacio si no existe.
+     */
+    @Override
+    public Mono<Funko> deleteAndGetById(Long id) {
+        logger.debug("Borrando y devolviendo funko por id: " + id);
+        return write(() -> {
+            Funko deleted = delete(id);
+            compactIfNeeded();
+            return deleted;
+        });
+    }
+
+    /**
+     * Elimina todos los Funkos y libera su memoria. Los ID no vuelven a empezar.
+     *
+     * @return Un Mono que completa una vez eliminados los Funkos.
+     */
+    @Override
+    public Mono<Void> deleteAll() {
+        logger.debug("Borrando todos los funkos");
+        return write(() -> {
+            store.clear();
+            return null;
+        }).then();
+    }
+
+    /**
+     * Guarda varios Funkos de una vez.
+     *
+     * @param funkos Los Funkos que se van a guardar.
+     * @return Un Flux que emite los Funkos guardados, en el mismo orden y con su ID.
+     */
+    @Override
+    public Flux<Funko> saveAll(List<Funko> funkos) {
+        logger.debug("Guardando " + funkos.size() + " funkos en lote");
+        if (funkos.isEmpty()) {
+            return Flux.empty();
+        }
+        return write(() -> {
+            for (Funko funko : funkos) {
+                funko.setMyId(idGenerator.getIdAndIncrement());
+                insert(funko);
+            }
+            return funkos;
+        }).flatMapIterable(saved -> saved);
+    }
+
+    /**
+     * Carga masiva de Funkos en lotes de {@value #IMPORT_BATCH_ROWS}, tomando el cerrojo de escritura una vez
+     * por lote para que las lecturas no esperen a toda la carga.
+     *
+     * @param funkos Los Funkos que se van a cargar.
+     * @return Un Mono que emite el numero de Funkos insertados.
+     */
+    @Override
+    public Mono<Long> importAll(Flux<Funko> funkos) {
+        logger.debug("Importando funkos en lotes de " + IMPORT_BATCH_ROWS);
+        return funkos
+                .buffer(IMPORT_BATCH_ROWS)
+                .concatMap(this::saveAll)
+                .count();
+    }
+
+    /**
+     * Prepara el almacen para la importacion incremental: se borran los Funkos con el codigo repetido
+     * (se queda el de menor ID) y el generador de MyId continua desde el mayor guardado.
+     *
+     * @return Un Mono que se completa cuando el almacen esta preparado.
+     */
+    @Override
+    public Mono<Void> prepareIncrementalImport() {
+        logger.debug("Preparando los funkos para la importación incremental");
+        return write(() -> {
+            Set<UUID> cods = new HashSet<>();
+            OffHeapFunkoStore.View view = store.view();
+            long maxMyId = 0;
+            int deleted = 0;
+            for (int slot = 0; slot < store.slots(); slot++) {
+                view.moveTo(slot);
+                if (!view.isLive()) {
+                    continue;
+                }
+                UUID cod = view.cod();
+                if (cod != null && !cods.add(cod)) {
+                    store.delete(slot);
+                    deleted++;
+                } else {
+                    maxMyId = Math.max(maxMyId, view.myId());
+                }
+            }
+            if (deleted > 0) {
+                logger.debug("Funkos con el código repetido borrados: " + deleted);
+                compactIfNeeded();
+            }
+            return maxMyId;
+        }).doOnNext(idGenerator::ensureAbove).then();
+    }
+
+    /**
+     * Busca el punto de control de la importacion de un archivo. Los puntos de control se pierden al parar
+     * el servidor, igual que los Funkos.
+     *
+     * @param fileName Nombre del archivo importado.
+     * @return Un Mono que emite el punto de control o un valor vacio si el archivo no se ha importado nunca.
+     */
+    @Override
+    public Mono<ImportCheckpoint> findCheckpoint(String fileName) {
+        logger.debug("Buscando el punto de control de la importación de " + fileName);
+        return read(() -> checkpoints.get(fileName));
+    }
+
+    /**
+     * Inserta o actualiza por su codigo un lote de Funkos y guarda el punto de control, todo con el cerrojo
+     * de escritura. Los Funkos que ya existen con los mismos datos no se modifican. Si un codigo se repite en
+     * el lote gana el ultimo.
+     *
+     * @param funkos     Los Funkos del lote.
+     * @param checkpoint El punto de control que queda guardado con el lote.
+     * @return Un Mono que emite el numero de Funkos insertados o modificados.
+     */
+    @Override
+    public Mono<Long> mergeAll(List<Funko> funkos, ImportCheckpoint checkpoint) {
+        logger.debug("Importando " + funkos.size() + " funkos hasta la posición " + checkpoint.byteOffset());
+        Map<UUID, Funko> byCod = new LinkedHashMap<>();
+        funkos.forEach(funko -> byCod.put(funko.getCod(), funko));
+        return write(() -> {
+            long changed = 0;
+            OffHeapFunkoStore.View view = store.view();
+            for (Funko funko : byCod.values()) {
+                int slot = funko.getCod() == null ? -1 : store.slotOf(funko.getCod());
+                if (slot < 0) {
+                    funko.setMyId(idGenerator.getIdAndIncrement());
+                    insert(funko);
+                    changed++;
+                } else if (!sameData(view.moveTo(slot), funko)) {
+                    store.update(slot, funko.getName(), funko.getModel(), funko.getPrice(), funko.getUpdatedAt());
+                    store.setReleaseData(slot, funko.getReleaseData());
+                    changed++;
+                }
+            }
+            checkpoints.put(checkpoint.fileName(), checkpoint);
+            return changed;
+        });
+    }
+
+    /**
+     * Actualiza varios Funkos de una vez.
+     *
+     * @param funkos Los Funkos que se van a actualizar.
+     * @return Un Flux que emite, en el mismo orden, si cada Funko existia y se ha actualizado.
+     */
+    @Override
+    public Flux<Boolean> updateAll(List<Funko> funkos) {
+        logger.debug("Actualizando " + funkos.size() + " funkos en lote");
+        if (funkos.isEmpty()) {
+            return Flux.empty();
+        }
+        return write(() -> {
+            List<Boolean> updated = new ArrayList<>(funkos.size());
+            for (Funko funko : funkos) {
+                funko.setUpdatedAt(LocalDateTime.now());
+                int slot = store.slotOf(funko.getId());
+                if (slot >= 0) {
+                    store.update(slot, funko.getName(), funko.getModel(), funko.getPrice(), funko.getUpdatedAt());
+                }
+                updated.add(slot >= 0);
+            }
+            return updated;
+        }).flatMapIterable(updated -> updated);
+    }
+
+    /**
+     * Elimina varios Funkos por su ID de una vez.
+     *
+     * @param ids Los identificadores de los Funkos que se van a eliminar.
+     * @return Un Flux que emite los Funkos que existian y se han eliminado.
+     */
+    @Override
+    public Flux<Funko> deleteAllById(List<Long> ids) {
+        logger.debug("Borrando " + ids.size() + " funkos en lote");
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        return write(() -> {
+            List<Funko> deleted = new ArrayList<>();
+            for (Long id : ids) {
+                Funko funko = delete(id);
+                if (funko != null) {
+                    deleted.add(funko);
+                }
+            }
+            compactIfNeeded();
+            return deleted;
+        }).flatMapIterable(deleted -> deleted);
+    }
+
+    /**
+     * Recorre los registros en orden de ID a partir de un ID, creando solo los Funkos que pasan el filtro.
+     * Cada lote se lee con el cerrojo de lectura y se emite sin el.
+     */
+    private Flux<Funko> scan(long afterId, Predicate<OffHeapFunkoStore.View> filter) {
+        return Flux.<List<Funko>, Long>generate(() -> afterId, (lastId, sink) -> {
+            List<Funko> batch = new ArrayList<>();
+            long last = lastId;
+            lock.readLock().lock();
+            try {
+                OffHeapFunkoStore.View view = store.view();
+                int slot = store.firstSlotAfter(lastId);
+                int end = Math.min(store.slots(), slot + SCAN_BATCH);
+                if (slot == end) {
+                    sink.complete();
+                    return lastId;
+                }
+                for (; slot < end; slot++) {
+                    view.moveTo(slot);
+                    last = view.id();
+                    if (view.isLive() && filter.test(view)) {
+                        batch.add(view.toFunko());
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+            sink.next(batch);
+            return last;
+        }).concatMapIterable(batch -> batch);
+    }
+
+    private <T> Mono<T> read(Supplier<T> operation) {
+        return Mono.fromSupplier(() -> {
+            lock.readLock().lock();
+            try {
+                return operation.get();
+            } finally {
+                lock.readLock().unlock();
+            }
+        });
+    }
+
+    private <T> Mono<T> write(Supplier<T> operation) {
+        return Mono.fromSupplier(() -> {
+            lock.writeLock().lock();
+            try {
+                return operation.get();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // Los siguientes metodos se llaman con el cerrojo de escritura tomado
+
+    private void insert(Funko funko) {
+        funko.setId(++lastId);
+        store.append(funko);
+    }
+
+    private Funko delete(long id) {
+        int slot = store.slotOf(id);
+        if (slot < 0) {
+            return null;
+        }
+        Funko funko = store.view().moveTo(slot).toFunko();
+        store.delete(slot);
+        return funko;
+    }
+
+    private void compactIfNeeded() {
+        int slots = store.slots();
+        if (store.compactIfNeeded()) {
+            logger.debug("Almacén de funkos compactado de " + slots + " a " + store.slots() + " registros, "
+                    + store.names() + " nombres");
+        }
+    }
+
+    private static boolean sameData(OffHeapFunkoStore.View view, Funko funko) {
+        return Objects.equals(view.name(), funko.getName())
+                && view.model() == funko.getModel()
+                && view.price() == funko.getPrice()
+                && Objects.equals(view.releaseData(), funko.getReleaseData());
+    }
+}
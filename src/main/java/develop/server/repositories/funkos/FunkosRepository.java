@@ -2,10 +2,13 @@ package develop.server.repositories.funkos;
 
 
 import develop.common.models.Funko;
+import develop.common.models.Model;
 import develop.server.repositories.crud.CrudRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDate;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -28,4 +31,104 @@ public interface FunkosRepository extends CrudRepository<Funko, Long> {
      * @return Un Flux que emite los Funkos encontrados.
      */
     Flux<Funko> findByNombre(String nombre);
+
+    /**
+     * Elimina un Funko por su identificador y devuelve la fila eliminada.
+     *
+     * @param id El identificador del Funko que se va a eliminar.
+     * @return Un Mono que emite el Funko eliminado o un valor vacio si no se encuentra.
+     */
+    Mono<Funko> deleteAndGetById(Long id);
+
+    /**
+     * Busca Funkos por su modelo.
+     *
+     * @param model El modelo de los Funkos que se buscan.
+     * @return Un Flux que emite los Funkos encontrados.
+     */
+    Flux<Funko> findByModel(Model model);
+
+    /**
+     * Obtiene una pagina de Funkos ordenados por ID a partir de un cursor (paginacion por clave).
+     *
+     * @param afterId ID del ultimo Funko de la pagina anterior (0 para la primera pagina).
+     * @param limit   Numero maximo de Funkos de la pagina.
+     * @return Un Flux que emite los Funkos de la pagina, ordenados por ID.
+     */
+    Flux<Funko> findPage(long afterId, int limit);
+
+    /**
+     * Obtiene una pagina de Funkos ordenados por ID saltando los primeros.
+     *
+     * @param limit  Numero maximo de Funkos de la pagina.
+     * @param offset Numero de Funkos que se saltan.
+     * @return Un Flux que emite los Funkos de la pagina, ordenados por ID.
+     */
+    Flux<Funko> findAll(int limit, long offset);
+
+    /**
+     * Busca Funkos con fecha de lanzamiento dentro de un rango.
+     *
+     * @param from Primera fecha del rango, incluida.
+     * @param to   Ultima fecha del rango, incluida.
+     * @return Un Flux que emite los Funkos encontrados, ordenados por fecha de lanzamiento.
+     */
+    Flux<Funko> findByReleaseDateBetween(LocalDate from, LocalDate to);
+
+    /**
+     * Guarda varios Funkos en una sola transaccion, con inserciones de varias filas.
+     *
+     * @param funkos Los Funkos que se van a guardar.
+     * @return Un Flux que emite los Funkos guardados, en el mismo orden y con el ID asignado por la base de datos.
+     */
+    Flux<Funko> saveAll(List<Funko> funkos);
+
+    /**
+     * Carga masiva de Funkos: se agrupan en lotes y cada lote se inserta en su propia transaccion.
+     *
+     * @param funkos Los Funkos que se van a cargar.
+     * @return Un Mono que emite el numero de Funkos insertados.
+     */
+    Mono<Long> importAll(Flux<Funko> funkos);
+
+    /**
+     * Prepara la tabla para la importacion incremental: exige que el codigo de los Funkos sea unico y hace que
+     * los MyId nuevos no repitan los ya guardados.
+     *
+     * @return Un Mono que se completa cuando la tabla esta preparada.
+     */
+    Mono<Void> prepareIncrementalImport();
+
+    /**
+     * Busca el punto de control de la importacion de un archivo.
+     *
+     * @param fileName Nombre del archivo importado.
+     * @return Un Mono que emite el punto de control o un valor vacio si el archivo no se ha importado nunca.
+     */
+    Mono<ImportCheckpoint> findCheckpoint(String fileName);
+
+    /**
+     * Inserta o actualiza por su codigo un lote de Funkos y guarda el punto de control en la misma transaccion.
+     *
+     * @param funkos     Los Funkos del lote.
+     * @param checkpoint El punto de control que queda guardado si el lote se confirma.
+     * @return Un Mono que emite el numero de Funkos insertados o modificados.
+     */
+    Mono<Long> mergeAll(List<Funko> funkos, ImportCheckpoint checkpoint);
+
+    /**
+     * Actualiza varios Funkos en una sola transaccion.
+     *
+     * @param funkos Los Funkos que se van a actualizar.
+     * @return Un Flux que emite, en el mismo orden, si cada Funko existia y se ha actualizado.
+     */
+    Flux<Boolean> updateAll(List<Funko> funkos);
+
+    /**
+     * Elimina varios Funkos por su ID en una sola transaccion.
+     *
+     * @param ids Los identificadores de los Funkos que se van a eliminar.
+     * @return Un Flux que emite los Funkos que existian y se han eliminado.
+     */
+    Flux<Funko> deleteAllById(List<Long> ids);
 }
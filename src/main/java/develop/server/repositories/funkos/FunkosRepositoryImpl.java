@@ -7,17 +7,28 @@ import develop.server.services.services.database.DatabaseManager;
 import io.r2dbc.pool.ConnectionPool;
 import io.r2dbc.spi.Connection;
 import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Row;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
 /**
  * Implementacion de la interfaz FunkosRepository para operaciones CRUD de Funkos.
  */
 public class FunkosRepositoryImpl implements FunkosRepository {
+    private static final int BATCH_ROWS = 500; // Filas por sentencia en las operaciones por lotes
+    private static final int IMPORT_BATCH_ROWS = 5_000; // Filas por transaccion en la carga masiva
+    private static final int IMPORT_CONCURRENCY = 4; // Transacciones de carga masiva a la vez (conexiones del pool)
     private static FunkosRepositoryImpl instance;
     private final Logger logger = LoggerFactory.getLogger(FunkosRepositoryImpl.class);
     private final IdGenerator idGenerator;
@@ -47,19 +58,51 @@ public class FunkosRepositoryImpl implements FunkosRepository {
         return Flux.usingWhen(
                 connectionFactory.create(),
                 connection -> Flux.from(connection.createStatement(sql).execute())
-                        .flatMap(result -> result.map((row, rowMetadata) ->
-                                Funko.builder()
-                                        .id(row.get("ID", Long.class))
-                                        .cod(row.get("cod", java.util.UUID.class))
-                                        .myId(row.get("MyId", Long.class))
-                                        .name(row.get("nombre", String.class))
-                                        .model(Model.valueOf(row.get("modelo", String.class)))
-                                        .price(row.get("precio", Double.class))
-                                        .releaseData((row.get("fecha_lanzamiento", java.time.LocalDate.class)))
-                                        .createdAt(row.get("created_at", java.time.LocalDateTime.class))
-                                        .updatedAt(row.get("updated_at", java.time.LocalDateTime.class))
-                                        .build()
-                        )),
+                        .flatMap(result -> result.map((row, rowMetadata) -> toFunko(row))),
+                Connection::close
+        );
+    }
+
+    /**
+     * Obtiene una pagina de Funkos a partir de un cursor. Se recorre la clave primaria desde el cursor,
+     * asi que el coste de cada pagina no depende de lo lejos que este en la tabla.
+     * @param afterId ID del ultimo Funko de la pagina anterior (0 para la primera pagina).
+     * @param limit   Numero maximo de Funkos de la pagina.
+     * @return Un Flux que emite los Funkos de la pagina, ordenados por ID.
+     */
+    @Override
+    public Flux<Funko> findPage(long afterId, int limit) {
+        logger.debug("Buscando pagina de funkos después del id " + afterId + " con límite " + limit);
+        String sql = "SELECT * FROM funkos WHERE ID > ? ORDER BY ID LIMIT ?";
+        return Flux.usingWhen(
+                connectionFactory.create(),
+                connection -> Flux.from(connection.createStatement(sql)
+                        .bind(0, afterId)
+                        .bind(1, limit)
+                        .execute()
+                ).flatMap(result -> result.map((row, rowMetadata) -> toFunko(row))),
+                Connection::close
+        );
+    }
+
+    /**
+     * Obtiene una pagina de Funkos saltando los primeros. La base de datos tiene que recorrer las filas
+     * saltadas, asi que para recorrer tablas grandes es mejor {@link #findPage(long, int)}.
+     * @param limit  Numero maximo de Funkos de la pagina.
+     * @param offset Numero de Funkos que se saltan.
+     * @return Un Flux que emite los Funkos de la pagina, ordenados por ID.
+     */
+    @Override
+    public Flux<Funko> findAll(int limit, long offset) {
+        logger.debug("Buscando pagina de funkos con límite " + limit + " y desplazamiento " + offset);
+        String sql = "SELECT * FROM funkos ORDER BY ID LIMIT ? OFFSET ?";
+        return Flux.usingWhen(
+                connectionFactory.create(),
+                connection -> Flux.from(connection.createStatement(sql)
+                        .bind(0, limit)
+                        .bind(1, offset)
+                        .execute()
+                ).flatMap(result -> result.map((row, rowMetadata) -> toFunko(row))),
                 Connection::close
         );
     }
@@ -78,19 +121,49 @@ public class FunkosRepositoryImpl implements FunkosRepository {
                 connection -> Flux.from(connection.createStatement(sql)
                         .bind(0, "%" + nombre + "%")
                         .execute()
-                ).flatMap(result -> result.map((row, rowMetadata) ->
-                        Funko.builder()
-                                .id(row.get("ID", Long.class))
-                                .cod(row.get("cod", java.util.UUID.class))
-                                .myId(row.get("MyId", Long.class))
-                                .name(row.get("nombre", String.class))
-                                .model(Model.valueOf(row.get("modelo", String.class)))
-                                .price(row.get("precio", Double.class))
-                                .releaseData((row.get("fecha_lanzamiento", java.time.LocalDate.class)))
-                                .createdAt(row.get("created_at", java.time.LocalDateTime.class))
-                                .updatedAt(row.get("updated_at", java.time.LocalDateTime.class))
-                                .build()
-                )),
+                ).flatMap(result -> result.map((row, rowMetadata) -> toFunko(row))),
+                Connection::close
+        );
+    }
+
+    /**
+     * Busca Funkos por su modelo. La consulta usa el indice sobre la columna modelo,
+     * asi que solo se leen las filas del modelo.
+     * @param model El modelo de los Funkos que se buscan.
+     * @return Un Flux que muestra los Funkos encontrados
+     */
+    @Override
+    public Flux<Funko> findByModel(Model model) {
+        logger.debug("Buscando todos los funkos por modelo: " + model);
+        String sql = "SELECT * FROM funkos WHERE modelo = ?";
+        return Flux.usingWhen(
+                connectionFactory.create(),
+                connection -> Flux.from(connection.createStatement(sql)
+                        .bind(0, model.toString())
+                        .execute()
+                ).flatMap(result -> result.map((row, rowMetadata) -> toFunko(row))),
+                Connection::close
+        );
+    }
+
+    /**
+     * Busca Funkos con fecha de lanzamiento dentro de un rango. La consulta usa el indice
+     * sobre la columna fecha_lanzamiento, asi que solo se leen las filas del rango.
+     * @param from Primera fecha del rango, incluida.
+     * @param to   Ultima fecha del rango, incluida.
+     * @return Un Flux que muestra los Funkos encontrados, ordenados por fecha de lanzamiento
+     */
+    @Override
+    public Flux<Funko> findByReleaseDateBetween(LocalDate from, LocalDate to) {
+        logger.debug("Buscando todos los funkos con fecha de lanzamiento entre " + from + " y " + to);
+        String sql = "SELECT * FROM funkos WHERE fecha_lanzamiento BETWEEN ? AND ? ORDER BY fecha_lanzamiento, ID";
+        return Flux.usingWhen(
+                connectionFactory.create(),
+                connection -> Flux.from(connection.createStatement(sql)
+                        .bind(0, from)
+                        .bind(1, to)
+                        .execute()
+                ).flatMap(result -> result.map((row, rowMetadata) -> toFunko(row))),
                 Connection::close
         );
     }
@@ -109,44 +182,41 @@ public class FunkosRepositoryImpl implements FunkosRepository {
                 connection -> Mono.from(connection.createStatement(sql)
                         .bind(0, id)
                         .execute()
-                ).flatMap(result -> Mono.from(result.map((row, rowMetadata) ->
-                        Funko.builder()
-                                .id(row.get("ID", Long.class))
-                                .cod(row.get("cod", java.util.UUID.class))
-                                .myId(row.get("MyId", Long.class))
-                                .name(row.get("nombre", String.class))
-                                .model(Model.valueOf(row.get("modelo", String.class)))
-                                .price(row.get("precio", Double.class))
-                                .releaseData((row.get("fecha_lanzamiento", java.time.LocalDate.class)))
-                                .createdAt(row.get("created_at", java.time.LocalDateTime.class))
-                                .updatedAt(row.get("updated_at", java.time.LocalDateTime.class))
-                                .build()
-                ))),
+                ).flatMap(result -> Mono.from(result.map((row, rowMetadata) -> toFunko(row)))),
                 Connection::close
         );
     }
 
     /**
-     * Guarda un Funko en la base de datos
+     * Guarda un Funko en la base de datos. El ID que asigna la base de datos se lee de las claves generadas
+     * del propio INSERT, sin volver a consultar la tabla.
      * @param funko La entidad que se va a guardar.
-     * @return Un Mono que muestra el Funko guardado
+     * @return Un Mono que muestra el Funko guardado, con su ID y su MyId
      */
     public Mono<Funko> save(Funko funko) {
         logger.debug("Guardando funko: " + funko);
         String sql = "INSERT INTO funkos (cod, MyId, nombre, modelo, precio, fecha_lanzamiento, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
         return Mono.usingWhen(
                 connectionFactory.create(),
-                connection -> Mono.from(connection.createStatement(sql)
-                        .bind(0, funko.getCod())
-                        .bind(1, idGenerator.getIdAndIncrement())
-                        .bind(2, funko.getName())
-                        .bind(3, funko.getModel().toString())
-                        .bind(4, funko.getPrice())
-                        .bind(5, funko.getReleaseData())
-                        .bind(6, funko.getCreatedAt())
-                        .bind(7, funko.getUpdatedAt())
-                        .execute()
-                ).then(Mono.just(funko)),
+                connection -> {
+                    funko.setMyId(idGenerator.getIdAndIncrement()); // Al suscribirse, como el resto de la insercion
+                    return Mono.from(connection.createStatement(sql)
+                                    .bind(0, funko.getCod())
+                                    .bind(1, funko.getMyId())
+                                    .bind(2, funko.getName())
+                                    .bind(3, funko.getModel().toString())
+                                    .bind(4, funko.getPrice())
+                                    .bind(5, funko.getReleaseData())
+                                    .bind(6, funko.getCreatedAt())
+                                    .bind(7, funko.getUpdatedAt())
+                                    .returnGeneratedValues("ID")
+                                    .execute()
+                            ).flatMap(result -> Mono.from(result.map((row, rowMetadata) -> row.get("ID", Long.class))))
+                            .map(id -> {
+                                funko.setId(id);
+                                return funko;
+                            });
+                },
                 Connection::close
         );
     }
@@ -165,32 +235,21 @@ public class FunkosRepositoryImpl implements FunkosRepository {
                 connection -> Mono.from(connection.createStatement(sql)
                         .bind(0, uuid)
                         .execute()
-                ).flatMap(result -> Mono.from(result.map((row, rowMetadata) ->
-                        Funko.builder()
-                                .id(row.get("ID", Long.class))
-                                .cod(row.get("cod", java.util.UUID.class))
-                                .myId(row.get("MyId", Long.class))
-                                .name(row.get("nombre", String.class))
-                                .model(Model.valueOf(row.get("modelo", String.class)))
-                                .price(row.get("precio", Double.class))
-                                .releaseData((row.get("fecha_lanzamiento", java.time.LocalDate.class)))
-                                .createdAt(row.get("created_at", java.time.LocalDateTime.class))
-                                .updatedAt(row.get("updated_at", java.time.LocalDateTime.class))
-                                .build()
-                ))),
+                ).flatMap(result -> Mono.from(result.map((row, rowMetadata) -> toFunko(row)))),
                 Connection::close
         );
     }
 
     /**
-     * Actualiza un Funko existente en la base de datos
+     * Actualiza un Funko existente en la base de datos. La fila actualizada se lee en la misma sentencia
+     * (FINAL TABLE), asi que no hace falta buscarla antes ni despues.
      * @param funko La entidad que se va a actualizar.
-     * @return Un Mono que muestra el Funko actualizado.
+     * @return Un Mono que muestra el Funko actualizado tal y como queda en la base de datos, o vacio si no existe.
      */
     @Override
     public Mono<Funko> update(Funko funko) {
         logger.debug("Actualizando funko: " + funko);
-        String query = "UPDATE funkos SET nombre = ?, modelo = ?, precio = ?, updated_at = ? WHERE ID = ?";
+        String query = "SELECT * FROM FINAL TABLE (UPDATE funkos SET nombre = ?, modelo = ?, precio = ?, updated_at = ? WHERE ID = ?)";
         funko.setUpdatedAt(LocalDateTime.now());
         return Mono.usingWhen(
                 connectionFactory.create(),
@@ -201,13 +260,13 @@ public class FunkosRepositoryImpl implements FunkosRepository {
                         .bind(3, funko.getUpdatedAt())
                         .bind(4, funko.getId())
                         .execute()
-                ).then(Mono.just(funko)),
+                ).flatMap(result -> Mono.from(result.map((row, rowMetadata) -> toFunko(row)))),
                 Connection::close
         );
     }
 
     /**
-     * Elimina todos los Funkos en la base de datos
+     * Elimina un Funko de la base de datos por su ID
      * @param id El identificador de la entidad que se va a eliminar.
      * @return Un Mono que emite un boolean indicando si se realizo el borrado o no.
      */
@@ -221,7 +280,27 @@ public class FunkosRepositoryImpl implements FunkosRepository {
                                 .bind(0, id)
                                 .execute()
                         ).flatMapMany(Result::getRowsUpdated)
-                        .hasElements(),
+                        .reduce(0L, Long::sum)
+                        .map(deleted -> deleted > 0),
+                Connection::close
+        );
+    }
+
+    /**
+     * Elimina un Funko de la base de datos y devuelve la fila borrada en la misma sentencia (OLD TABLE).
+     * @param id El identificador del Funko que se va a eliminar.
+     * @return Un Mono que emite el Funko eliminado, o vacio si no existe.
+     */
+    @Override
+    public Mono<Funko> deleteAndGetById(Long id) {
+        logger.debug("Borrando y devolviendo funko por id: " + id);
+        String sql = "SELECT * FROM OLD TABLE (DELETE FROM funkos WHERE ID = ?)";
+        return Mono.usingWhen(
+                connectionFactory.create(),
+                connection -> Mono.from(connection.createStatement(sql)
+                        .bind(0, id)
+                        .execute()
+                ).flatMap(result -> Mono.from(result.map((row, rowMetadata) -> toFunko(row)))),
                 Connection::close
         );
     }
@@ -242,4 +321,333 @@ public class FunkosRepositoryImpl implements FunkosRepository {
                 Connection::close
         );
     }
+
+    /**
+     * Guarda varios Funkos en una sola transaccion. Se insertan en sentencias de varias filas
+     * de {@value #BATCH_ROWS} en {@value #BATCH_ROWS} y la base de datos devuelve los ID generados.
+     *
+     * @param funkos Los Funkos que se van a guardar.
+     * @return Un Flux que emite los Funkos guardados, en el mismo orden y con su ID.
+     */
+    @Override
+    public Flux<Funko> saveAll(List<Funko> funkos) {
+        logger.debug("Guardando " + funkos.size() + " funkos en lote");
+        if (funkos.isEmpty()) {
+            return Flux.empty();
+        }
+        return Flux.usingWhen(
+                connectionFactory.create(),
+                connection -> inTransaction(connection, Flux.fromIterable(funkos)
+                        .buffer(BATCH_ROWS)
+                        .concatMap(rows -> insertRows(connection, rows))),
+                Connection::close
+        );
+    }
+
+    /**
+     * Carga masiva de Funkos. Se agrupan en lotes de {@value #IMPORT_BATCH_ROWS} y cada lote se inserta en su propia
+     * transaccion con sentencias de {@value #BATCH_ROWS} filas. Se insertan hasta {@value #IMPORT_CONCURRENCY} lotes
+     * a la vez, cada uno con su conexion, asi que el ID de los Funkos de lotes distintos no tiene por que seguir
+     * el orden de entrada. Si un lote falla se deshace solo ese lote y la carga termina con el error.
+     * Al terminar se crea el indice por codigo, una sola vez sobre toda la tabla en lugar de fila a fila, salvo que
+     * ya exista el indice unico de la importacion incremental.
+     *
+     * @param funkos Los Funkos que se van a cargar.
+     * @return Un Mono que emite el numero de Funkos insertados.
+     */
+    @Override
+    public Mono<Long> importAll(Flux<Funko> funkos) {
+        logger.debug("Importando funkos en lotes de " + IMPORT_BATCH_ROWS);
+        return funkos
+                .buffer(IMPORT_BATCH_ROWS)
+                .flatMap(batch -> Flux.usingWhen(
+                        connectionFactory.create(),
+                        connection -> inTransaction(connection, Flux.fromIterable(batch)
+                                .buffer(BATCH_ROWS)
+                                .concatMap(rows -> insertRows(connection, rows))),
+                        Connection::close
+                ).count(), IMPORT_CONCURRENCY)
+                .reduce(0L, Long::sum)
+                .flatMap(imported -> createCodIndex().thenReturn(imported));
+    }
+
+    private Mono<Void> createCodIndex() {
+        String indexSql = "CREATE INDEX IF NOT EXISTS idx_funkos_cod ON funkos (cod)";
+        return Mono.usingWhen(
+                connectionFactory.create(),
+                connection -> hasUniqueCodIndex(connection)
+                        .flatMap(unique -> unique ? Mono.empty() : Flux.from(connection.createStatement(indexSql).execute())
+                                .flatMap(Result::getRowsUpdated)
+                                .then()),
+                Connection::close
+        );
+    }
+
+    private Mono<Boolean> hasUniqueCodIndex(Connection connection) {
+        String indexSql = "SELECT COUNT(*) AS total FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME = 'UQ_FUNKOS_COD'";
+        return Mono.from(connection.createStatement(indexSql).execute())
+                .flatMap(result -> Mono.from(result.map((row, rowMetadata) -> row.get("total", Long.class))))
+                .map(indexes -> indexes > 0);
+    }
+
+    /**
+     * Prepara la tabla para la importacion incremental. La primera vez se borran los Funkos con el codigo repetido
+     * (se queda el de menor ID) y se crea un indice unico sobre el codigo; despues solo se comprueba que existe.
+     * El indice unico sirve tambien para buscar por codigo.
+     * Ademas el generador de MyId continua desde el mayor guardado.
+     *
+     * @return Un Mono que se completa cuando la tabla esta preparada.
+     */
+    @Override
+    public Mono<Void> prepareIncrementalImport() {
+        logger.debug("Preparando la tabla de funkos para la importación incremental");
+        String duplicatesSql = "DELETE FROM funkos f WHERE EXISTS (SELECT 1 FROM funkos g WHERE g.cod = f.cod AND g.ID < f.ID)";
+        String uniqueSql = "CREATE UNIQUE INDEX IF NOT EXISTS uq_funkos_cod ON funkos (cod)";
+        String maxMyIdSql = "SELECT COALESCE(MAX(MyId), 0) AS maximo FROM funkos";
+        return Mono.usingWhen(
+                connectionFactory.create(),
+                connection -> hasUniqueCodIndex(connection)
+                        .flatMap(unique -> unique ? Mono.empty() : Flux.from(connection.createStatement(duplicatesSql).execute())
+                                .flatMap(Result::getRowsUpdated)
+                                .doOnNext(deleted -> logger.debug("Funkos con el código repetido borrados: " + deleted))
+                                .thenMany(Flux.from(connection.createStatement(uniqueSql).execute()).flatMap(Result::getRowsUpdated))
+                                .then())
+                        .then(Mono.from(connection.createStatement(maxMyIdSql).execute()))
+                        .flatMap(result -> Mono.from(result.map((row, rowMetadata) -> row.get("maximo", Long.class))))
+                        .doOnNext(idGenerator::ensureAbove)
+                        .then(),
+                Connection::close
+        );
+    }
+
+    /**
+     * Busca el punto de control de la importacion de un archivo.
+     *
+     * @param fileName Nombre del archivo importado.
+     * @return Un Mono que emite el punto de control o un valor vacio si el archivo no se ha importado nunca.
+     */
+    @Override
+    public Mono<ImportCheckpoint> findCheckpoint(String fileName) {
+        logger.debug("Buscando el punto de control de la importación de " + fileName);
+        String sql = "SELECT * FROM import_checkpoints WHERE file_name = ?";
+        return Mono.usingWhen(
+                connectionFactory.create(),
+                connection -> Mono.from(connection.createStatement(sql)
+                        .bind(0, fileName)
+                        .execute()
+                ).flatMap(result -> Mono.from(result.map((row, rowMetadata) ->
+                        new ImportCheckpoint(
+                                row.get("file_name", String.class),
+                                row.get("fingerprint", String.class),
+                                row.get("byte_offset", Long.class))
+                ))),
+                Connection::close
+        );
+    }
+
+    /**
+     * Inserta o actualiza por su codigo un lote de Funkos con sentencias MERGE de {@value #BATCH_ROWS} filas y guarda
+     * el punto de control en la misma transaccion, asi que si el servidor se para a mitad el lote se repite entero.
+     * Los Funkos que ya existen con los mismos datos no se modifican. Si un codigo se repite en el lote gana el ultimo.
+     *
+     * @param funkos     Los Funkos del lote.
+     * @param checkpoint El punto de control que queda guardado si el lote se confirma.
+     * @return Un Mono que emite el numero de Funkos insertados o modificados.
+     */
+    @Override
+    public Mono<Long> mergeAll(List<Funko> funkos, ImportCheckpoint checkpoint) {
+        logger.debug("Importando " + funkos.size() + " funkos hasta la posición " + checkpoint.byteOffset());
+        Map<UUID, Funko> byCod = new LinkedHashMap<>();
+        funkos.forEach(funko -> byCod.put(funko.getCod(), funko));
+        String checkpointSql = "MERGE INTO import_checkpoints (file_name, fingerprint, byte_offset, updated_at) KEY (file_name) VALUES (?, ?, ?, ?)";
+        return Flux.usingWhen(
+                connectionFactory.create(),
+                connection -> inTransaction(connection, Flux.fromIterable(byCod.values())
+                        .buffer(BATCH_ROWS)
+                        .concatMap(rows -> mergeRows(connection, rows))
+                        .concatWith(Flux.from(connection.createStatement(checkpointSql)
+                                        .bind(0, checkpoint.fileName())
+                                        .bind(1, checkpoint.fingerprint())
+                                        .bind(2, checkpoint.byteOffset())
+                                        .bind(3, LocalDateTime.now())
+                                        .execute())
+                                .flatMap(Result::getRowsUpdated)
+                                .then(Mono.empty()))),
+                Connection::close
+        ).reduce(0L, Long::sum);
+    }
+
+    /**
+     * Inserta o actualiza un grupo de Funkos. Antes se buscan los codigos que ya existen, para tomar un MyId
+     * del generador solo para los Funkos que se van a insertar.
+     */
+    private Flux<Long> mergeRows(Connection connection, List<Funko> rows) {
+        var existing = connection.createStatement("SELECT cod FROM funkos WHERE cod IN ("
+                + String.join(", ", Collections.nCopies(rows.size(), "?")) + ")");
+        for (int i = 0; i < rows.size(); i++) {
+            existing.bind(i, rows.get(i).getCod());
+        }
+        return Flux.from(existing.execute())
+                .flatMap(result -> result.map((row, rowMetadata) -> row.get("cod", UUID.class)))
+                .collect(Collectors.toSet())
+                .flatMapMany(cods -> mergeRows(connection, rows, cods));
+    }
+
+    private Flux<Long> mergeRows(Connection connection, List<Funko> rows, Set<UUID> existingCods) {
+        String sql = "MERGE INTO funkos t USING (VALUES "
+                + String.join(", ", Collections.nCopies(rows.size(), "(?, ?, ?, ?, ?, ?, ?, ?)"))
+                + ") AS s(cod, MyId, nombre, modelo, precio, fecha_lanzamiento, created_at, updated_at) ON t.cod = s.cod"
+                + " WHEN MATCHED AND (t.nombre <> s.nombre OR t.modelo <> s.modelo OR t.precio <> s.precio OR t.fecha_lanzamiento <> s.fecha_lanzamiento)"
+                + " THEN UPDATE SET nombre = s.nombre, modelo = s.modelo, precio = s.precio, fecha_lanzamiento = s.fecha_lanzamiento, updated_at = s.updated_at"
+                + " WHEN NOT MATCHED THEN INSERT (cod, MyId, nombre, modelo, precio, fecha_lanzamiento, created_at, updated_at)"
+                + " VALUES (s.cod, s.MyId, s.nombre, s.modelo, s.precio, s.fecha_lanzamiento, s.created_at, s.updated_at)";
+        var statement = connection.createStatement(sql);
+        int index = 0;
+        for (Funko funko : rows) {
+            statement.bind(index++, funko.getCod());
+            if (existingCods.contains(funko.getCod())) {
+                statement.bindNull(index++, Long.class); // No se inserta, asi que no necesita MyId
+            } else {
+                statement.bind(index++, idGenerator.getIdAndIncrement());
+            }
+            statement.bind(index++, funko.getName())
+                    .bind(index++, funko.getModel().toString())
+                    .bind(index++, funko.getPrice())
+                    .bind(index++, funko.getReleaseData())
+                    .bind(index++, funko.getCreatedAt())
+                    .bind(index++, funko.getUpdatedAt());
+        }
+        return Flux.from(statement.execute()).flatMap(Result::getRowsUpdated);
+    }
+
+    private Flux<Funko> insertRows(Connection connection, List<Funko> rows) {
+        String sql = "INSERT INTO funkos (cod, MyId, nombre, modelo, precio, fecha_lanzamiento, created_at, updated_at) VALUES "
+                + String.join(", ", Collections.nCopies(rows.size(), "(?, ?, ?, ?, ?, ?, ?, ?)"));
+        var statement = connection.createStatement(sql).returnGeneratedValues("ID");
+        int index = 0;
+        for (Funko funko : rows) {
+            funko.setMyId(idGenerator.getIdAndIncrement());
+            statement.bind(index++, funko.getCod())
+                    .bind(index++, funko.getMyId())
+                    .bind(index++, funko.getName())
+                    .bind(index++, funko.getModel().toString())
+                    .bind(index++, funko.getPrice())
+                    .bind(index++, funko.getReleaseData())
+                    .bind(index++, funko.getCreatedAt())
+                    .bind(index++, funko.getUpdatedAt());
+        }
+        return Flux.from(statement.execute())
+                .concatMap(result -> result.map((row, rowMetadata) -> row.get("ID", Long.class)))
+                .index()
+                .map(generated -> {
+                    Funko funko = rows.get(generated.getT1().intValue());
+                    funko.setId(generated.getT2());
+                    return funko;
+                });
+    }
+
+    /**
+     * Actualiza varios Funkos en una sola transaccion, con una sentencia y un juego de parametros por Funko.
+     *
+     * @param funkos Los Funkos que se van a actualizar.
+     * @return Un Flux que emite, en el mismo orden, si cada Funko existia y se ha actualizado.
+     */
+    @Override
+    public Flux<Boolean> updateAll(List<Funko> funkos) {
+        logger.debug("Actualizando " + funkos.size() + " funkos en lote");
+        if (funkos.isEmpty()) {
+            return Flux.empty();
+        }
+        String query = "UPDATE funkos SET nombre = ?, modelo = ?, precio = ?, updated_at = ? WHERE ID = ?";
+        return Flux.usingWhen(
+                connectionFactory.create(),
+                connection -> inTransaction(connection, Flux.fromIterable(funkos)
+                        .buffer(BATCH_ROWS)
+                        .concatMap(rows -> {
+                            var statement = connection.createStatement(query);
+                            for (int i = 0; i < rows.size(); i++) {
+                                Funko funko = rows.get(i);
+                                funko.setUpdatedAt(LocalDateTime.now());
+                                if (i > 0) {
+                                    statement.add();
+                                }
+                                statement.bind(0, funko.getName())
+                                        .bind(1, funko.getModel().toString())
+                                        .bind(2, funko.getPrice())
+                                        .bind(3, funko.getUpdatedAt())
+                                        .bind(4, funko.getId());
+                            }
+                            return Flux.from(statement.execute())
+                                    .concatMap(result -> Mono.from(result.getRowsUpdated()).map(updated -> updated > 0));
+                        })),
+                Connection::close
+        );
+    }
+
+    /**
+     * Elimina varios Funkos por su ID en una sola transaccion. Por cada grupo de {@value #BATCH_ROWS} ID
+     * se leen los Funkos que existen y despues se borran con una sola sentencia.
+     *
+     * @param ids Los identificadores de los Funkos que se van a eliminar.
+     * @return Un Flux que emite los Funkos que existian y se han eliminado.
+     */
+    @Override
+    public Flux<Funko> deleteAllById(List<Long> ids) {
+        logger.debug("Borrando " + ids.size() + " funkos en lote");
+        if (ids.isEmpty()) {
+            return Flux.empty();
+        }
+        return Flux.usingWhen(
+                connectionFactory.create(),
+                connection -> inTransaction(connection, Flux.fromIterable(ids)
+                        .buffer(BATCH_ROWS)
+                        .concatMap(group -> {
+                            String in = String.join(", ", Collections.nCopies(group.size(), "?"));
+                            var select = connection.createStatement("SELECT * FROM funkos WHERE ID IN (" + in + ")");
+                            var delete = connection.createStatement("DELETE FROM funkos WHERE ID IN (" + in + ")");
+                            for (int i = 0; i < group.size(); i++) {
+                                select.bind(i, group.get(i));
+                                delete.bind(i, group.get(i));
+                            }
+                            return Flux.from(select.execute())
+                                    .flatMap(result -> result.map((row, rowMetadata) -> toFunko(row)))
+                                    .collectList()
+                                    .flatMapMany(found -> Flux.from(delete.execute())
+                                            .flatMap(Result::getRowsUpdated)
+                                            .thenMany(Flux.fromIterable(found)));
+                        })),
+                Connection::close
+        );
+    }
+
+    /**
+     * Crea un Funko con las columnas de una fila de la tabla funkos.
+     */
+    private Funko toFunko(Row row) {
+        return Funko.builder()
+                .id(row.get("ID", Long.class))
+                .cod(row.get("cod", UUID.class))
+                .myId(row.get("MyId", Long.class))
+                .name(row.get("nombre", String.class))
+                .model(Model.valueOf(row.get("modelo", String.class)))
+                .price(row.get("precio", Double.class))
+                .releaseData(row.get("fecha_lanzamiento", LocalDate.class))
+                .createdAt(row.get("created_at", LocalDateTime.class))
+                .updatedAt(row.get("updated_at", LocalDateTime.class))
+                .build();
+    }
+
+    /**
+     * Ejecuta el trabajo dentro de una transaccion de la conexion: se confirma si termina bien
+     * y se deshace si falla o se cancela.
+     */
+    private <T> Flux<T> inTransaction(Connection connection, Flux<T> work) {
+        return Flux.usingWhen(
+                Mono.from(connection.beginTransaction()).thenReturn(connection),
+                c -> work,
+                Connection::commitTransaction,
+                (c, error) -> c.rollbackTransaction(),
+                Connection::rollbackTransaction
+        );
+    }
 }
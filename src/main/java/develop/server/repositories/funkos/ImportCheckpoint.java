@@ -0,0 +1,8 @@
+package develop.server.repositories.funkos;
+
+/**
+ * Clase que representa el punto de control de una importacion incremental: hasta que posicion del archivo
+ * se ha importado y la huella del archivo hasta esa posicion.
+ */
+public record ImportCheckpoint(String fileName, String fingerprint, long byteOffset) {
+}
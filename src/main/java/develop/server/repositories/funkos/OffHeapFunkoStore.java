@@ -0,0 +1,526 @@
+package develop.server.repositories.funkos;
+
+import develop.common.models.Funko;
+import develop.common.models.Model;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Almacen de Funkos fuera del heap. Cada Funko es un registro de {@value #RECORD_BYTES} bytes de ancho fijo en
+ * bloques de memoria directa, asi que el recolector de basura no tiene que recorrer millones de objetos. Los
+ * registros se añaden al final en orden de ID, los borrados solo se marcan y se recuperan al compactar.
+ * Se indexan por ID y por codigo con tablas de direccionamiento abierto que solo guardan el numero de registro:
+ * la clave se compara con la del propio registro.
+ * Los registros se leen con una {@link View} que decodifica solo los campos que se piden.
+ * No es seguro entre hilos: el repositorio lo usa con su cerrojo de lectura y escritura.
+ */
+final class OffHeapFunkoStore {
+    static final int RECORD_BYTES = 80;
+    // Posicion de cada campo dentro del registro
+    private static final int ID = 0;
+    private static final int COD_MSB = 8;
+    private static final int COD_LSB = 16;
+    private static final int MY_ID = 24;
+    private static final int PRICE = 32;
+    private static final int CREATED_SECONDS = 40;
+    private static final int UPDATED_SECONDS = 48;
+    private static final int NAME = 56;
+    private static final int CREATED_NANOS = 64;
+    private static final int UPDATED_NANOS = 68;
+    private static final int RELEASE_DAY = 72;
+    private static final int MODEL = 76;
+    private static final int FLAGS = 77;
+    // Bits del campo FLAGS
+    private static final byte LIVE = 1;
+    private static final byte HAS_COD = 2;
+    private static final byte HAS_RELEASE = 4;
+    private static final byte HAS_CREATED = 8;
+    private static final byte HAS_UPDATED = 16;
+    private static final int EMPTY = -1;
+    private static final Model[] MODELS = Model.values();
+    private final int chunkShift;
+    private final int chunkMask;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private final SlotIndex byId = new SlotIndex() {
+        @Override
+        long hi(int slot) {
+            return id(slot);
+        }
+
+        @Override
+        long lo(int slot) {
+            return 0;
+        }
+    };
+    private final SlotIndex byCod = new SlotIndex() {
+        @Override
+        long hi(int slot) {
+            return chunk(slot).getLong(base(slot) + COD_MSB);
+        }
+
+        @Override
+        long lo(int slot) {
+            return chunk(slot).getLong(base(slot) + COD_LSB);
+        }
+    };
+    private OffHeapNamePool names = new OffHeapNamePool();
+    private int slots;
+    private int live;
+    // Registros vivos con un codigo repetido, que no estan en el indice por codigo, en orden de ID
+    private final Map<UUID, ArrayDeque<Integer>> repeatedCods = new HashMap<>();
+
+    /**
+     * Constructor de OffHeapFunkoStore.
+     *
+     * @param chunkRecords Registros de cada bloque de memoria; tiene que ser una potencia de dos.
+     */
+    OffHeapFunkoStore(int chunkRecords) {
+        if (chunkRecords <= 0 || Integer.bitCount(chunkRecords) != 1) {
+            throw new IllegalArgumentException("Los registros de cada bloque tienen que ser una potencia de dos: " + chunkRecords);
+        }
+        this.chunkShift = Integer.numberOfTrailingZeros(chunkRecords);
+        this.chunkMask = chunkRecords - 1;
+    }
+
+    /**
+     * Numero de Funkos guardados.
+     */
+    int size() {
+        return live;
+    }
+
+    /**
+     * Numero de registros usados, contando los borrados que aun no se han compactado.
+     */
+    int slots() {
+        return slots;
+    }
+
+    /**
+     * Numero de nombres distintos guardados.
+     */
+    int names() {
+        return names.size();
+    }
+
+    /**
+     * Registro de un Funko por su ID.
+     *
+     * @return El numero de registro o -1 si no existe.
+     */
+    int slotOf(long id) {
+        return byId.find(id, 0);
+    }
+
+    /**
+     * Registro de un Funko por su codigo. Si el codigo se repite es el de menor ID.
+     *
+     * @return El numero de registro o -1 si no existe.
+     */
+    int slotOf(UUID cod) {
+        return byCod.find(cod.getMostSignificantBits(), cod.getLeastSignificantBits());
+    }
+
+    /**
+     * Primer registro con un ID mayor que el indicado, vivo o borrado. Los registros estan en orden de ID,
+     * asi que se busca por biseccion.
+     *
+     * @return El numero de registro, o {@link #slots()} si no hay ninguno.
+     */
+    int firstSlotAfter(long id) {
+        int low = 0;
+        int high = slots;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (id(middle) <= id) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Crea una vista para leer registros; se puede mover de un registro a otro sin crear objetos.
+     */
+    View view() {
+        return new View();
+    }
+
+    /**
+     * Añade un Funko al final. Su ID tiene que ser mayor que el de todos los guardados.
+     *
+     * @param funko El Funko, con su ID y su MyId ya asignados.
+     * @return El numero de registro.
+     */
+    int append(Funko funko) {
+        int slot = slots;
+        if ((slot >>> chunkShift) == chunks.size()) {
+            chunks.add(ByteBuffer.allocateDirect((chunkMask + 1) * RECORD_BYTES).order(ByteOrder.nativeOrder()));
+        }
+        ByteBuffer chunk = chunk(slot);
+        int base = base(slot);
+        UUID cod = funko.getCod();
+        chunk.putLong(base + ID, funko.getId());
+        chunk.putLong(base + COD_MSB, cod == null ? 0 : cod.getMostSignificantBits());
+        chunk.putLong(base + COD_LSB, cod == null ? 0 : cod.getLeastSignificantBits());
+        chunk.putLong(base + MY_ID, funko.getMyId());
+        chunk.put(base + FLAGS, (byte) (LIVE | (cod == null ? 0 : HAS_COD)));
+        putTimestamp(chunk, base, CREATED_SECONDS, CREATED_NANOS, HAS_CREATED, funko.getCreatedAt());
+        update(slot, funko.getName(), funko.getModel(), funko.getPrice(), funko.getUpdatedAt());
+        setReleaseData(slot, funko.getReleaseData());
+        slots++;
+        live++;
+        byId.add(slot);
+        if (cod != null && !byCod.addIfAbsent(slot)) {
+            addRepeated(cod, slot);
+        }
+        return slot;
+    }
+
+    /**
+     * Cambia los datos de un Funko que se pueden actualizar.
+     */
+    void update(int slot, String name, Model model, double price, LocalDateTime updatedAt) {
+        ByteBuffer chunk = chunk(slot);
+        int base = base(slot);
+        chunk.putLong(base + NAME, name == null ? EMPTY : names.intern(name));
+        chunk.put(base + MODEL, (byte) (model == null ? EMPTY : model.ordinal()));
+        chunk.putDouble(base + PRICE, price);
+        putTimestamp(chunk, base, UPDATED_SECONDS, UPDATED_NANOS, HAS_UPDATED, updatedAt);
+    }
+
+    /**
+     * Cambia la fecha de lanzamiento de un Funko.
+     */
+    void setReleaseData(int slot, LocalDate releaseData) {
+        ByteBuffer chunk = chunk(slot);
+        int base = base(slot);
+        chunk.putInt(base + RELEASE_DAY, releaseData == null ? 0 : (int) releaseData.toEpochDay());
+        setFlag(chunk, base, HAS_RELEASE, releaseData != null);
+    }
+
+    /**
+     * Marca un Funko como borrado y lo quita de los indices. Si otro Funko tiene el mismo codigo pasa a ser
+     * el que se encuentra por codigo.
+     */
+    void delete(int slot) {
+        ByteBuffer chunk = chunk(slot);
+        int base = base(slot);
+        byte flags = chunk.get(base + FLAGS);
+        byId.remove(slot);
+        setFlag(chunk, base, LIVE, false);
+        live--;
+        if ((flags & HAS_COD) == 0) {
+            return;
+        }
+        boolean indexed = byCod.remove(slot);
+        if (repeatedCods.isEmpty()) {
+            return;
+        }
+        UUID cod = new UUID(chunk.getLong(base + COD_MSB), chunk.getLong(base + COD_LSB));
+        ArrayDeque<Integer> repeated = repeatedCods.get(cod);
+        if (repeated == null) {
+            return;
+        }
+        if (indexed) {
+            byCod.add(repeated.poll());
+        } else {
+            repeated.remove(slot);
+        }
+        if (repeated.isEmpty()) {
+            repeatedCods.remove(cod);
+        }
+    }
+
+    /**
+     * Compacta el almacen si hay mas registros borrados que vivos y al menos un bloque entero de borrados.
+     *
+     * @return true si se ha compactado.
+     */
+    boolean compactIfNeeded() {
+        int dead = slots - live;
+        if (dead <= live || dead <= chunkMask) {
+            return false;
+        }
+        compact();
+        return true;
+    }
+
+    /**
+     * Mueve los registros vivos al principio, conservando su orden, libera los bloques que sobran, vuelve a
+     * guardar solo los nombres que se usan y reconstruye los indices.
+     */
+    void compact() {
+        int target = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            ByteBuffer chunk = chunk(slot);
+            int base = base(slot);
+            if ((chunk.get(base + FLAGS) & LIVE) != 0) {
+                if (slot != target) {
+                    chunk(target).put(base(target), chunk, base, RECORD_BYTES);
+                }
+                target++;
+            }
+        }
+        slots = target;
+        int usedChunks = (slots + chunkMask) >>> chunkShift;
+        while (chunks.size() > usedChunks) {
+            chunks.remove(chunks.size() - 1);
+        }
+        OffHeapNamePool oldNames = names;
+        names = new OffHeapNamePool();
+        byId.clear();
+        byCod.clear();
+        repeatedCods.clear();
+        for (int slot = 0; slot < slots; slot++) {
+            ByteBuffer chunk = chunk(slot);
+            int base = base(slot);
+            long name = chunk.getLong(base + NAME);
+            if (name != EMPTY) {
+                chunk.putLong(base + NAME, names.intern(oldNames.get(name)));
+            }
+            byId.add(slot);
+            if ((chunk.get(base + FLAGS) & HAS_COD) != 0 && !byCod.addIfAbsent(slot)) {
+                addRepeated(new UUID(chunk.getLong(base + COD_MSB), chunk.getLong(base + COD_LSB)), slot);
+            }
+        }
+    }
+
+    /**
+     * Borra todos los Funkos y libera la memoria.
+     */
+    void clear() {
+        chunks.clear();
+        names = new OffHeapNamePool();
+        byId.clear();
+        byCod.clear();
+        slots = 0;
+        live = 0;
+        repeatedCods.clear();
+    }
+
+    private void addRepeated(UUID cod, int slot) {
+        repeatedCods.computeIfAbsent(cod, key -> new ArrayDeque<>()).add(slot);
+    }
+
+    private long id(int slot) {
+        return chunk(slot).getLong(base(slot) + ID);
+    }
+
+    private ByteBuffer chunk(int slot) {
+        return chunks.get(slot >>> chunkShift);
+    }
+
+    private int base(int slot) {
+        return (slot & chunkMask) * RECORD_BYTES;
+    }
+
+    private static void putTimestamp(ByteBuffer chunk, int base, int seconds, int nanos, byte flag, LocalDateTime timestamp) {
+        chunk.putLong(base + seconds, timestamp == null ? 0 : timestamp.toEpochSecond(ZoneOffset.UTC));
+        chunk.putInt(base + nanos, timestamp == null ? 0 : timestamp.getNano());
+        setFlag(chunk, base, flag, timestamp != null);
+    }
+
+    private static LocalDateTime getTimestamp(ByteBuffer chunk, int base, int seconds, int nanos, byte flag) {
+        if ((chunk.get(base + FLAGS) & flag) == 0) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(chunk.getLong(base + seconds), chunk.getInt(base + nanos), ZoneOffset.UTC);
+    }
+
+    private static void setFlag(ByteBuffer chunk, int base, byte flag, boolean value) {
+        byte flags = chunk.get(base + FLAGS);
+        chunk.put(base + FLAGS, (byte) (value ? flags | flag : flags & ~flag));
+    }
+
+    /**
+     * Vista de un registro: lee los campos directamente del bloque de memoria, sin crear el Funko hasta que se
+     * pide con {@link #toFunko()}. Solo es valida mientras se tenga el cerrojo con el que se ha movido.
+     */
+    final class View {
+        private ByteBuffer chunk;
+        private int base;
+
+        private View() {
+        }
+
+        View moveTo(int slot) {
+            chunk = chunk(slot);
+            base = base(slot);
+            return this;
+        }
+
+        boolean isLive() {
+            return (chunk.get(base + FLAGS) & LIVE) != 0;
+        }
+
+        long id() {
+            return chunk.getLong(base + ID);
+        }
+
+        long myId() {
+            return chunk.getLong(base + MY_ID);
+        }
+
+        UUID cod() {
+            return (chunk.get(base + FLAGS) & HAS_COD) == 0 ? null
+                    : new UUID(chunk.getLong(base + COD_MSB), chunk.getLong(base + COD_LSB));
+        }
+
+        String name() {
+            long name = chunk.getLong(base + NAME);
+            return name == EMPTY ? null : names.get(name);
+        }
+
+        boolean nameContains(byte[] needle) {
+            long name = chunk.getLong(base + NAME);
+            return name != EMPTY && names.contains(name, needle);
+        }
+
+        Model model() {
+            byte model = chunk.get(base + MODEL);
+            return model == EMPTY ? null : MODELS[model];
+        }
+
+        boolean isModel(Model model) {
+            return chunk.get(base + MODEL) == model.ordinal();
+        }
+
+        double price() {
+            return chunk.getDouble(base + PRICE);
+        }
+
+        LocalDate releaseData() {
+            return (chunk.get(base + FLAGS) & HAS_RELEASE) == 0 ? null : LocalDate.ofEpochDay(chunk.getInt(base + RELEASE_DAY));
+        }
+
+        boolean isReleasedBetween(long fromDay, long toDay) {
+            int day = chunk.getInt(base + RELEASE_DAY);
+            return (chunk.get(base + FLAGS) & HAS_RELEASE) != 0 && day >= fromDay && day <= toDay;
+        }
+
+        Funko toFunko() {
+            return Funko.builder()
+                    .id(id())
+                    .cod(cod())
+                    .myId(myId())
+                    .name(name())
+                    .model(model())
+                    .price(price())
+                    .releaseData(releaseData())
+                    .createdAt(getTimestamp(chunk, base, CREATED_SECONDS, CREATED_NANOS, HAS_CREATED))
+                    .updatedAt(getTimestamp(chunk, base, UPDATED_SECONDS, UPDATED_NANOS, HAS_UPDATED))
+                    .build();
+        }
+    }
+
+    /**
+     * Indice de direccionamiento abierto con sondeo lineal que guarda solo numeros de registro. La clave
+     * (hasta dos long) se lee del registro, asi que ocupa 4 bytes por hueco. Los borrados desplazan hacia atras
+     * los valores siguientes, sin dejar marcas.
+     */
+    private abstract class SlotIndex {
+        private int[] table = emptyTable(16);
+        private int size;
+
+        abstract long hi(int slot);
+
+        abstract long lo(int slot);
+
+        int find(long hi, long lo) {
+            int mask = table.length - 1;
+            for (int i = hash(hi, lo) & mask; table[i] != EMPTY; i = (i + 1) & mask) {
+                int slot = table[i];
+                if (hi(slot) == hi && lo(slot) == lo) {
+                    return slot;
+                }
+            }
+            return EMPTY;
+        }
+
+        boolean addIfAbsent(int slot) {
+            if (find(hi(slot), lo(slot)) != EMPTY) {
+                return false;
+            }
+            add(slot);
+            return true;
+        }
+
+        void add(int slot) {
+            if ((size + 1) * 2 > table.length) {
+                int[] old = table;
+                table = emptyTable(old.length * 2);
+                for (int value : old) {
+                    if (value != EMPTY) {
+                        insert(value);
+                    }
+                }
+            }
+            insert(slot);
+            size++;
+        }
+
+        boolean remove(int slot) {
+            int mask = table.length - 1;
+            int i = hash(hi(slot), lo(slot)) & mask;
+            while (table[i] != slot) {
+                if (table[i] == EMPTY) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            table[i] = EMPTY;
+            size--;
+            for (int j = (i + 1) & mask; table[j] != EMPTY; j = (j + 1) & mask) {
+                int home = hash(hi(table[j]), lo(table[j])) & mask;
+                // Se mueve al hueco si su posicion ideal no esta entre el hueco y donde esta ahora
+                if (((j - home) & mask) >= ((j - i) & mask)) {
+                    table[i] = table[j];
+                    table[j] = EMPTY;
+                    i = j;
+                }
+            }
+            return true;
+        }
+
+        void clear() {
+            table = emptyTable(16);
+            size = 0;
+        }
+
+        private void insert(int slot) {
+            int mask = table.length - 1;
+            int i = hash(hi(slot), lo(slot)) & mask;
+            while (table[i] != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            table[i] = slot;
+        }
+
+        private static int hash(long hi, long lo) {
+            long h = hi * 0x9E3779B97F4A7C15L ^ lo;
+            h ^= h >>> 32;
+            h *= 0xD6E8FEB86659FD93L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        private static int[] emptyTable(int capacity) {
+            int[] table = new int[capacity];
+            Arrays.fill(table, EMPTY);
+            return table;
+        }
+    }
+}
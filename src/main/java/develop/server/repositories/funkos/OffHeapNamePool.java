@@ -0,0 +1,151 @@
+package develop.server.repositories.funkos;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Nombres de los Funkos guardados fuera del heap, cada uno una sola vez aunque lo tengan muchos Funkos.
+ * Cada nombre se guarda en UTF-8 precedido de su longitud en bloques de memoria directa de 1 MB, y se referencia
+ * con un long (bloque en los 32 bits altos y posicion en los bajos). Una tabla hash de direccionamiento abierto
+ * evita repetirlos. Los nombres no se borran: solo se liberan al vaciar el almacen o al compactarlo.
+ * No es seguro entre hilos: se usa con el cerrojo del repositorio.
+ */
+final class OffHeapNamePool {
+    private static final int CHUNK_BYTES = 1 << 20;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long EMPTY = -1;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    private long[] refs = emptyTable(INITIAL_CAPACITY);
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Guarda un nombre si aun no estaba.
+     *
+     * @param name El nombre.
+     * @return La referencia del nombre, la misma para nombres iguales.
+     */
+    long intern(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        int hash = Arrays.hashCode(bytes);
+        int mask = refs.length - 1;
+        int i = spread(hash) & mask;
+        for (; refs[i] != EMPTY; i = (i + 1) & mask) {
+            if (hashes[i] == hash && equalsBytes(refs[i], bytes)) {
+                return refs[i];
+            }
+        }
+        long ref = append(bytes);
+        refs[i] = ref;
+        hashes[i] = hash;
+        if (++size * 2 > refs.length) {
+            resize();
+        }
+        return ref;
+    }
+
+    /**
+     * Decodifica un nombre.
+     *
+     * @param ref Referencia devuelta por {@link #intern(String)}.
+     * @return El nombre.
+     */
+    String get(long ref) {
+        ByteBuffer chunk = chunks.get((int) (ref >>> 32));
+        int offset = (int) ref;
+        byte[] bytes = new byte[chunk.getInt(offset)];
+        chunk.get(offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Indica si un nombre contiene una cadena, comparando los bytes UTF-8 sin decodificarlo.
+     * Como en UTF-8 ningun caracter empieza en mitad de otro, es lo mismo que buscar la cadena en el nombre.
+     *
+     * @param ref    Referencia del nombre.
+     * @param needle La cadena buscada en UTF-8.
+     * @return true si el nombre contiene la cadena.
+     */
+    boolean contains(long ref, byte[] needle) {
+        ByteBuffer chunk = chunks.get((int) (ref >>> 32));
+        int start = (int) ref + Integer.BYTES;
+        int last = start + chunk.getInt((int) ref) - needle.length;
+        for (int i = start; i <= last; i++) {
+            int j = 0;
+            while (j < needle.length && chunk.get(i + j) == needle[j]) {
+                j++;
+            }
+            if (j == needle.length) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Numero de nombres distintos guardados.
+     *
+     * @return El numero de nombres.
+     */
+    int size() {
+        return size;
+    }
+
+    private boolean equalsBytes(long ref, byte[] bytes) {
+        ByteBuffer chunk = chunks.get((int) (ref >>> 32));
+        int offset = (int) ref;
+        if (chunk.getInt(offset) != bytes.length) {
+            return false;
+        }
+        offset += Integer.BYTES;
+        for (int i = 0; i < bytes.length; i++) {
+            if (chunk.get(offset + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long append(byte[] bytes) {
+        int needed = Integer.BYTES + bytes.length;
+        ByteBuffer chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (chunk == null || chunk.remaining() < needed) {
+            chunk = ByteBuffer.allocateDirect(Math.max(CHUNK_BYTES, needed));
+            chunks.add(chunk);
+        }
+        int offset = chunk.position();
+        chunk.putInt(bytes.length).put(bytes);
+        return ((long) (chunks.size() - 1) << 32) | offset;
+    }
+
+    private void resize() {
+        long[] oldRefs = refs;
+        int[] oldHashes = hashes;
+        refs = emptyTable(oldRefs.length * 2);
+        hashes = new int[refs.length];
+        int mask = refs.length - 1;
+        for (int j = 0; j < oldRefs.length; j++) {
+            if (oldRefs[j] != EMPTY) {
+                int i = spread(oldHashes[j]) & mask;
+                while (refs[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                refs[i] = oldRefs[j];
+                hashes[i] = oldHashes[j];
+            }
+        }
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static long[] emptyTable(int capacity) {
+        long[] table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+}
@@ -10,7 +10,7 @@ import java.util.Optional;
  * Un Repositorio que almacena usuarios en memoria, como Pepe y Ana.
  */
 public class UsersRepository {
-    private static UsersRepository INSTANCE = null;
+    private static final UsersRepository INSTANCE = new UsersRepository();
     private final List<User> users = List.of(
             new User(
                     1,
@@ -31,12 +31,10 @@ public class UsersRepository {
 
     /**
      * Obtiene la instancia unica del repositorio de usuarios.
+     * Se crea al cargar la clase, asi no hace falta sincronizar en cada peticion.
      * @return La instancia del repositorio de usuarios
      */
-    public synchronized static UsersRepository getInstance() {
-        if (INSTANCE == null) {
-            INSTANCE = new UsersRepository();
-        }
+    public static UsersRepository getInstance() {
         return INSTANCE;
     }
 
@@ -0,0 +1,62 @@
+package develop.server.services.services.cache;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Caducidad de los valores de una cache, contada con un reloj monotono en nanosegundos.
+ *
+ * @param afterWriteNanos  Tiempo que vive un valor desde que se guarda (0 para que no caduque por escritura).
+ * @param afterAccessNanos Tiempo que vive un valor desde que se guarda o se consulta por ultima vez (0 para que no caduque por acceso).
+ * @param ticker           Reloj en nanosegundos; {@link System#nanoTime()} salvo en las pruebas.
+ */
+public record CacheExpiry(long afterWriteNanos, long afterAccessNanos, LongSupplier ticker) {
+
+    /**
+     * Sin caducidad: los valores solo salen de la cache por la politica de expulsion o al eliminarlos.
+     *
+     * @return La configuracion sin caducidad.
+     */
+    public static CacheExpiry none() {
+        return new CacheExpiry(0, 0, System::nanoTime);
+    }
+
+    /**
+     * Caducidad desde que se guarda el valor.
+     *
+     * @param ttl Tiempo de vida.
+     * @return La configuracion de caducidad.
+     */
+    public static CacheExpiry afterWrite(Duration ttl) {
+        return new CacheExpiry(ttl.toNanos(), 0, System::nanoTime);
+    }
+
+    /**
+     * Caducidad desde el ultimo uso del valor.
+     *
+     * @param ttl Tiempo de vida sin usarse.
+     * @return La configuracion de caducidad.
+     */
+    public static CacheExpiry afterAccess(Duration ttl) {
+        return new CacheExpiry(0, ttl.toNanos(), System::nanoTime);
+    }
+
+    /**
+     * La misma caducidad con otro reloj.
+     *
+     * @param ticker Reloj en nanosegundos.
+     * @return La configuracion con el reloj indicado.
+     */
+    public CacheExpiry withTicker(LongSupplier ticker) {
+        return new CacheExpiry(afterWriteNanos, afterAccessNanos, ticker);
+    }
+
+    /**
+     * Si los valores caducan de alguna forma.
+     *
+     * @return true si hay caducidad por escritura o por acceso.
+     */
+    public boolean enabled() {
+        return afterWriteNanos > 0 || afterAccessNanos > 0;
+    }
+}
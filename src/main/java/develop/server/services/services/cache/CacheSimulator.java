@@ -0,0 +1,66 @@
+package develop.server.services.services.cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * Reproduce una traza de consultas (una clave numerica por linea, como las graba {@link CacheTraceRecorder})
+ * con cada politica de expulsion y varios tamaños, e imprime la tasa de aciertos de cada combinacion.
+ * Cada consulta que falla se guarda en la cache, igual que hace el servicio de Funkos.
+ * <p>
+ * Uso: {@code CacheSimulator <traza> [tamaño...]}
+ */
+public final class CacheSimulator {
+
+    private CacheSimulator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Uso: CacheSimulator <traza> [tamaño...]");
+            return;
+        }
+        long[] trace;
+        try (Stream<String> lines = Files.lines(Path.of(args[0]))) {
+            trace = lines.filter(line -> !line.isBlank()).mapToLong(line -> Long.parseLong(line.trim())).toArray();
+        }
+        int[] sizes = args.length > 1
+                ? Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray()
+                : new int[]{10, 100, 1000};
+
+        System.out.printf("Traza: %s (%d consultas)%n", args[0], trace.length);
+        System.out.printf("%-8s", "Tamaño");
+        for (EvictionPolicy.Type type : EvictionPolicy.Type.values()) {
+            System.out.printf("%12s", type);
+        }
+        System.out.println();
+        for (int size : sizes) {
+            System.out.printf("%-8d", size);
+            for (EvictionPolicy.Type type : EvictionPolicy.Type.values()) {
+                System.out.printf("%11.2f%%", simulate(trace, size, type).hitRate() * 100);
+            }
+            System.out.println();
+        }
+    }
+
+    /**
+     * Reproduce una traza en una cache de un solo segmento, para comparar las politicas sin el efecto del reparto.
+     *
+     * @param trace   Claves consultadas, en orden.
+     * @param maxSize Tamaño de la cache.
+     * @param policy  Politica de expulsion.
+     * @return Las estadisticas de la cache al terminar.
+     */
+    public static CacheStats simulate(long[] trace, int maxSize, EvictionPolicy.Type policy) {
+        var cache = new SegmentedCache<Long, Boolean>(maxSize, policy, 1);
+        for (long key : trace) {
+            if (cache.getIfPresent(key) == null) {
+                cache.put(key, Boolean.TRUE).block();
+            }
+        }
+        return cache.stats();
+    }
+}
@@ -0,0 +1,22 @@
+package develop.server.services.services.cache;
+
+/**
+ * Estadisticas de uso de una cache.
+ *
+ * @param hits        Numero de consultas que se han encontrado en la cache.
+ * @param misses      Numero de consultas que no se han encontrado en la cache.
+ * @param evictions   Numero de valores expulsados para no pasar del tamaño maximo.
+ * @param expirations Numero de valores eliminados porque han caducado.
+ */
+public record CacheStats(long hits, long misses, long evictions, long expirations) {
+
+    /**
+     * Proporcion de consultas que se han encontrado en la cache.
+     *
+     * @return Un valor entre 0 y 1 (0 si aun no hay consultas).
+     */
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
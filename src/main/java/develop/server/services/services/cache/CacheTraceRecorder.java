@@ -0,0 +1,156 @@
+package develop.server.services.services.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Guarda en un archivo, una por linea, las claves que se consultan en una cache, para poder reproducir despues
+ * el trafico real con {@link CacheSimulator} y comparar politicas de expulsion.
+ * Quien consulta la cache solo deja la clave en una cola sin cerrojos; un unico hilo la vacia y escribe el
+ * archivo, asi que las consultas no esperan a disco ni comparten un monitor. Si la cola esta llena (el disco
+ * no da abasto) las claves se descartan y se cuentan. El archivo se cierra al apagar la JVM.
+ */
+public final class CacheTraceRecorder {
+    private static final int MAX_PENDING = 64 * 1024;
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private final Logger logger = LoggerFactory.getLogger(CacheTraceRecorder.class);
+    private final Path file;
+    private final BufferedWriter writer;
+    private final Queue<Object> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread writerThread;
+    private volatile boolean closed = false;
+
+    private CacheTraceRecorder(Path file) throws IOException {
+        this.file = file;
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.writerThread = Thread.ofPlatform().name("cache-trace-writer").daemon().unstarted(this::drain);
+        logger.debug("Grabando la traza de la cache en: " + file);
+    }
+
+    /**
+     * Abre el archivo de la traza, añadiendo al final si ya existe, arranca el hilo que lo escribe y lo cierra
+     * al apagar la JVM.
+     *
+     * @param file Ruta del archivo.
+     * @return El grabador de la traza.
+     * @throws IOException Si no se puede abrir el archivo.
+     */
+    public static CacheTraceRecorder open(Path file) throws IOException {
+        var recorder = new CacheTraceRecorder(file);
+        recorder.writerThread.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(recorder::close));
+        return recorder;
+    }
+
+    /**
+     * Añade una consulta a la traza. No bloquea: si hay demasiadas claves pendientes de escribir se descarta.
+     *
+     * @param key Clave consultada.
+     */
+    public void record(Object key) {
+        if (closed) {
+            return;
+        }
+        if (pendingCount.incrementAndGet() > MAX_PENDING) {
+            pendingCount.decrementAndGet();
+            dropped.incrementAndGet();
+            return;
+        }
+        pending.offer(key);
+    }
+
+    /**
+     * Numero de consultas que no se han grabado porque la cola estaba llena.
+     *
+     * @return Las consultas descartadas.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Escribe lo pendiente, cierra el archivo y espera a que termine el hilo que lo escribe.
+     */
+    public void close() {
+        closed = true;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Bucle del hilo escritor: escribe las claves segun llegan y, cuando no hay ninguna, vuelca el archivo y
+     * espera un poco. Al cerrar escribe las que queden.
+     */
+    private void drain() {
+        boolean failed = false;
+        while (true) {
+            Object key = pending.poll();
+            if (key == null) {
+                if (closed) {
+                    break;
+                }
+                failed = failed || flush();
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            pendingCount.decrementAndGet();
+            if (!failed) {
+                failed = write(key);
+            }
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            logger.error("Error al cerrar la traza de la cache: " + e.getMessage());
+        }
+        if (dropped.get() > 0) {
+            logger.warn("Consultas descartadas de la traza de la cache: " + dropped.get());
+        }
+    }
+
+    /**
+     * @return true si ha fallado la escritura.
+     */
+    private boolean write(Object key) {
+        try {
+            writer.write(key.toString());
+            writer.newLine();
+            return false;
+        } catch (IOException e) {
+            logger.error("Error al escribir la traza de la cache en " + file + ": " + e.getMessage());
+            return true;
+        }
+    }
+
+    /**
+     * @return true si ha fallado la escritura.
+     */
+    private boolean flush() {
+        try {
+            writer.flush();
+            return false;
+        } catch (IOException e) {
+            logger.error("Error al escribir la traza de la cache en " + file + ": " + e.getMessage());
+            return true;
+        }
+    }
+}
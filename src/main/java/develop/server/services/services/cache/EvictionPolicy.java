@@ -0,0 +1,60 @@
+package develop.server.services.services.cache;
+
+/**
+ * Politica que decide que clave se expulsa de un segmento de la cache cuando se llena.
+ * Solo conoce las claves; los valores los guarda la cache. No es segura entre hilos: la cache la usa siempre
+ * con el cerrojo del segmento tomado.
+ *
+ * @param <K> Tipo de la clave.
+ */
+public interface EvictionPolicy<K> {
+
+    /**
+     * Politicas disponibles.
+     */
+    enum Type {
+        LRU, // Expulsa la clave usada hace mas tiempo
+        W_TINYLFU; // Ventana LRU y admision por frecuencia estimada (TinyLFU) para la zona principal
+
+        /**
+         * Crea una politica de este tipo.
+         *
+         * @param capacity Numero maximo de claves.
+         * @param <K>      Tipo de la clave.
+         * @return La politica creada.
+         */
+        public <K> EvictionPolicy<K> create(int capacity) {
+            return switch (this) {
+                case LRU -> new LruPolicy<>(capacity);
+                case W_TINYLFU -> new WindowTinyLfuPolicy<>(capacity);
+            };
+        }
+    }
+
+    /**
+     * Registra un acierto sobre una clave que ya esta en la cache.
+     *
+     * @param key La clave consultada o actualizada.
+     */
+    void recordAccess(K key);
+
+    /**
+     * Registra una clave nueva y decide si hay que expulsar alguna para no pasar de la capacidad.
+     *
+     * @param key La clave añadida.
+     * @return La clave que hay que expulsar (puede ser la propia clave añadida si no se admite), o null.
+     */
+    K add(K key);
+
+    /**
+     * Olvida una clave que se ha eliminado de la cache.
+     *
+     * @param key La clave eliminada.
+     */
+    void remove(K key);
+
+    /**
+     * Olvida todas las claves.
+     */
+    void clear();
+}
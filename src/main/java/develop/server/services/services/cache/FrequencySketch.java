@@ -0,0 +1,88 @@
+package develop.server.services.services.cache;
+
+import java.util.Arrays;
+
+/**
+ * Estimacion aproximada de cuantas veces se ha usado cada clave (Count-Min sketch con contadores de 4 bits).
+ * Cada clave actualiza cuatro contadores y su frecuencia es el menor de ellos, asi que puede sobrestimar pero
+ * nunca subestimar. Cuando se han hecho diez veces mas incrementos que la capacidad se dividen todos los
+ * contadores entre dos, para que las claves que fueron populares hace tiempo dejen de contar.
+ *
+ * @param <K> Tipo de la clave.
+ */
+final class FrequencySketch<K> {
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    private final long[] table; // 16 contadores de 4 bits por posicion
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int capacity) {
+        int size = Math.max(8, Integer.highestOneBit(Math.max(1, capacity - 1)) << 1);
+        this.table = new long[size];
+        this.sampleSize = 10 * Math.max(1, capacity);
+    }
+
+    /**
+     * Frecuencia estimada de una clave.
+     *
+     * @param key La clave.
+     * @return Un valor entre 0 y 15.
+     */
+    int frequency(K key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = 15;
+        for (int i = 0; i < 4; i++) {
+            int offset = (start + i) << 2;
+            frequency = Math.min(frequency, (int) ((table[indexOf(hash, i)] >>> offset) & 0xfL));
+        }
+        return frequency;
+    }
+
+    /**
+     * Cuenta un uso de una clave.
+     *
+     * @param key La clave.
+     */
+    void increment(K key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i);
+            int offset = (start + i) << 2;
+            if (((table[index] >>> offset) & 0xfL) != 0xfL) {
+                table[index] += 1L << offset;
+                added = true;
+            }
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    void clear() {
+        Arrays.fill(table, 0L);
+        additions = 0;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+
+    private int indexOf(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & (table.length - 1);
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
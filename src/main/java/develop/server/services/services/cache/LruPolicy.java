@@ -0,0 +1,44 @@
+package develop.server.services.services.cache;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Politica LRU: expulsa la clave usada hace mas tiempo.
+ *
+ * @param <K> Tipo de la clave.
+ */
+final class LruPolicy<K> implements EvictionPolicy<K> {
+    private final int capacity;
+    private final LinkedHashMap<K, Boolean> order;
+
+    LruPolicy(int capacity) {
+        this.capacity = capacity;
+        this.order = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        order.get(key);
+    }
+
+    @Override
+    public K add(K key) {
+        order.put(key, Boolean.TRUE);
+        if (order.size() > capacity) {
+            K eldest = order.keySet().iterator().next();
+            order.remove(eldest);
+            return eldest;
+        }
+        return null;
+    }
+
+    @Override
+    public void remove(K key) {
+        order.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        order.clear();
+    }
+}
@@ -0,0 +1,433 @@
+package develop.server.services.services.cache;
+
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache limitada y segura entre hilos. Las claves se reparten por su hash entre varios segmentos, cada uno con
+ * su propio cerrojo y su propia {@link EvictionPolicy}, de modo que los hilos que usan claves de segmentos
+ * distintos no se bloquean entre si y no hay ningun cerrojo global.
+ * El tamaño maximo se reparte entre los segmentos, asi que la politica decide dentro de cada segmento.
+ * Si se configura una {@link CacheExpiry}, cada segmento programa el vencimiento de sus valores en una
+ * {@link TimerWheel} que avanza con cada operacion y con {@link #cleanUp()}, sin recorrer nunca la cache.
+ *
+ * @param <K> Tipo de la clave.
+ * @param <V> Tipo del valor almacenado en cache.
+ */
+public class SegmentedCache<K, V> implements Cache<K, V> {
+    private static final int MIN_SEGMENT_SIZE = 16; // Para que la politica de cada segmento siga teniendo sentido
+    private static final int MAX_SEGMENTS = 64;
+    private final Segment<K, V>[] segments;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final BiConsumer<? super K, ? super V> removalListener;
+
+    /**
+     * Crea una cache LRU con tantos segmentos como permita el tamaño, hasta cuatro por procesador.
+     *
+     * @param maxSize Tamaño maximo de la cache.
+     */
+    public SegmentedCache(int maxSize) {
+        this(maxSize, EvictionPolicy.Type.LRU);
+    }
+
+    /**
+     * Crea una cache con tantos segmentos como permita el tamaño, hasta cuatro por procesador.
+     *
+     * @param maxSize Tamaño maximo de la cache.
+     * @param policy  Politica de expulsion.
+     */
+    public SegmentedCache(int maxSize, EvictionPolicy.Type policy) {
+        this(maxSize, policy, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * Crea una cache limitada.
+     *
+     * @param maxSize          Tamaño maximo de la cache.
+     * @param policy           Politica de expulsion.
+     * @param concurrencyLevel Numero de hilos que se espera que la usen a la vez; limita el numero de segmentos.
+     */
+    public SegmentedCache(int maxSize, EvictionPolicy.Type policy, int concurrencyLevel) {
+        this(maxSize, policy, concurrencyLevel, CacheExpiry.none());
+    }
+
+    /**
+     * Crea una cache limitada cuyos valores caducan.
+     *
+     * @param maxSize          Tamaño maximo de la cache.
+     * @param policy           Politica de expulsion.
+     * @param concurrencyLevel Numero de hilos que se espera que la usen a la vez; limita el numero de segmentos.
+     * @param expiry           Caducidad de los valores.
+     */
+    public SegmentedCache(int maxSize, EvictionPolicy.Type policy, int concurrencyLevel, CacheExpiry expiry) {
+        this(maxSize, policy, concurrencyLevel, expiry, (key, value) -> {
+        });
+    }
+
+    /**
+     * Crea una cache limitada cuyos valores caducan y que avisa de cada valor que sale de ella.
+     *
+     * @param maxSize          Tamaño maximo de la cache.
+     * @param policy           Politica de expulsion.
+     * @param concurrencyLevel Numero de hilos que se espera que la usen a la vez; limita el numero de segmentos.
+     * @param expiry           Caducidad de los valores.
+     * @param removalListener  Se llama con la clave y el valor de cada valor expulsado, caducado o eliminado, con el
+     *                         cerrojo del segmento tomado, asi que debe ser rapido y no usar la cache. No se llama al
+     *                         reemplazar un valor ni al vaciar la cache.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public SegmentedCache(int maxSize, EvictionPolicy.Type policy, int concurrencyLevel, CacheExpiry expiry,
+                          BiConsumer<? super K, ? super V> removalListener) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("El tamaño de la cache debe ser positivo: " + maxSize);
+        }
+        this.removalListener = removalListener;
+        int bySize = Integer.highestOneBit(Math.max(1, maxSize / MIN_SEGMENT_SIZE));
+        int byConcurrency = Integer.highestOneBit(Math.max(1, Math.min(concurrencyLevel, MAX_SEGMENTS)));
+        int count = Math.min(bySize, byConcurrency);
+        this.segments = new Segment[count];
+        this.mask = count - 1;
+        for (int i = 0; i < count; i++) {
+            // Repartimos el resto para que la suma sea exactamente el tamaño maximo
+            segments[i] = new Segment<>(policy.create(maxSize / count + (i < maxSize % count ? 1 : 0)), expiry, this);
+        }
+    }
+
+    /**
+     * Numero de segmentos, es decir, de cerrojos independientes. Cada segmento guarda al menos
+     * {@value #MIN_SEGMENT_SIZE} valores, asi que una cache muy pequeña tiene menos segmentos.
+     *
+     * @return El numero de segmentos.
+     */
+    public int segmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Almacena un valor en la cache; si el segmento esta lleno la politica decide que valor se expulsa,
+     * que puede ser el propio valor nuevo.
+     *
+     * @param key   Clave del cual se almacena el valor.
+     * @param value Valor a ser almacenado en cache.
+     * @return Un Mono que completa sin un valor cuando la operacion ha sido completada.
+     */
+    @Override
+    public Mono<Void> put(K key, V value) {
+        return Mono.fromRunnable(() -> segmentFor(key).put(key, value));
+    }
+
+    /**
+     * Recupera un valor de la cache y registra el uso en la politica de su segmento.
+     *
+     * @param key Clave que desea recuperar el valor.
+     * @return Un Mono que emite el valor a la clave, o vacio si no existe.
+     */
+    @Override
+    public Mono<V> get(K key) {
+        return Mono.justOrEmpty(getIfPresent(key));
+    }
+
+    /**
+     * Recupera un valor de la cache sin pasar por Reactor.
+     *
+     * @param key Clave que desea recuperar el valor.
+     * @return El valor, o null si no esta en la cache.
+     */
+    public V getIfPresent(K key) {
+        V value = segmentFor(key).get(key);
+        (value != null ? hits : misses).increment();
+        return value;
+    }
+
+    @Override
+    public Mono<Void> remove(K key) {
+        return Mono.fromRunnable(() -> segmentFor(key).remove(key));
+    }
+
+    /**
+     * Elimina los valores que cumplen una condicion. Los segmentos se recorren de uno en uno.
+     *
+     * @param filter Condicion que deben cumplir la clave y el valor para eliminarse.
+     * @return El numero de valores eliminados.
+     */
+    public int removeIf(BiPredicate<? super K, ? super V> filter) {
+        int removed = 0;
+        for (Segment<K, V> segment : segments) {
+            removed += segment.removeIf(filter);
+        }
+        return removed;
+    }
+
+    /**
+     * Elimina todos los valores almacenados en la cache.
+     */
+    @Override
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Avanza las ruedas de temporizadores de todos los segmentos, expulsando los valores caducados aunque nadie
+     * use su segmento. Solo se visitan los cubos vencidos, no los valores vigentes.
+     */
+    public void cleanUp() {
+        for (Segment<K, V> segment : segments) {
+            segment.cleanUp();
+        }
+    }
+
+    /**
+     * La cache no tiene hilos propios, no hay nada que detener.
+     */
+    @Override
+    public void shutdown() {
+    }
+
+    /**
+     * Numero de valores almacenados en la cache.
+     *
+     * @return La suma de los tamaños de los segmentos.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Estadisticas de aciertos, fallos, expulsiones y caducidades desde que se creo la cache.
+     *
+     * @return Las estadisticas acumuladas.
+     */
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), expirations.sum());
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[(h * 0x9E3779B9 >>> 16) & mask];
+    }
+
+    /**
+     * Valor guardado en un segmento, con su vencimiento en la rueda de temporizadores.
+     */
+    private static final class Entry<K, V> extends TimerWheel.Node<K> {
+        V value;
+        long writeDeadline; // Vencimiento por escritura, que no cambia al consultar el valor
+
+        Entry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Segmento de la cache: los valores en un HashMap, el orden de expulsion en la politica y los vencimientos en
+     * la rueda, protegidos por su propio cerrojo. Las lecturas tambien cambian el estado de la politica, por eso
+     * todas las operaciones lo toman.
+     */
+    private static final class Segment<K, V> {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final HashMap<K, Entry<K, V>> map = new HashMap<>();
+        private final EvictionPolicy<K> policy;
+        private final SegmentedCache<K, V> cache;
+        private final long afterWrite;
+        private final long afterAccess;
+        private final LongSupplier ticker;
+        private final long origin; // Los instantes se cuentan desde aqui para que sean siempre positivos
+        private final TimerWheel<K> wheel;
+
+        Segment(EvictionPolicy<K> policy, CacheExpiry expiry, SegmentedCache<K, V> cache) {
+            this.policy = policy;
+            this.cache = cache;
+            this.afterWrite = expiry.afterWriteNanos();
+            this.afterAccess = expiry.afterAccessNanos();
+            this.ticker = expiry.ticker();
+            this.origin = ticker.getAsLong();
+            this.wheel = expiry.enabled() ? new TimerWheel<>(0) : null;
+        }
+
+        V get(K key) {
+            lock.lock();
+            try {
+                long now = advance();
+                Entry<K, V> entry = map.get(key);
+                if (entry == null) {
+                    return null;
+                }
+                if (wheel != null && entry.deadline - now <= 0) {
+                    // Ha caducado dentro del cubo que la rueda aun no ha procesado
+                    expire(entry);
+                    return null;
+                }
+                policy.recordAccess(key);
+                if (afterAccess > 0) {
+                    schedule(entry, now, false);
+                }
+                return entry.value;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void put(K key, V value) {
+            lock.lock();
+            try {
+                long now = advance();
+                Entry<K, V> entry = map.get(key);
+                if (entry != null) {
+                    entry.value = value;
+                    policy.recordAccess(key);
+                    schedule(entry, now, true);
+                    return;
+                }
+                entry = new Entry<>(key, value);
+                map.put(key, entry);
+                K victim = policy.add(key);
+                if (victim != null) {
+                    Entry<K, V> evicted = map.remove(victim);
+                    if (wheel != null) {
+                        wheel.deschedule(evicted);
+                    }
+                    cache.evictions.increment();
+                    cache.removalListener.accept(victim, evicted.value);
+                }
+                if (victim != key) {
+                    schedule(entry, now, true);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void remove(K key) {
+            lock.lock();
+            try {
+                Entry<K, V> entry = map.remove(key);
+                if (entry != null) {
+                    policy.remove(key);
+                    if (wheel != null) {
+                        wheel.deschedule(entry);
+                    }
+                    cache.removalListener.accept(key, entry.value);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int removeIf(BiPredicate<? super K, ? super V> filter) {
+            lock.lock();
+            try {
+                int removed = 0;
+                Iterator<Map.Entry<K, Entry<K, V>>> it = map.entrySet().iterator();
+                while (it.hasNext()) {
+                    Entry<K, V> entry = it.next().getValue();
+                    if (filter.test(entry.key, entry.value)) {
+                        it.remove();
+                        policy.remove(entry.key);
+                        if (wheel != null) {
+                            wheel.deschedule(entry);
+                        }
+                        cache.removalListener.accept(entry.key, entry.value);
+                        removed++;
+                    }
+                }
+                return removed;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void clear() {
+            lock.lock();
+            try {
+                map.clear();
+                policy.clear();
+                if (wheel != null) {
+                    wheel.clear();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void cleanUp() {
+            if (wheel == null) {
+                return;
+            }
+            lock.lock();
+            try {
+                advance();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return map.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Avanza la rueda hasta ahora y devuelve el instante actual (0 si los valores no caducan).
+         */
+        @SuppressWarnings("unchecked")
+        private long advance() {
+            if (wheel == null) {
+                return 0;
+            }
+            long now = ticker.getAsLong() - origin;
+            wheel.advance(now, node -> expire((Entry<K, V>) node));
+            return now;
+        }
+
+        /**
+         * Calcula el vencimiento de un valor (el mas proximo de los dos tipos de caducidad) y lo reprograma.
+         */
+        private void schedule(Entry<K, V> entry, long now, boolean written) {
+            if (wheel == null) {
+                return;
+            }
+            long deadline = Long.MAX_VALUE;
+            if (afterWrite > 0) {
+                deadline = written || !entry.isScheduled() ? now + afterWrite : entry.writeDeadline;
+                entry.writeDeadline = deadline;
+            }
+            if (afterAccess > 0) {
+                deadline = Math.min(deadline, now + afterAccess);
+            }
+            entry.deadline = deadline;
+            wheel.schedule(entry);
+        }
+
+        private void expire(Entry<K, V> entry) {
+            map.remove(entry.key);
+            policy.remove(entry.key);
+            wheel.deschedule(entry);
+            cache.expirations.increment();
+            cache.removalListener.accept(entry.key, entry.value);
+        }
+    }
+}
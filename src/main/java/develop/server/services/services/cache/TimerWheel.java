@@ -0,0 +1,167 @@
+package develop.server.services.services.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Rueda de temporizadores jerarquica para caducar valores sin recorrer la cache.
+ * Cada nivel tiene cubos de un tamaño de tiempo (unos 1 s, 1 min, 1 h y 1 dia) y cada valor se enlaza en el cubo
+ * de su vencimiento, en una lista doblemente enlazada, asi que programarlo o quitarlo es O(1). Al avanzar el reloj
+ * solo se visitan los cubos que han vencido: los valores caducados se expulsan y el resto baja a un nivel mas fino.
+ * No es segura entre hilos: cada segmento de la cache tiene la suya y la usa con su cerrojo tomado.
+ *
+ * @param <K> Tipo de la clave.
+ */
+final class TimerWheel<K> {
+    private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+    // Potencias de dos de nanosegundos: ~1,07 s, ~1,14 min, ~1,22 h, ~1,63 dias y ~6,5 dias
+    private static final long[] SPANS = {1L << 30, 1L << 36, 1L << 42, 1L << 47, 1L << 49, 1L << 49};
+    private static final int[] SHIFT = {30, 36, 42, 47, 49};
+    private final Node<K>[][] wheel;
+    private long nanos;
+
+    /**
+     * Valor programado en la rueda.
+     */
+    static class Node<K> {
+        K key;
+        long deadline;
+        Node<K> prev;
+        Node<K> next;
+
+        boolean isScheduled() {
+            return next != null;
+        }
+    }
+
+    /**
+     * @param now Instante actual del reloj de la cache.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    TimerWheel(long now) {
+        this.nanos = now;
+        this.wheel = new Node[BUCKETS.length][];
+        for (int i = 0; i < BUCKETS.length; i++) {
+            wheel[i] = new Node[BUCKETS[i]];
+            for (int j = 0; j < BUCKETS[i]; j++) {
+                wheel[i][j] = sentinel();
+            }
+        }
+    }
+
+    /**
+     * Enlaza un valor en el cubo de su vencimiento; si ya estaba programado se mueve.
+     *
+     * @param node El valor, con su vencimiento ya asignado.
+     */
+    void schedule(Node<K> node) {
+        if (node.isScheduled()) {
+            unlink(node);
+        }
+        Node<K> sentinel = findBucket(node.deadline);
+        node.prev = sentinel.prev;
+        node.next = sentinel;
+        sentinel.prev.next = node;
+        sentinel.prev = node;
+    }
+
+    /**
+     * Quita un valor de la rueda, si estaba programado.
+     *
+     * @param node El valor.
+     */
+    void deschedule(Node<K> node) {
+        if (node.isScheduled()) {
+            unlink(node);
+        }
+    }
+
+    /**
+     * Avanza la rueda hasta el instante indicado, expulsando los valores que han caducado.
+     *
+     * @param now    Instante actual del reloj de la cache.
+     * @param expire Accion que elimina de la cache un valor caducado.
+     */
+    void advance(long now, Consumer<Node<K>> expire) {
+        long previous = nanos;
+        nanos = now;
+        for (int i = 0; i < SHIFT.length; i++) {
+            long previousTicks = previous >>> SHIFT[i];
+            long currentTicks = now >>> SHIFT[i];
+            long delta = currentTicks - previousTicks;
+            if (delta <= 0) {
+                break;
+            }
+            expire(i, previousTicks, delta, expire);
+        }
+    }
+
+    /**
+     * Olvida todos los valores programados.
+     */
+    void clear() {
+        for (Node<K>[] buckets : wheel) {
+            for (Node<K> sentinel : buckets) {
+                Node<K> node = sentinel.next;
+                while (node != sentinel) {
+                    Node<K> next = node.next;
+                    node.prev = null;
+                    node.next = null;
+                    node = next;
+                }
+                sentinel.prev = sentinel;
+                sentinel.next = sentinel;
+            }
+        }
+    }
+
+    private void expire(int level, long previousTicks, long delta, Consumer<Node<K>> expire) {
+        Node<K>[] buckets = wheel[level];
+        int mask = buckets.length - 1;
+        int steps = (int) Math.min(1 + delta, buckets.length);
+        int start = (int) (previousTicks & mask);
+        for (int i = start; i < start + steps; i++) {
+            Node<K> sentinel = buckets[i & mask];
+            // Separamos la lista del cubo antes de recorrerla, porque los que no han caducado se vuelven a programar
+            Node<K> node = sentinel.next;
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            while (node != sentinel) {
+                Node<K> next = node.next;
+                node.prev = null;
+                node.next = null;
+                if (node.deadline - nanos > 0) {
+                    schedule(node);
+                } else {
+                    expire.accept(node);
+                }
+                node = next;
+            }
+        }
+    }
+
+    private Node<K> findBucket(long deadline) {
+        long duration = deadline - nanos;
+        int last = wheel.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (duration < SPANS[i + 1]) {
+                long ticks = deadline >>> SHIFT[i];
+                return wheel[i][(int) (ticks & (wheel[i].length - 1))];
+            }
+        }
+        return wheel[last][0];
+    }
+
+    private void unlink(Node<K> node) {
+        node.prev.next = node.next;
+        node.next.prev = node.prev;
+        node.prev = null;
+        node.next = null;
+    }
+
+    private static <K> Node<K> sentinel() {
+        Node<K> sentinel = new Node<>();
+        sentinel.prev = sentinel;
+        sentinel.next = sentinel;
+        return sentinel;
+    }
+}
@@ -0,0 +1,92 @@
+package develop.server.services.services.cache;
+
+import java.util.LinkedHashMap;
+
+/**
+ * Politica W-TinyLFU. Las claves nuevas entran en una ventana LRU pequeña (1% de la capacidad); la que sale de la
+ * ventana solo pasa a la zona principal si se ha usado mas veces que la que habria que expulsar de ella, segun un
+ * {@link FrequencySketch}. Asi un recorrido de muchas claves que se usan una sola vez no desplaza a las populares.
+ * La zona principal es una LRU segmentada: las claves entran en periodo de prueba y pasan a la zona protegida
+ * (80% de la principal) cuando se vuelven a usar.
+ *
+ * @param <K> Tipo de la clave.
+ */
+final class WindowTinyLfuPolicy<K> implements EvictionPolicy<K> {
+    private final int capacity;
+    private final int windowCapacity;
+    private final int protectedCapacity;
+    private final FrequencySketch<K> sketch;
+    // Mapas en orden de acceso: la primera clave es la usada hace mas tiempo
+    private final LinkedHashMap<K, Boolean> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Boolean> probation = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<K, Boolean> protectedZone = new LinkedHashMap<>(16, 0.75f, true);
+
+    WindowTinyLfuPolicy(int capacity) {
+        this.capacity = capacity;
+        this.windowCapacity = Math.max(1, capacity / 100);
+        this.protectedCapacity = (int) ((capacity - windowCapacity) * 0.8);
+        this.sketch = new FrequencySketch<>(capacity);
+    }
+
+    @Override
+    public void recordAccess(K key) {
+        sketch.increment(key);
+        if (window.get(key) != null || protectedZone.get(key) != null) {
+            return;
+        }
+        if (probation.remove(key) != null) {
+            protectedZone.put(key, Boolean.TRUE);
+            if (protectedZone.size() > protectedCapacity) {
+                // La protegida usada hace mas tiempo vuelve a prueba
+                K demoted = eldest(protectedZone);
+                protectedZone.remove(demoted);
+                probation.put(demoted, Boolean.TRUE);
+            }
+        }
+    }
+
+    @Override
+    public K add(K key) {
+        sketch.increment(key);
+        window.put(key, Boolean.TRUE);
+        if (window.size() <= windowCapacity) {
+            return null;
+        }
+        K candidate = eldest(window);
+        window.remove(candidate);
+        if (window.size() + probation.size() + protectedZone.size() < capacity) {
+            probation.put(candidate, Boolean.TRUE);
+            return null;
+        }
+        LinkedHashMap<K, Boolean> victimZone = probation.isEmpty() ? protectedZone : probation;
+        if (victimZone.isEmpty()) {
+            return candidate;
+        }
+        K victim = eldest(victimZone);
+        if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+            victimZone.remove(victim);
+            probation.put(candidate, Boolean.TRUE);
+            return victim;
+        }
+        return candidate;
+    }
+
+    @Override
+    public void remove(K key) {
+        if (window.remove(key) == null && probation.remove(key) == null) {
+            protectedZone.remove(key);
+        }
+    }
+
+    @Override
+    public void clear() {
+        window.clear();
+        probation.clear();
+        protectedZone.clear();
+        sketch.clear();
+    }
+
+    private static <K> K eldest(LinkedHashMap<K, Boolean> zone) {
+        return zone.keySet().iterator().next();
+    }
+}
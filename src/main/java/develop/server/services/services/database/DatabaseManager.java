@@ -6,9 +6,10 @@ import io.r2dbc.pool.ConnectionPoolConfiguration;
 import io.r2dbc.spi.Connection;
 import io.r2dbc.spi.ConnectionFactories;
 import io.r2dbc.spi.ConnectionFactory;
-import io.r2dbc.spi.Statement;
+import io.r2dbc.spi.Result;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.io.*;
@@ -43,9 +44,11 @@ public class DatabaseManager {
 
         pool = new ConnectionPool(configuration);
 
-        // Por si hay que inicializar las tablas
+        // Por si hay que inicializar las tablas; si no, solo se crean las que falten
         if (databaseInitTables) {
             initTables();
+        } else {
+            executeScript("init.sql").block();
         }
     }
     /**
@@ -86,7 +89,7 @@ public class DatabaseManager {
     }
 
     /**
-     * Ejecuta un script SQL en la base de datos.
+     * Ejecuta un script SQL en la base de datos, sentencia a sentencia (separadas por punto y coma).
      *
      * @param scriptSqlFile Nombre del archivo que contiene el script SQL.
      * @return Un Mono que se completa cuando el script se ha ejecutado.
@@ -108,8 +111,12 @@ public class DatabaseManager {
                                 }
                             }
                         }
-                        Statement statement = connection.createStatement(scriptContent);
-                        return Mono.from(statement.execute());
+                        return Flux.fromArray(scriptContent.split(";"))
+                                .map(String::trim)
+                                .filter(sql -> !sql.isEmpty())
+                                .concatMap(sql -> Flux.from(connection.createStatement(sql).execute())
+                                        .flatMap(Result::getRowsUpdated))
+                                .then();
                     } catch (IOException e) {
                         return Mono.error(e);
                     }
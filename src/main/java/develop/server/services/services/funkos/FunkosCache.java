@@ -2,7 +2,12 @@ package develop.server.services.services.funkos;
 
 
 import develop.common.models.Funko;
+import develop.common.protocol.PreparedResponse;
+import develop.common.protocol.WireCodec;
 import develop.server.services.services.cache.Cache;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
 
 /**
  * Interfaz que define metodos para cachear objetos de Funko utilizando el cache.
@@ -11,4 +16,21 @@ import develop.server.services.services.cache.Cache;
  * por su identificador unico (ID).*
  */
 interface FunkosCache extends Cache<Long, Funko> {
+
+    /**
+     * Obtiene un Funko de la cache por su UUID.
+     *
+     * @param cod UUID del Funko.
+     * @return Mono que puede contener el Funko solicitado o estar vacio si no se encuentra en la cache.
+     */
+    Mono<Funko> getByUuid(UUID cod);
+
+    /**
+     * Obtiene la respuesta OK ya codificada de un Funko de la cache.
+     *
+     * @param key   Identificador unico del Funko.
+     * @param codec Protocolo de la conexion.
+     * @return Mono que puede contener la respuesta o estar vacio si el Funko no se encuentra en la cache.
+     */
+    Mono<PreparedResponse> getResponse(Long key, WireCodec codec);
 }
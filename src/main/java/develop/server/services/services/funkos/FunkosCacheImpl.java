@@ -1,42 +1,145 @@
 package develop.server.services.services.funkos;
 
 import develop.common.models.Funko;
+import develop.common.models.Response;
+import develop.common.protocol.PreparedResponse;
+import develop.common.protocol.WireCodec;
+import develop.common.utils.PropertiesReader;
+import develop.server.services.services.cache.CacheExpiry;
+import develop.server.services.services.cache.CacheStats;
+import develop.server.services.services.cache.CacheTraceRecorder;
+import develop.server.services.services.cache.EvictionPolicy;
+import develop.server.services.services.cache.SegmentedCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Mono;
 
-import java.time.LocalDateTime;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Implentacion de la interfaz FunkosCache que almacena Funkos en un cache limitada de eliminacion por caducidad y un tamano maximo
+ * Implentacion de la interfaz FunkosCache que almacena Funkos en un cache limitada de eliminacion por caducidad y un tamano maximo.
+ * Los Funkos se guardan en una {@link SegmentedCache}, que se puede usar a la vez desde los hilos de los clientes
+ * y desde el limpiador. Cada Funko caduca un tiempo despues de guardarse (o de usarse por ultima vez), contado
+ * con un reloj monotono; el limpiador solo avanza las ruedas de temporizadores de la cache, no la recorre.
+ * Ademas se mantiene un indice de UUID a id para buscar por UUID sin ir a la base de datos: se añade al guardar y
+ * la cache lo limpia al expulsar, caducar o eliminar cada Funko. El indice puede apuntar un momento a un Funko que
+ * ya no esta, pero nunca devuelve uno con otro UUID, porque cada busqueda comprueba el UUID del Funko encontrado.
+ * Opcionalmente cada Funko guarda tambien su respuesta ya codificada para cada protocolo, que se calcula la primera
+ * vez que se pide y se descarta con el propio Funko al reemplazarlo, expulsarlo o caducar.
  */
 public class FunkosCacheImpl implements FunkosCache {
     private final Logger logger = LoggerFactory.getLogger(FunkosCacheImpl.class);
-    private final int maxSize;
-    private final Map<Long, Funko> cache;
+    private static final int DEFAULT_SIZE = 10_000;
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(2);
+    private final SegmentedCache<Long, CachedFunko> cache;
+    private final boolean encodedResponses;
+    private final ConcurrentMap<UUID, Long> idsByCod = new ConcurrentHashMap<>();
+    private final CacheTraceRecorder trace;
     private final ScheduledExecutorService cleaner;
 
     /**
-     * Constructor de FunkosCacheImpl.
+     * Funko guardado en la cache, con sus respuestas ya codificadas para cada protocolo.
+     */
+    private static final class CachedFunko {
+        private final Funko funko;
+        private final ConcurrentMap<WireCodec, PreparedResponse> responses;
+
+        CachedFunko(Funko funko, boolean encodedResponses) {
+            this.funko = funko;
+            this.responses = encodedResponses ? new ConcurrentHashMap<>(2) : null;
+        }
+
+        PreparedResponse response(WireCodec codec) {
+            if (responses == null) {
+                return prepare(codec, funko);
+            }
+            return responses.computeIfAbsent(codec, c -> prepare(c, funko));
+        }
+    }
+
+    /**
+     * Constructor de FunkosCacheImpl con expulsion LRU y caducidad a los 2 minutos de guardar cada Funko.
      *
      * @param maxSize Tamano maximo de la cache.
      */
     public FunkosCacheImpl(int maxSize) {
-        this.maxSize = maxSize;
-        this.cache = new LinkedHashMap<Long, Funko>(maxSize, 0.75f, true) {
-            @Override
-            protected boolean removeEldestEntry(Map.Entry<Long, Funko> eldest) {
-                return size() > maxSize;
-            }
-        };
-        this.cleaner = Executors.newSingleThreadScheduledExecutor();
-        this.cleaner.scheduleAtFixedRate(this::clear, 2, 2, TimeUnit.MINUTES);
+        this(maxSize, EvictionPolicy.Type.LRU, CacheExpiry.afterWrite(DEFAULT_TTL), null);
+    }
+
+    /**
+     * Constructor de FunkosCacheImpl que guarda las respuestas codificadas de los Funkos.
+     *
+     * @param maxSize Tamano maximo de la cache.
+     * @param policy  Politica de expulsion.
+     * @param expiry  Caducidad de los Funkos.
+     * @param trace   Donde se graban las consultas para el simulador, o null para no grabarlas.
+     */
+    public FunkosCacheImpl(int maxSize, EvictionPolicy.Type policy, CacheExpiry expiry, CacheTraceRecorder trace) {
+        this(maxSize, policy, expiry, trace, true);
+    }
+
+    /**
+     * Constructor de FunkosCacheImpl.
+     *
+     * @param maxSize Tamano maximo de la cache.
+     * @param policy  Politica de expulsion.
+     * @param expiry  Caducidad de los Funkos.
+     * @param trace   Donde se graban las consultas para el simulador, o null para no grabarlas.
+     * @param encodedResponses Si se guardan las respuestas codificadas de cada Funko.
+     */
+    public FunkosCacheImpl(int maxSize, EvictionPolicy.Type policy, CacheExpiry expiry, CacheTraceRecorder trace,
+                           boolean encodedResponses) {
+        this.cache = new SegmentedCache<>(maxSize, policy, Runtime.getRuntime().availableProcessors() * 4, expiry,
+                (id, cached) -> unindex(id, cached.funko));
+        this.encodedResponses = encodedResponses;
+        this.trace = trace;
+        this.cleaner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "funkos-cache-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (expiry.enabled()) {
+            this.cleaner.scheduleAtFixedRate(cache::cleanUp, 1, 1, TimeUnit.SECONDS);
+        }
     }
+
+    /**
+     * Crea la cache con la configuracion del archivo de propiedades: tamaño (cache.maxSize), politica de
+     * expulsion (cache.policy), segundos de vida desde que se guarda (cache.expireAfterWrite) o desde que se usa
+     * (cache.expireAfterAccess), con 0 para no caducar, archivo donde grabar la traza de consultas
+     * (cache.traceFile, vacio para no grabarla) y si se guardan las respuestas codificadas (cache.encodedResponses).
+     * Si no se puede leer el archivo se usa una cache LRU de {@value #DEFAULT_SIZE} Funkos que caducan a los 2 minutos.
+     *
+     * @param fileName Nombre del archivo de propiedades.
+     * @return La cache configurada.
+     */
+    public static FunkosCacheImpl fromProperties(String fileName) {
+        Logger logger = LoggerFactory.getLogger(FunkosCacheImpl.class);
+        try {
+            PropertiesReader properties = new PropertiesReader(fileName);
+            int maxSize = Integer.parseInt(properties.getProperty("cache.maxSize", String.valueOf(DEFAULT_SIZE)));
+            var policy = EvictionPolicy.Type.valueOf(properties.getProperty("cache.policy", "LRU"));
+            long afterWrite = Long.parseLong(properties.getProperty("cache.expireAfterWrite", String.valueOf(DEFAULT_TTL.toSeconds())));
+            long afterAccess = Long.parseLong(properties.getProperty("cache.expireAfterAccess", "0"));
+            var expiry = new CacheExpiry(Duration.ofSeconds(afterWrite).toNanos(), Duration.ofSeconds(afterAccess).toNanos(), System::nanoTime);
+            String traceFile = properties.getProperty("cache.traceFile", "");
+            boolean encodedResponses = Boolean.parseBoolean(properties.getProperty("cache.encodedResponses", "true"));
+            logger.debug("Cache de funkos: " + policy + " con " + maxSize + " funkos, caducidad " + afterWrite + " s tras guardar y " + afterAccess + " s tras usar");
+            return new FunkosCacheImpl(maxSize, policy, expiry, traceFile.isBlank() ? null : CacheTraceRecorder.open(Path.of(traceFile)), encodedResponses);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Error al leer la configuración de la cache, se usa la configuración por defecto: " + e.getMessage());
+            return new FunkosCacheImpl(DEFAULT_SIZE);
+        }
+    }
+
     /**
      * Agrega un Funko a la cache.
      *
@@ -47,7 +150,12 @@ public class FunkosCacheImpl implements FunkosCache {
     @Override
     public Mono<Void> put(Long key, Funko value) {
         logger.debug("Añadiendo funko a cache con id: " + key + " y valor: " + value);
-        return Mono.fromRunnable(() -> cache.put(key, value));
+        return Mono.fromRunnable(() -> {
+            // Se indexa antes de guardar para que, si la politica lo rechaza, la cache quite el indice al expulsarlo
+            if (value.getCod() != null) {
+                idsByCod.put(value.getCod(), key);
+            }
+        }).then(cache.put(key, new CachedFunko(value, encodedResponses)));
     }
 
     /**
@@ -59,7 +167,63 @@ public class FunkosCacheImpl implements FunkosCache {
     @Override
     public Mono<Funko> get(Long key) {
         logger.debug("Obteniendo funko de cache con id: " + key);
-        return Mono.justOrEmpty(cache.get(key));
+        if (trace != null) {
+            trace.record(key);
+        }
+        return cache.get(key).map(cached -> cached.funko);
+    }
+
+    /**
+     * Obtiene la respuesta OK ya codificada de un Funko de la cache, codificandola solo la primera vez.
+     *
+     * @param key   Identificador unico del Funko.
+     * @param codec Protocolo de la conexion.
+     * @return Mono que puede contener la respuesta o estar vacio si el Funko no se encuentra en la cache.
+     */
+    @Override
+    public Mono<PreparedResponse> getResponse(Long key, WireCodec codec) {
+        logger.debug("Obteniendo respuesta de cache con id: " + key);
+        if (trace != null) {
+            trace.record(key);
+        }
+        return cache.get(key).map(cached -> cached.response(codec));
+    }
+
+    /**
+     * Codifica la respuesta OK con un Funko.
+     *
+     * @param codec Protocolo de la conexion.
+     * @param funko El Funko.
+     * @return La respuesta preparada.
+     */
+    public static PreparedResponse prepare(WireCodec codec, Funko funko) {
+        return codec.prepareResponse(Response.Status.OK, codec.encodeFunko(funko));
+    }
+
+    /**
+     * Obtiene un Funko de la cache por su UUID, a traves del indice de UUID a id.
+     *
+     * @param cod UUID del Funko.
+     * @return Mono que puede contener el Funko solicitado o estar vacio si no se encuentra en la cache.
+     */
+    @Override
+    public Mono<Funko> getByUuid(UUID cod) {
+        logger.debug("Obteniendo funko de cache con uuid: " + cod);
+        return Mono.fromSupplier(() -> {
+            Long id = idsByCod.get(cod);
+            if (id == null) {
+                return null;
+            }
+            if (trace != null) {
+                trace.record(id);
+            }
+            CachedFunko cached = cache.getIfPresent(id);
+            if (cached == null || !cod.equals(cached.funko.getCod())) {
+                idsByCod.remove(cod, id);
+                return null;
+            }
+            return cached.funko;
+        });
     }
 
     /**
@@ -70,21 +234,17 @@ public class FunkosCacheImpl implements FunkosCache {
     @Override
     public Mono<Void> remove(Long key) {
         logger.debug("Eliminando funko de cache con id: " + key);
-        return Mono.fromRunnable(() -> cache.remove(key));
+        return cache.remove(key);
     }
 
     /**
-     * Limpia el cache de los Funkos caducados.
+     * Elimina todos los Funkos de la cache. Los caducados se eliminan solos.
      */
     @Override
     public void clear() {
-        cache.entrySet().removeIf(entry -> {
-            boolean shouldRemove = entry.getValue().getUpdatedAt().plusMinutes(2).isBefore(LocalDateTime.now());
-            if (shouldRemove) {
-                logger.debug("Autoeliminando por caducidad funko de cache con id: " + entry.getKey());
-            }
-            return shouldRemove;
-        });
+        logger.debug("Vaciando la cache de funkos");
+        cache.clear();
+        idsByCod.clear();
     }
 
     /**
@@ -93,6 +253,9 @@ public class FunkosCacheImpl implements FunkosCache {
     @Override
     public void shutdown() {
         cleaner.shutdown();
+        if (trace != null) {
+            trace.close();
+        }
     }
 
     /**
@@ -102,4 +265,29 @@ public class FunkosCacheImpl implements FunkosCache {
     public int getTamano(){
         return this.cache.size();
     }
+
+    /**
+     * Numero de UUIDs en el indice secundario
+     * @return Tamano actual del indice de UUID a id
+     */
+    public int getTamanoIndiceUuid() {
+        return this.idsByCod.size();
+    }
+
+    /**
+     * Quita del indice el UUID de un Funko que sale de la cache, si aun apunta a el.
+     */
+    private void unindex(Long id, Funko funko) {
+        if (funko.getCod() != null) {
+            idsByCod.remove(funko.getCod(), id);
+        }
+    }
+
+    /**
+     * Obtiene las estadisticas de aciertos y fallos de la cache
+     * @return Estadisticas acumuladas de la cache
+     */
+    public CacheStats getStats() {
+        return this.cache.stats();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,15 @@
+package develop.server.services.services.funkos;
+
+import develop.common.models.Funko;
+
+import java.util.List;
+
+/**
+ * Lote de Funkos leido de un trozo del archivo CSV.
+ *
+ * @param funkos      Funkos del trozo, en el orden del archivo.
+ * @param endOffset   Posicion del archivo en la que termina el trozo (inicio de la linea siguiente).
+ * @param fingerprint Huella del archivo hasta el final del trozo (cabecera y ultimos bytes del trozo).
+ */
+public record FunkosCsvBatch(List<Funko> funkos, long endOffset, String fingerprint) {
+}
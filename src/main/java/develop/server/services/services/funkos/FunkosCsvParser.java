@@ -0,0 +1,329 @@
+package develop.server.services.services.funkos;
+
+import develop.common.models.Funko;
+import develop.common.models.Model;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Lector del CSV de Funkos (COD,NOMBRE,MODELO,PRECIO,FECHA_LANZAMIENTO) para archivos grandes.
+ * El archivo se proyecta en memoria y se divide en trozos que terminan en un salto de linea; los trozos se
+ * procesan en paralelo en el ForkJoinPool comun y se emiten en el orden del archivo.
+ * Los campos se leen directamente de los bytes; solo el nombre se convierte en String.
+ */
+final class FunkosCsvParser {
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024; // Bytes aproximados por trozo
+    private static final int FINGERPRINT_BYTES = 64 * 1024; // Bytes de la cabecera y del final de lo leido que entran en la huella
+    private static final int PARALLELISM = ForkJoinPool.commonPool().getParallelism();
+    private static final Scheduler PARSER_SCHEDULER = Schedulers.fromExecutor(ForkJoinPool.commonPool());
+    private static final Model[] MODELS = Model.values();
+    private static final byte[][] MODEL_NAMES = new byte[MODELS.length][];
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    static {
+        for (int i = 0; i < MODELS.length; i++) {
+            MODEL_NAMES[i] = MODELS[i].name().getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private FunkosCsvParser() {
+    }
+
+    /**
+     * Lee los Funkos de un archivo CSV con cabecera. Como mucho se procesan a la vez tantos trozos como hilos
+     * tiene el pool, asi que la memoria usada no depende del tamaño del archivo.
+     *
+     * @param file Ruta del archivo CSV.
+     * @return Un Flux que emite los Funkos en el orden del archivo.
+     */
+    static Flux<Funko> parse(Path file) {
+        return Flux.using(
+                () -> FileChannel.open(file, StandardOpenOption.READ),
+                channel -> Mono.fromCallable(() -> chunks(channel, nextLineStart(channel, 0, channel.size())))
+                        .flatMapIterable(chunks -> chunks)
+                        .flatMapSequential(chunk -> Mono.fromCallable(() -> parseChunk(chunk.buffer()))
+                                .subscribeOn(PARSER_SCHEDULER), PARALLELISM, 1)
+                        .concatMapIterable(funkos -> funkos),
+                FunkosCsvParser::closeQuietly
+        );
+    }
+
+    /**
+     * Lee los Funkos de un archivo CSV por trozos, con la huella del archivo hasta el final de cada trozo.
+     * La huella es el SHA-256 de la cabecera y de los {@value #FINGERPRINT_BYTES} bytes anteriores a esa posicion,
+     * asi que comprobarla no depende del tamaño del archivo. Si la huella hasta {@code resumeOffset} coincide con
+     * {@code resumeFingerprint}, esa parte ya se ha importado y se empieza a leer desde ahi; si no coincide (el
+     * archivo se ha cambiado por otro, se ha recortado o ha cambiado el final de lo importado) se lee entero.
+     * Un cambio en mitad de la parte ya importada no se detecta: para eso hay que hacer una importacion completa.
+     *
+     * @param file              Ruta del archivo CSV.
+     * @param resumeOffset      Posicion hasta la que se importo el archivo (0 para leerlo entero).
+     * @param resumeFingerprint Huella del archivo hasta esa posicion.
+     * @return Un Flux que emite un lote por trozo, en el orden del archivo.
+     */
+    static Flux<FunkosCsvBatch> parseBatches(Path file, long resumeOffset, String resumeFingerprint) {
+        return Flux.using(
+                () -> FileChannel.open(file, StandardOpenOption.READ),
+                channel -> Mono.fromCallable(() -> plan(channel, resumeOffset, resumeFingerprint))
+                        .flatMapMany(plan -> Flux.fromIterable(plan.chunks())
+                                .flatMapSequential(chunk -> Mono.fromCallable(() -> new FunkosCsvBatch(parseChunk(chunk.buffer()),
+                                                chunk.end(), fingerprint(channel, plan.headerEnd(), chunk.end())))
+                                        .subscribeOn(PARSER_SCHEDULER), PARALLELISM, 1)),
+                FunkosCsvParser::closeQuietly
+        );
+    }
+
+    /**
+     * Decide desde donde se lee: si la huella hasta {@code resumeOffset} coincide se sigue desde ahi y si no
+     * se vuelve a empezar despues de la cabecera.
+     */
+    private static Plan plan(FileChannel channel, long resumeOffset, String resumeFingerprint) throws IOException {
+        long size = channel.size();
+        long headerEnd = nextLineStart(channel, 0, size);
+        long start = headerEnd;
+        if (resumeOffset > headerEnd && resumeOffset <= size
+                && fingerprint(channel, headerEnd, resumeOffset).equals(resumeFingerprint)) {
+            start = resumeOffset;
+        }
+        return new Plan(headerEnd, chunks(channel, start));
+    }
+
+    /**
+     * Huella del archivo hasta {@code offset}: SHA-256 del principio de la cabecera y de los
+     * {@value #FINGERPRINT_BYTES} bytes anteriores a {@code offset} (sin repetir la cabecera).
+     */
+    private static String fingerprint(FileChannel channel, long headerEnd, long offset) throws IOException {
+        MessageDigest digest = newDigest();
+        digest.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(headerEnd, FINGERPRINT_BYTES)));
+        long from = Math.max(headerEnd, offset - FINGERPRINT_BYTES);
+        digest.update(channel.map(FileChannel.MapMode.READ_ONLY, from, offset - from));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Divide el archivo desde {@code start}, que debe ser el inicio de una linea, en trozos de unos
+     * {@value #CHUNK_SIZE} bytes que terminan en un salto de linea.
+     */
+    private static List<Chunk> chunks(FileChannel channel, long start) throws IOException {
+        long size = channel.size();
+        List<Chunk> chunks = new ArrayList<>();
+        while (start < size) {
+            long end = start + CHUNK_SIZE >= size ? size : nextLineStart(channel, start + CHUNK_SIZE, size);
+            chunks.add(new Chunk(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start), end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    private record Chunk(MappedByteBuffer buffer, long end) {
+    }
+
+    private record Plan(long headerEnd, List<Chunk> chunks) {
+    }
+
+    /**
+     * Devuelve la posicion siguiente al primer salto de linea desde {@code from}, o el final del archivo.
+     */
+    private static long nextLineStart(FileChannel channel, long from, long size) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(8192);
+        long position = from;
+        while (position < size) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (window.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static List<Funko> parseChunk(ByteBuffer chunk) {
+        List<Funko> funkos = new ArrayList<>();
+        int[] commas = new int[4];
+        int limit = chunk.limit();
+        int lineStart = 0;
+        while (lineStart < limit) {
+            int lineEnd = lineStart;
+            int fields = 0;
+            byte b;
+            while (lineEnd < limit && (b = chunk.get(lineEnd)) != '\n') {
+                if (b == ',' && fields < commas.length) {
+                    commas[fields++] = lineEnd;
+                }
+                lineEnd++;
+            }
+            int next = lineEnd + 1;
+            if (lineEnd > lineStart && chunk.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+            if (lineEnd > lineStart) {
+                if (fields < commas.length) {
+                    throw new IllegalArgumentException("Línea del CSV incompleta: " + ascii(chunk, lineStart, lineEnd));
+                }
+                funkos.add(Funko.builder()
+                        .cod(parseUuid(chunk, lineStart, commas[0]))
+                        .name(utf8(chunk, commas[0] + 1, commas[1]))
+                        .model(parseModel(chunk, commas[1] + 1, commas[2]))
+                        .price(parsePrice(chunk, commas[2] + 1, commas[3]))
+                        .releaseData(parseDate(chunk, commas[3] + 1, lineEnd))
+                        .build());
+            }
+            lineStart = next;
+        }
+        return funkos;
+    }
+
+    /**
+     * Lee un UUID con el formato canonico de 36 caracteres; si el campo es mas largo se ignora el resto,
+     * y si no tiene el formato canonico se delega en {@link UUID#fromString(String)}.
+     */
+    private static UUID parseUuid(ByteBuffer chunk, int start, int end) {
+        if (end - start >= 36 && chunk.get(start + 8) == '-' && chunk.get(start + 13) == '-'
+                && chunk.get(start + 18) == '-' && chunk.get(start + 23) == '-') {
+            long most = hex(chunk, start, start + 8) << 32 | hex(chunk, start + 9, start + 13) << 16 | hex(chunk, start + 14, start + 18);
+            long least = hex(chunk, start + 19, start + 23) << 48 | hex(chunk, start + 24, start + 36);
+            return new UUID(most, least);
+        }
+        String text = ascii(chunk, start, end);
+        return UUID.fromString(text.length() > 36 ? text.substring(0, 36) : text);
+    }
+
+    private static long hex(ByteBuffer chunk, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(chunk.get(i), 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("UUID no válido: " + ascii(chunk, start, end));
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    private static Model parseModel(ByteBuffer chunk, int start, int end) {
+        for (int m = 0; m < MODELS.length; m++) {
+            byte[] name = MODEL_NAMES[m];
+            if (name.length == end - start && matches(chunk, start, name)) {
+                return MODELS[m];
+            }
+        }
+        return Model.valueOf(ascii(chunk, start, end));
+    }
+
+    private static boolean matches(ByteBuffer chunk, int start, byte[] expected) {
+        for (int i = 0; i < expected.length; i++) {
+            if (chunk.get(start + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lee un precio con formato decimal simple (15.99). Con hasta 15 cifras se calcula como entero entre potencia
+     * de diez, que da el mismo double que {@link Double#parseDouble(String)}; cualquier otro formato se delega en el.
+     */
+    private static double parsePrice(ByteBuffer chunk, int start, int end) {
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (int i = start; i < end; i++) {
+            byte b = chunk.get(i);
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (decimals >= 0) {
+                    decimals++;
+                }
+            } else if (b == '.' && decimals < 0) {
+                decimals = 0;
+            } else {
+                return Double.parseDouble(ascii(chunk, start, end));
+            }
+        }
+        if (digits == 0 || digits > 15) {
+            return Double.parseDouble(ascii(chunk, start, end));
+        }
+        return decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+    }
+
+    /**
+     * Lee una fecha con formato yyyy-MM-dd.
+     */
+    private static LocalDate parseDate(ByteBuffer chunk, int start, int end) {
+        if (end - start == 10 && chunk.get(start + 4) == '-' && chunk.get(start + 7) == '-') {
+            int year = digits(chunk, start, start + 4);
+            int month = digits(chunk, start + 5, start + 7);
+            int day = digits(chunk, start + 8, start + 10);
+            if (year >= 0 && month >= 0 && day >= 0) {
+                return LocalDate.of(year, month, day);
+            }
+        }
+        return LocalDate.parse(ascii(chunk, start, end));
+    }
+
+    private static int digits(ByteBuffer chunk, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            byte b = chunk.get(i);
+            if (b < '0' || b > '9') {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private static String utf8(ByteBuffer chunk, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        chunk.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String ascii(ByteBuffer chunk, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        chunk.get(start, bytes);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // El canal solo se ha leido, no hay nada que perder al cerrarlo
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package develop.server.services.services.funkos;
+
+import develop.common.utils.PropertiesReader;
+import develop.server.services.services.cache.CacheExpiry;
+import develop.server.services.services.cache.CacheStats;
+import develop.server.services.services.cache.EvictionPolicy;
+import develop.server.services.services.cache.SegmentedCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache de los ids y UUIDs que se han buscado y no existen, para no volver a preguntar a la base de datos por ellos
+ * durante un tiempo corto. Esta limitada en tamaño (expulsion LRU) y cada entrada caduca a los pocos segundos.
+ * Al guardar un Funko se invalidan su id y su UUID. Como una busqueda puede terminar despues de un guardado que
+ * ha creado ese Funko, cada busqueda toma un sello antes de consultar y solo apunta el fallo si desde entonces no
+ * se ha invalidado nada; apuntar e invalidar se hacen con el cerrojo de la cache, que solo se toma en los fallos
+ * y los guardados.
+ * Los aciertos de la cache son las consultas a la base de datos que se han evitado.
+ */
+public class FunkosNegativeCache {
+    private final Logger logger = LoggerFactory.getLogger(FunkosNegativeCache.class);
+    private static final int DEFAULT_SIZE = 1000;
+    private static final Duration DEFAULT_TTL = Duration.ofSeconds(5);
+    private final SegmentedCache<Long, Boolean> ids;
+    private final SegmentedCache<UUID, Boolean> uuids;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Constructor de FunkosNegativeCache.
+     *
+     * @param maxSize Numero maximo de ids, y tambien de UUIDs, que se recuerdan.
+     * @param expiry  Caducidad de cada entrada.
+     */
+    public FunkosNegativeCache(int maxSize, CacheExpiry expiry) {
+        int concurrency = Runtime.getRuntime().availableProcessors() * 4;
+        this.ids = new SegmentedCache<>(maxSize, EvictionPolicy.Type.LRU, concurrency, expiry);
+        this.uuids = new SegmentedCache<>(maxSize, EvictionPolicy.Type.LRU, concurrency, expiry);
+    }
+
+    /**
+     * Crea la cache con la configuracion del archivo de propiedades: tamaño (cache.negative.maxSize) y segundos
+     * que se recuerda cada fallo (cache.negative.ttl).
+     * Si no se puede leer el archivo se recuerdan {@value #DEFAULT_SIZE} fallos durante 5 segundos.
+     *
+     * @param fileName Nombre del archivo de propiedades.
+     * @return La cache configurada.
+     */
+    public static FunkosNegativeCache fromProperties(String fileName) {
+        Logger logger = LoggerFactory.getLogger(FunkosNegativeCache.class);
+        try {
+            PropertiesReader properties = new PropertiesReader(fileName);
+            int maxSize = Integer.parseInt(properties.getProperty("cache.negative.maxSize", String.valueOf(DEFAULT_SIZE)));
+            long ttl = Long.parseLong(properties.getProperty("cache.negative.ttl", String.valueOf(DEFAULT_TTL.toSeconds())));
+            logger.debug("Cache negativa de funkos: " + maxSize + " ids y uuids durante " + ttl + " s");
+            return new FunkosNegativeCache(maxSize, CacheExpiry.afterWrite(Duration.ofSeconds(ttl)));
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Error al leer la configuración de la cache negativa, se usa la configuración por defecto: " + e.getMessage());
+            return new FunkosNegativeCache(DEFAULT_SIZE, CacheExpiry.afterWrite(DEFAULT_TTL));
+        }
+    }
+
+    /**
+     * Sello que hay que tomar antes de consultar la base de datos y pasar al apuntar el fallo.
+     *
+     * @return El numero de invalidaciones hechas hasta ahora.
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * Indica si se sabe que no existe un Funko con ese id.
+     *
+     * @param id Identificador del Funko.
+     * @return true si el id se ha buscado hace poco y no existia.
+     */
+    public boolean isMissingId(long id) {
+        return ids.getIfPresent(id) != null;
+    }
+
+    /**
+     * Indica si se sabe que no existe un Funko con ese UUID.
+     *
+     * @param cod UUID del Funko.
+     * @return true si el UUID se ha buscado hace poco y no existia.
+     */
+    public boolean isMissingUuid(UUID cod) {
+        return uuids.getIfPresent(cod) != null;
+    }
+
+    /**
+     * Apunta que no existe un Funko con ese id, salvo que se haya invalidado algo desde que se tomo el sello.
+     *
+     * @param id    Identificador buscado.
+     * @param stamp Sello tomado antes de consultar la base de datos.
+     */
+    public synchronized void addMissingId(long id, long stamp) {
+        if (invalidations.get() == stamp) {
+            logger.debug("Añadiendo a la cache negativa el id: " + id);
+            ids.put(id, Boolean.TRUE).block();
+        }
+    }
+
+    /**
+     * Apunta que no existe un Funko con ese UUID, salvo que se haya invalidado algo desde que se tomo el sello.
+     *
+     * @param cod   UUID buscado.
+     * @param stamp Sello tomado antes de consultar la base de datos.
+     */
+    public synchronized void addMissingUuid(UUID cod, long stamp) {
+        if (invalidations.get() == stamp) {
+            logger.debug("Añadiendo a la cache negativa el uuid: " + cod);
+            uuids.put(cod, Boolean.TRUE).block();
+        }
+    }
+
+    /**
+     * Olvida los fallos de un Funko que se acaba de guardar.
+     *
+     * @param id  Identificador asignado al Funko.
+     * @param cod UUID del Funko.
+     */
+    public synchronized void invalidate(long id, UUID cod) {
+        invalidations.incrementAndGet();
+        ids.remove(id).block();
+        if (cod != null) {
+            uuids.remove(cod).block();
+        }
+    }
+
+    /**
+     * Olvida todos los fallos, por ejemplo tras una importacion que no devuelve los Funkos guardados.
+     */
+    public synchronized void clear() {
+        invalidations.incrementAndGet();
+        ids.clear();
+        uuids.clear();
+    }
+
+    /**
+     * Estadisticas conjuntas de ids y UUIDs; los aciertos son las consultas a la base de datos evitadas.
+     *
+     * @return Las estadisticas acumuladas.
+     */
+    public CacheStats getStats() {
+        CacheStats byId = ids.stats();
+        CacheStats byUuid = uuids.stats();
+        return new CacheStats(byId.hits() + byUuid.hits(), byId.misses() + byUuid.misses(),
+                byId.evictions() + byUuid.evictions(), byId.expirations() + byUuid.expirations());
+    }
+}
@@ -0,0 +1,75 @@
+package develop.server.services.services.funkos;
+
+import develop.common.models.Model;
+
+import java.time.LocalDate;
+
+/**
+ * Consulta de Funkos cuyo resultado se puede guardar en la cache de consultas: el tipo de consulta y sus parametros,
+ * que son la clave del resultado. Los parametros que no usa el tipo son null.
+ *
+ * @param type   Tipo de consulta.
+ * @param nombre Nombre buscado (BY_NOMBRE).
+ * @param model  Modelo buscado (BY_MODEL).
+ * @param from   Primera fecha de lanzamiento, incluida (BY_RELEASE_DATE).
+ * @param to     Ultima fecha de lanzamiento, incluida (BY_RELEASE_DATE).
+ */
+public record FunkosQuery(Type type, String nombre, Model model, LocalDate from, LocalDate to) {
+
+    /**
+     * Tipos de consulta.
+     */
+    public enum Type {
+        ALL, BY_NOMBRE, BY_MODEL, BY_RELEASE_DATE
+    }
+
+    /**
+     * Todos los Funkos.
+     *
+     * @return La consulta.
+     */
+    public static FunkosQuery all() {
+        return new FunkosQuery(Type.ALL, null, null, null, null);
+    }
+
+    /**
+     * Los Funkos con un nombre.
+     *
+     * @param nombre Nombre buscado.
+     * @return La consulta.
+     */
+    public static FunkosQuery byNombre(String nombre) {
+        return new FunkosQuery(Type.BY_NOMBRE, nombre, null, null, null);
+    }
+
+    /**
+     * Los Funkos de un modelo.
+     *
+     * @param model Modelo buscado.
+     * @return La consulta.
+     */
+    public static FunkosQuery byModel(Model model) {
+        return new FunkosQuery(Type.BY_MODEL, null, model, null, null);
+    }
+
+    /**
+     * Los Funkos lanzados entre dos fechas.
+     *
+     * @param from Primera fecha del rango, incluida.
+     * @param to   Ultima fecha del rango, incluida.
+     * @return La consulta.
+     */
+    public static FunkosQuery byReleaseDate(LocalDate from, LocalDate to) {
+        return new FunkosQuery(Type.BY_RELEASE_DATE, null, null, from, to);
+    }
+
+    /**
+     * Los Funkos lanzados en un año, del 1 de enero al 31 de diciembre.
+     *
+     * @param year Año de lanzamiento.
+     * @return La consulta.
+     */
+    public static FunkosQuery byReleaseYear(int year) {
+        return byReleaseDate(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31));
+    }
+}
@@ -0,0 +1,143 @@
+package develop.server.services.services.funkos;
+
+import develop.common.utils.PropertiesReader;
+import develop.server.services.services.cache.CacheStats;
+import develop.server.services.services.cache.EvictionPolicy;
+import develop.server.services.services.cache.SegmentedCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache de los resultados de las consultas de Funkos ({@link FunkosQuery}), guardados como {@link FunkosQuerySnapshot}.
+ * Cada cambio en el catalogo sube su version y los resultados de versiones anteriores dejan de valer, sin tener
+ * que buscarlos: simplemente ya no se devuelven y el siguiente resultado de la misma consulta los reemplaza.
+ * Un resultado solo se guarda si el catalogo no ha cambiado desde que empezo su consulta, y los que tienen mas de
+ * un numero maximo de Funkos no se guardan.
+ */
+public class FunkosQueryCache {
+    private final Logger logger = LoggerFactory.getLogger(FunkosQueryCache.class);
+    private static final int DEFAULT_SIZE = 64;
+    private static final int DEFAULT_MAX_ROWS = 10_000;
+    private final SegmentedCache<FunkosQuery, FunkosQuerySnapshot> snapshots;
+    private final int maxRows;
+    private final AtomicLong version = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Constructor de FunkosQueryCache.
+     *
+     * @param maxSize Numero maximo de consultas distintas que se guardan (expulsion LRU).
+     * @param maxRows Numero maximo de Funkos de un resultado para guardarlo.
+     */
+    public FunkosQueryCache(int maxSize, int maxRows) {
+        this.snapshots = new SegmentedCache<>(maxSize, EvictionPolicy.Type.LRU);
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * Crea la cache con la configuracion del archivo de propiedades: numero de consultas (cache.query.maxSize)
+     * y numero maximo de Funkos de cada resultado (cache.query.maxRows).
+     * Si no se puede leer el archivo se guardan {@value #DEFAULT_SIZE} consultas de hasta {@value #DEFAULT_MAX_ROWS} Funkos.
+     *
+     * @param fileName Nombre del archivo de propiedades.
+     * @return La cache configurada.
+     */
+    public static FunkosQueryCache fromProperties(String fileName) {
+        Logger logger = LoggerFactory.getLogger(FunkosQueryCache.class);
+        try {
+            PropertiesReader properties = new PropertiesReader(fileName);
+            int maxSize = Integer.parseInt(properties.getProperty("cache.query.maxSize", String.valueOf(DEFAULT_SIZE)));
+            int maxRows = Integer.parseInt(properties.getProperty("cache.query.maxRows", String.valueOf(DEFAULT_MAX_ROWS)));
+            logger.debug("Cache de consultas de funkos: " + maxSize + " consultas de hasta " + maxRows + " funkos");
+            return new FunkosQueryCache(maxSize, maxRows);
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Error al leer la configuración de la cache de consultas, se usa la configuración por defecto: " + e.getMessage());
+            return new FunkosQueryCache(DEFAULT_SIZE, DEFAULT_MAX_ROWS);
+        }
+    }
+
+    /**
+     * Version actual del catalogo; hay que tomarla antes de lanzar la consulta cuyo resultado se va a guardar.
+     *
+     * @return El numero de cambios del catalogo hasta ahora.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Numero maximo de Funkos de un resultado para guardarlo.
+     *
+     * @return El numero maximo de Funkos.
+     */
+    public int maxRows() {
+        return maxRows;
+    }
+
+    /**
+     * Obtiene el resultado guardado de una consulta si es de la version actual del catalogo.
+     *
+     * @param query La consulta.
+     * @return El resultado, o null si no esta o es de una version anterior.
+     */
+    public FunkosQuerySnapshot get(FunkosQuery query) {
+        FunkosQuerySnapshot snapshot = snapshots.getIfPresent(query);
+        if (snapshot == null || snapshot.version() != version.get()) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return snapshot;
+    }
+
+    /**
+     * Como {@link #get(FunkosQuery)}, pero solo cuenta los aciertos, para quien si no encuentra el resultado lo
+     * va a pedir despues con get y no debe contar el fallo dos veces.
+     *
+     * @param query La consulta.
+     * @return El resultado, o null si no esta o es de una version anterior.
+     */
+    public FunkosQuerySnapshot peek(FunkosQuery query) {
+        FunkosQuerySnapshot snapshot = snapshots.getIfPresent(query);
+        if (snapshot == null || snapshot.version() != version.get()) {
+            return null;
+        }
+        hits.increment();
+        return snapshot;
+    }
+
+    /**
+     * Guarda el resultado de una consulta, salvo que el catalogo haya cambiado desde que empezo o sea demasiado grande.
+     *
+     * @param query    La consulta.
+     * @param snapshot Su resultado.
+     */
+    public void put(FunkosQuery query, FunkosQuerySnapshot snapshot) {
+        if (snapshot.version() == version.get() && snapshot.funkos().size() <= maxRows) {
+            logger.debug("Guardando resultado de la consulta " + query + " con " + snapshot.funkos().size() + " funkos");
+            snapshots.put(query, snapshot).block();
+        }
+    }
+
+    /**
+     * Sube la version del catalogo, con lo que dejan de valer todos los resultados guardados.
+     * Hay que llamarlo cuando el cambio ya esta en la base de datos y antes de responder a quien lo pidio.
+     */
+    public void invalidateAll() {
+        version.incrementAndGet();
+    }
+
+    /**
+     * Estadisticas de la cache; los resultados de versiones anteriores cuentan como fallos.
+     *
+     * @return Las estadisticas acumuladas.
+     */
+    public CacheStats getStats() {
+        return new CacheStats(hits.sum(), misses.sum(), snapshots.stats().evictions(), 0);
+    }
+}
@@ -0,0 +1,81 @@
+package develop.server.services.services.funkos;
+
+import develop.common.models.Funko;
+import develop.common.protocol.WireCodec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resultado de una {@link FunkosQuery} tal como estaba en una version del catalogo. La lista no se puede modificar
+ * y su codificacion para cada {@link WireCodec} se calcula la primera vez que se pide y despues se reutiliza, asi
+ * que responder con un resultado guardado no vuelve a serializar los Funkos.
+ */
+public final class FunkosQuerySnapshot {
+    private final long version;
+    private final List<Funko> funkos;
+    private final ConcurrentMap<WireCodec, String> encoded = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Chunking, List<String>> encodedChunks = new ConcurrentHashMap<>();
+
+    private record Chunking(WireCodec codec, int size) {
+    }
+
+    /**
+     * Constructor de FunkosQuerySnapshot.
+     *
+     * @param version Version del catalogo cuando empezo la consulta.
+     * @param funkos  Funkos del resultado, en orden.
+     */
+    public FunkosQuerySnapshot(long version, List<Funko> funkos) {
+        this.version = version;
+        this.funkos = List.copyOf(funkos);
+    }
+
+    /**
+     * Version del catalogo de la que se leyo el resultado.
+     *
+     * @return Version del catalogo cuando empezo la consulta.
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Funkos del resultado.
+     *
+     * @return Los Funkos del resultado, en una lista que no se puede modificar.
+     */
+    public List<Funko> funkos() {
+        return funkos;
+    }
+
+    /**
+     * El resultado codificado como contenido de una respuesta.
+     *
+     * @param codec Codec de la conexion.
+     * @return El contenido codificado.
+     */
+    public String encoded(WireCodec codec) {
+        return encoded.computeIfAbsent(codec, c -> c.encodeFunkos(funkos));
+    }
+
+    /**
+     * El resultado partido en fragmentos y codificado, para las respuestas por streaming.
+     *
+     * @param codec Codec de la conexion.
+     * @param size  Funkos por fragmento.
+     * @return El contenido codificado de cada fragmento (ninguno si el resultado esta vacio).
+     */
+    public List<String> encodedChunks(WireCodec codec, int size) {
+        return encodedChunks.computeIfAbsent(new Chunking(codec, size), chunking -> {
+            List<String> chunks = new ArrayList<>();
+            for (int i = 0; i < funkos.size(); i += size) {
+                chunks.add(codec.encodeFunkos(funkos.subList(i, Math.min(i + size, funkos.size()))));
+            }
+            return Collections.unmodifiableList(chunks);
+        });
+    }
+}
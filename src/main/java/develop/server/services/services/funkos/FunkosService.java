@@ -1,9 +1,15 @@
 package develop.server.services.services.funkos;
 
+import develop.common.models.BatchResult;
 import develop.common.models.Funko;
+import develop.common.models.Model;
+import develop.common.protocol.PreparedResponse;
+import develop.common.protocol.WireCodec;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDate;
+import java.util.List;
 import java.util.UUID;
 
 /**
@@ -17,6 +23,24 @@ public interface FunkosService {
      */
     Flux<Funko> findAll();
 
+    /**
+     * Recupera una pagina de Funkos ordenados por identificador a partir de un cursor.
+     *
+     * @param afterId Identificador del ultimo Funko de la pagina anterior (0 para la primera pagina).
+     * @param limit   Numero maximo de Funkos de la pagina.
+     * @return Flux de Funko con los Funkos de la pagina.
+     */
+    Flux<Funko> findPage(long afterId, int limit);
+
+    /**
+     * Recupera una pagina de Funkos ordenados por identificador saltando los primeros.
+     *
+     * @param limit  Numero maximo de Funkos de la pagina.
+     * @param offset Numero de Funkos que se saltan.
+     * @return Flux de Funko con los Funkos de la pagina.
+     */
+    Flux<Funko> findAll(int limit, long offset);
+
     /**
      * Recupera un Flujo (Flux) de Funko que coinciden con el nombre especificado.
      *
@@ -25,6 +49,48 @@ public interface FunkosService {
      */
     Flux<Funko> findAllByNombre(String nombre);
 
+    /**
+     * Recupera un Flujo (Flux) de Funko del modelo especificado.
+     *
+     * @param model Modelo por el cual filtrar los Funkos.
+     * @return Flux de Funko que contiene los Funkos del modelo.
+     */
+    Flux<Funko> findAllByModel(Model model);
+
+    /**
+     * Recupera un Flujo (Flux) de Funko lanzados entre dos fechas, ambas incluidas.
+     *
+     * @param from Primera fecha del rango.
+     * @param to   Ultima fecha del rango.
+     * @return Flux de Funko que contiene los Funkos lanzados en el rango.
+     */
+    Flux<Funko> findAllByReleaseDate(LocalDate from, LocalDate to);
+
+    /**
+     * Recupera un Flujo (Flux) de Funko lanzados en un año.
+     *
+     * @param year Año de lanzamiento.
+     * @return Flux de Funko que contiene los Funkos lanzados ese año.
+     */
+    Flux<Funko> findAllByReleaseYear(int year);
+
+    /**
+     * Recupera el resultado guardado de una consulta si el catalogo no ha cambiado desde que se leyo.
+     *
+     * @param query La consulta.
+     * @return Mono con el resultado guardado, o vacio si no lo hay.
+     */
+    Mono<FunkosQuerySnapshot> findSnapshot(FunkosQuery query);
+
+    /**
+     * Recupera la respuesta OK ya codificada con un Funko, buscado por su identificador.
+     *
+     * @param id    Identificador del Funko.
+     * @param codec Protocolo de la conexion.
+     * @return Mono con la respuesta preparada, o con un error si el Funko no existe.
+     */
+    Mono<PreparedResponse> findResponseById(long id, WireCodec codec);
+
     /**
      * Busca un Funko por su identificador unico.
      *
@@ -71,4 +137,28 @@ public interface FunkosService {
      * @return Mono que puede contener el Funko correspondiente al UUID o ser vacio si no se encuentra.
      */
     Mono<Funko> findByUuid(UUID uuid);
-}
\ No newline at end of file
+
+    /**
+     * Guarda varios Funkos en una sola operacion.
+     *
+     * @param funkos Funkos a ser guardados.
+     * @return Flux con el resultado de cada Funko, en el mismo orden.
+     */
+    Flux<BatchResult> saveAll(List<Funko> funkos);
+
+    /**
+     * Actualiza varios Funkos en una sola operacion.
+     *
+     * @param funkos Funkos con los cambios a ser aplicados.
+     * @return Flux con el resultado de cada Funko, en el mismo orden.
+     */
+    Flux<BatchResult> updateAll(List<Funko> funkos);
+
+    /**
+     * Elimina varios Funkos por su identificador en una sola operacion.
+     *
+     * @param ids Identificadores de los Funkos a ser eliminados.
+     * @return Flux con el resultado de cada identificador, en el mismo orden.
+     */
+    Flux<BatchResult> deleteAllById(List<Long> ids);
+}
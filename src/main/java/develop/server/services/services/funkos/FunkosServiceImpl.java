@@ -1,27 +1,53 @@
 package develop.server.services.services.funkos;
 
+import develop.common.models.BatchResult;
 import develop.common.models.Funko;
+import develop.common.models.Model;
 import develop.common.models.Notificacion;
+import develop.common.protocol.PreparedResponse;
+import develop.common.protocol.WireCodec;
 import develop.server.exceptions.funkos.FunkoNoEncotradoException;
 import develop.server.repositories.funkos.FunkosRepository;
+import develop.server.repositories.funkos.ImportCheckpoint;
+import develop.server.services.services.cache.CacheStats;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
 
 public class FunkosServiceImpl implements FunkosService {
-    private static final int CACHE_SIZE = 10;
+    private static final int WRITE_STAMP_STRIPES = 1024;
     private static FunkosServiceImpl instance;
     private final FunkosCache cache;
+    private final FunkosNegativeCache negativeCache;
+    private final FunkosQueryCache queryCache;
     private final FunkosNotification notification;
     private final Logger logger = LoggerFactory.getLogger(FunkosServiceImpl.class);
     private final FunkosRepository funkosRepository;
     private final FunkosStorage storage;
+    // Busquedas por id que estan en curso en la base de datos, compartidas por todos los que piden el mismo id
+    private final ConcurrentMap<Long, Mono<Funko>> loadsInFlight = new ConcurrentHashMap<>();
+    // Sellos de escritura: cada cambio de un Funko incrementa el de su grupo de ids y el global, para que una
+    // consulta que empezo antes no deje en la cache la fila que leyo
+    private final AtomicLongArray writeStamps = new AtomicLongArray(WRITE_STAMP_STRIPES);
+    private final AtomicLong writes = new AtomicLong();
 
     private FunkosServiceImpl(FunkosRepository funkosRepository, FunkosNotification notification, FunkosStorage storage) {
         this.funkosRepository = funkosRepository;
-        this.cache = new FunkosCacheImpl(CACHE_SIZE);
+        this.cache = FunkosCacheImpl.fromProperties("cache.properties");
+        this.negativeCache = FunkosNegativeCache.fromProperties("cache.properties");
+        this.queryCache = FunkosQueryCache.fromProperties("cache.properties");
         this.notification = notification;
         this.storage = storage;
     }
@@ -41,7 +67,33 @@ public class FunkosServiceImpl implements FunkosService {
     @Override
     public Flux<Funko> findAll() {
         logger.debug("Buscando todos los funkos");
-        return funkosRepository.findAll();
+        return cachedQuery(FunkosQuery.all(), funkosRepository::findAll);
+    }
+
+    /**
+     * Recupera una pagina de Funkos a partir de un cursor, sin leer las paginas anteriores.
+     *
+     * @param afterId Identificador del ultimo Funko de la pagina anterior (0 para la primera pagina).
+     * @param limit   Numero maximo de Funkos de la pagina.
+     * @return Flux que emite los Funkos de la pagina.
+     */
+    @Override
+    public Flux<Funko> findPage(long afterId, int limit) {
+        logger.debug("Buscando pagina de funkos después del id " + afterId);
+        return funkosRepository.findPage(afterId, limit);
+    }
+
+    /**
+     * Recupera una pagina de Funkos saltando los primeros.
+     *
+     * @param limit  Numero maximo de Funkos de la pagina.
+     * @param offset Numero de Funkos que se saltan.
+     * @return Flux que emite los Funkos de la pagina.
+     */
+    @Override
+    public Flux<Funko> findAll(int limit, long offset) {
+        logger.debug("Buscando pagina de funkos con desplazamiento " + offset);
+        return funkosRepository.findAll(limit, offset);
     }
 
     /**
@@ -53,11 +105,113 @@ public class FunkosServiceImpl implements FunkosService {
     @Override
     public Flux<Funko> findAllByNombre(String nombre) {
         logger.debug("Buscando todos los funkos por nombre");
-        return funkosRepository.findByNombre(nombre);
+        return cachedQuery(FunkosQuery.byNombre(nombre), () -> funkosRepository.findByNombre(nombre));
+    }
+
+    /**
+     * Recupera un Flux de Funkos de un modelo, filtrados en la base de datos.
+     *
+     * @param model Modelo de Funko para realizar la busqueda.
+     * @return Flux que emite los Funkos del modelo.
+     */
+    @Override
+    public Flux<Funko> findAllByModel(Model model) {
+        logger.debug("Buscando todos los funkos por modelo: " + model);
+        return cachedQuery(FunkosQuery.byModel(model), () -> funkosRepository.findByModel(model));
+    }
+
+    /**
+     * Recupera un Flux de Funkos lanzados entre dos fechas, filtrados en la base de datos.
+     *
+     * @param from Primera fecha del rango, incluida.
+     * @param to   Ultima fecha del rango, incluida.
+     * @return Flux que emite los Funkos lanzados en el rango.
+     */
+    @Override
+    public Flux<Funko> findAllByReleaseDate(LocalDate from, LocalDate to) {
+        logger.debug("Buscando todos los funkos con fecha de lanzamiento entre " + from + " y " + to);
+        return cachedQuery(FunkosQuery.byReleaseDate(from, to), () -> funkosRepository.findByReleaseDateBetween(from, to));
+    }
+
+    /**
+     * Recupera un Flux de Funkos lanzados en un año, como un rango de fechas del 1 de enero al 31 de diciembre.
+     *
+     * @param year Año de lanzamiento.
+     * @return Flux que emite los Funkos lanzados ese año.
+     */
+    @Override
+    public Flux<Funko> findAllByReleaseYear(int year) {
+        return findAllByReleaseDate(LocalDate.of(year, 1, 1), LocalDate.of(year, 12, 31));
+    }
+
+    /**
+     * Devuelve el resultado guardado de una consulta, con su codificacion ya calculada, si es de la version actual
+     * del catalogo. No consulta la base de datos: el resultado se guarda al leer la consulta con su metodo find.
+     *
+     * @param query La consulta.
+     * @return Mono con el resultado guardado, o vacio si no lo hay.
+     */
+    @Override
+    public Mono<FunkosQuerySnapshot> findSnapshot(FunkosQuery query) {
+        return Mono.fromSupplier(() -> queryCache.peek(query));
+    }
+
+    /**
+     * Sirve una consulta desde la cache de consultas o, si no esta, desde la base de datos sin dejar de emitir
+     * segun llegan los Funkos; a la vez se guardan para dejar el resultado en la cache al terminar, salvo que pasen
+     * del maximo de la cache, en cuyo caso se dejan de guardar.
+     *
+     * @param query  La consulta, que es la clave del resultado.
+     * @param source Consulta a la base de datos.
+     * @return Flux con los Funkos del resultado.
+     */
+    private Flux<Funko> cachedQuery(FunkosQuery query, Supplier<Flux<Funko>> source) {
+        return Flux.defer(() -> {
+            FunkosQuerySnapshot snapshot = queryCache.get(query);
+            if (snapshot != null) {
+                logger.debug("Consulta servida desde la cache: " + query);
+                return Flux.fromIterable(snapshot.funkos());
+            }
+            long version = queryCache.version();
+            List<Funko> rows = new ArrayList<>();
+            AtomicBoolean overflow = new AtomicBoolean(false);
+            return source.get()
+                    .doOnNext(funko -> {
+                        if (overflow.get()) {
+                            return;
+                        }
+                        if (rows.size() < queryCache.maxRows()) {
+                            rows.add(funko);
+                        } else {
+                            overflow.set(true);
+                            rows.clear();
+                        }
+                    })
+                    .doOnComplete(() -> {
+                        if (!overflow.get()) {
+                            queryCache.put(query, new FunkosQuerySnapshot(version, rows));
+                        }
+                    });
+        });
+    }
+
+    /**
+     * Invalida los resultados guardados de las consultas cuando termina un cambio en el catalogo, antes de que
+     * llegue a quien lo pidio, tanto si ha ido bien como si no, porque un lote puede haberse aplicado en parte.
+     *
+     * @param mutation Cambio en la base de datos.
+     * @return El mismo cambio.
+     */
+    private <T> Mono<T> changingCatalog(Mono<T> mutation) {
+        return mutation
+                .doOnSuccess(result -> queryCache.invalidateAll())
+                .doOnError(error -> queryCache.invalidateAll());
     }
 
     /**
      * Busca y recupera un Funko por su identificador unico.
+     * Si no esta en la cache, todas las peticiones simultaneas del mismo id esperan a una sola consulta a la base de datos.
+     * Los ids que se han buscado hace poco y no existian se responden sin consultarla.
      *
      * @param id Identificador unico del Funko a buscar.
      * @return Mono que puede contener el Funko correspondiente al identificador o estar vacio si no se encuentra.
@@ -66,36 +220,141 @@ public class FunkosServiceImpl implements FunkosService {
     public Mono<Funko> findById(long id) {
         logger.debug("Buscando funko por id: " + id);
         return cache.get(id)
-                .switchIfEmpty(funkosRepository.findById(id)
-                        .flatMap(funko -> cache.put(funko.getId(), funko)
-                                .then(Mono.just(funko)))
-                        .switchIfEmpty(Mono.error(new FunkoNoEncotradoException("Funko con id " + id + " no encontrado"))));
+                .switchIfEmpty(findByIdUncached(id));
+    }
+
+    /**
+     * Busca un Funko por su identificador y devuelve la respuesta OK ya codificada para el protocolo de la conexion.
+     * Si el Funko esta en la cache su respuesta se codifica solo la primera vez, y las siguientes se reutiliza.
+     *
+     * @param id    Identificador unico del Funko a buscar.
+     * @param codec Protocolo de la conexion.
+     * @return Mono con la respuesta preparada o con el error si no se encuentra.
+     */
+    @Override
+    public Mono<PreparedResponse> findResponseById(long id, WireCodec codec) {
+        logger.debug("Buscando respuesta de funko por id: " + id);
+        return cache.getResponse(id, codec)
+                .switchIfEmpty(findByIdUncached(id)
+                        .map(funko -> FunkosCacheImpl.prepare(codec, funko)));
+    }
+
+    /**
+     * Busca un Funko que no esta en la cache: los ids que no existian hace poco se responden sin consultar la base
+     * de datos y el resto comparten la consulta que ya este en curso para el mismo id.
+     */
+    private Mono<Funko> findByIdUncached(long id) {
+        return Mono.defer(() -> negativeCache.isMissingId(id)
+                ? Mono.error(new FunkoNoEncotradoException("Funko con id " + id + " no encontrado"))
+                : loadsInFlight.computeIfAbsent(id, this::loadById));
+    }
+
+    /**
+     * Consulta un Funko en la base de datos y lo guarda en la cache, salvo que se haya cambiado mientras tanto.
+     * El resultado, o el error, se comparte con todos los suscriptores y la consulta se olvida al terminar,
+     * para que la siguiente peticion del id vuelva a mirar en la cache. Si no existe se apunta en la cache negativa.
+     *
+     * @param id Identificador unico del Funko a buscar.
+     * @return Mono compartido con el Funko o con el error si no se encuentra.
+     */
+    private Mono<Funko> loadById(long id) {
+        return Mono.defer(() -> {
+                    long stamp = negativeCache.stamp();
+                    LongSupplier writeStamp = () -> writeStamps.get(writeStripe(id));
+                    long written = writeStamp.getAsLong();
+                    return funkosRepository.findById(id)
+                            .flatMap(funko -> cacheLoaded(funko, writeStamp, written))
+                            .switchIfEmpty(Mono.defer(() -> {
+                                negativeCache.addMissingId(id, stamp);
+                                return Mono.error(new FunkoNoEncotradoException("Funko con id " + id + " no encontrado"));
+                            }));
+                })
+                .doFinally(signal -> loadsInFlight.remove(id))
+                .cache();
     }
 
     /**
      * Busca y recupera un Funko por su identificador unico (UUID).
+     * Primero se busca en la cache por su UUID, y los UUIDs que se han buscado hace poco y no existian se responden
+     * sin consultar la base de datos.
      *
      * @param uuid UUID del Funko a buscar.
      * @return Mono que puede contener el Funko correspondiente al UUID o estar vacio si no se encuentra.
      */
     public Mono<Funko> findByUuid(UUID uuid) {
         logger.debug("Buscando funko por uuid: " + uuid);
-        return funkosRepository.findByUuid(uuid)
-                .flatMap(funko -> cache.put(funko.getId(), funko)
-                        .then(Mono.just(funko)))
-                .switchIfEmpty(Mono.error(new FunkoNoEncotradoException("Funko con uuid " + uuid + " no encontrado")));
+        return cache.getByUuid(uuid).switchIfEmpty(Mono.defer(() -> {
+            if (negativeCache.isMissingUuid(uuid)) {
+                return Mono.error(new FunkoNoEncotradoException("Funko con uuid " + uuid + " no encontrado"));
+            }
+            long stamp = negativeCache.stamp();
+            long written = writes.get();
+            return funkosRepository.findByUuid(uuid)
+                    .flatMap(funko -> cacheLoaded(funko, writes::get, written))
+                    .switchIfEmpty(Mono.defer(() -> {
+                        negativeCache.addMissingUuid(uuid, stamp);
+                        return Mono.error(new FunkoNoEncotradoException("Funko con uuid " + uuid + " no encontrado"));
+                    }));
+        }));
     }
 
     /**
-     * Guarda un Funko en el sistema sin generar notificaciones.
+     * Deja en la cache un Funko leido de la base de datos si no se ha escrito desde que empezo la consulta.
+     * Si la escritura llega mientras se guarda se vuelve a quitar: quien escribe mueve el sello antes de tocar la
+     * cache, asi que o bien su cambio pisa al Funko leido o bien aqui se ve el sello movido.
+     *
+     * @param funko      Funko leido.
+     * @param writeStamp Sello de escritura que cubre al Funko.
+     * @param written    Valor del sello antes de la consulta.
+     * @return Mono con el Funko leido.
+     */
+    private Mono<Funko> cacheLoaded(Funko funko, LongSupplier writeStamp, long written) {
+        if (writeStamp.getAsLong() != written) {
+            return Mono.just(funko);
+        }
+        return cache.put(funko.getId(), funko)
+                .then(Mono.defer(() -> writeStamp.getAsLong() == written ? Mono.<Void>empty() : cache.remove(funko.getId())))
+                .thenReturn(funko);
+    }
+
+    /**
+     * Apunta que se ha escrito un Funko en la base de datos. Se llama despues de escribir y antes de tocar la cache.
+     */
+    private void written(long id) {
+        writeStamps.incrementAndGet(writeStripe(id));
+        writes.incrementAndGet();
+    }
+
+    /**
+     * Apunta que se han podido escribir todos los Funkos, como al borrarlos todos.
+     */
+    private void writtenAll() {
+        for (int i = 0; i < WRITE_STAMP_STRIPES; i++) {
+            writeStamps.incrementAndGet(i);
+        }
+        writes.incrementAndGet();
+    }
+
+    private static int writeStripe(long id) {
+        return Long.hashCode(id) & (WRITE_STAMP_STRIPES - 1);
+    }
+
+    /**
+     * Guarda un Funko en el sistema sin generar notificaciones y lo deja en la cache, para que las busquedas
+     * por id o por UUID que suelen seguir a un alta no vayan a la base de datos.
      *
      * @param funko Funko a ser guardado.
      * @return Mono que contiene el Funko guardado.
      */
     public Mono<Funko> saveWithoutNotification(Funko funko) {
         logger.debug("Guardando funko sin notificación: " + funko);
-        return funkosRepository.save(funko)
-                .flatMap(saved -> findByUuid(saved.getCod()));
+        return changingCatalog(funkosRepository.save(funko))
+                .doOnNext(saved -> {
+                    written(saved.getId());
+                    negativeCache.invalidate(saved.getId(), saved.getCod());
+                })
+                .flatMap(saved -> cache.put(saved.getId(), saved)
+                        .thenReturn(saved));
     }
 
     /**
@@ -117,11 +376,11 @@ public class FunkosServiceImpl implements FunkosService {
      */
     private Mono<Funko> updateWithoutNotification(Funko funko) {
         logger.debug("Actualizando funko sin notificación: " + funko);
-        return funkosRepository.findById(funko.getId())
+        return changingCatalog(funkosRepository.update(funko))
                 .switchIfEmpty(Mono.error(new FunkoNoEncotradoException("Funko con id " + funko.getId() + " no encontrado")))
-                .flatMap(existing -> funkosRepository.update(funko)
-                        .flatMap(updated -> cache.put(updated.getId(), updated)
-                                .thenReturn(updated)));
+                .doOnNext(updated -> written(updated.getId()))
+                .flatMap(updated -> cache.put(updated.getId(), updated)
+                        .thenReturn(updated));
     }
 
     /**
@@ -142,10 +401,10 @@ public class FunkosServiceImpl implements FunkosService {
      */
     private Mono<Funko> deleteByIdWithoutNotification(long id) {
         logger.debug("Borrando funko sin notificación con id: " + id);
-        return funkosRepository.findById(id)
+        return changingCatalog(funkosRepository.deleteAndGetById(id))
                 .switchIfEmpty(Mono.error(new FunkoNoEncotradoException("Funko con id " + id + " no encontrado")))
+                .doOnNext(funko -> written(funko.getId()))
                 .flatMap(funko -> cache.remove(funko.getId())
-                        .then(funkosRepository.deleteById(funko.getId()))
                         .thenReturn(funko));
     }
 
@@ -161,6 +420,127 @@ public class FunkosServiceImpl implements FunkosService {
         return deleteByIdWithoutNotification(id)
                 .doOnSuccess(deleted -> notification.notify(new Notificacion<>(Notificacion.Tipo.DELETED, deleted)));
     }
+    /**
+     * Guarda varios Funkos en una sola transaccion y genera una notificacion por cada uno.
+     * Los Funkos sin los datos obligatorios no se guardan y se devuelven como INVALID.
+     *
+     * @param funkos Funkos a ser guardados.
+     * @return Flux con el resultado de cada Funko, en el mismo orden.
+     */
+    @Override
+    public Flux<BatchResult> saveAll(List<Funko> funkos) {
+        logger.debug("Guardando en lote " + funkos.size() + " funkos");
+        List<Integer> positions = new ArrayList<>();
+        List<Funko> valid = new ArrayList<>();
+        for (int i = 0; i < funkos.size(); i++) {
+            if (isValid(funkos.get(i))) {
+                positions.add(i);
+                valid.add(funkos.get(i));
+            }
+        }
+        return changingCatalog(funkosRepository.saveAll(valid)
+                .collectList())
+                .flatMapMany(saved -> {
+                    BatchResult[] results = invalidResults(funkos);
+                    for (int i = 0; i < saved.size(); i++) {
+                        written(saved.get(i).getId());
+                        negativeCache.invalidate(saved.get(i).getId(), saved.get(i).getCod());
+                        results[positions.get(i)] = new BatchResult(positions.get(i), saved.get(i).getId(), BatchResult.Status.OK, null);
+                        notification.notify(new Notificacion<>(Notificacion.Tipo.NEW, saved.get(i)));
+                    }
+                    return Flux.fromArray(results);
+                });
+    }
+
+    /**
+     * Actualiza varios Funkos en una sola transaccion, los guarda en la cache y genera una notificacion por cada uno.
+     *
+     * @param funkos Funkos con los cambios a ser aplicados.
+     * @return Flux con el resultado de cada Funko, en el mismo orden.
+     */
+    @Override
+    public Flux<BatchResult> updateAll(List<Funko> funkos) {
+        logger.debug("Actualizando en lote " + funkos.size() + " funkos");
+        List<Integer> positions = new ArrayList<>();
+        List<Funko> valid = new ArrayList<>();
+        for (int i = 0; i < funkos.size(); i++) {
+            if (isValid(funkos.get(i))) {
+                positions.add(i);
+                valid.add(funkos.get(i));
+            }
+        }
+        return changingCatalog(funkosRepository.updateAll(valid)
+                .collectList())
+                .flatMapMany(updated -> {
+                    BatchResult[] results = invalidResults(funkos);
+                    List<Funko> changed = new ArrayList<>();
+                    for (int i = 0; i < updated.size(); i++) {
+                        var funko = valid.get(i);
+                        if (updated.get(i)) {
+                            results[positions.get(i)] = new BatchResult(positions.get(i), funko.getId(), BatchResult.Status.OK, null);
+                            changed.add(funko);
+                        } else {
+                            results[positions.get(i)] = new BatchResult(positions.get(i), funko.getId(), BatchResult.Status.NOT_FOUND, "Funko con id " + funko.getId() + " no encontrado");
+                        }
+                    }
+                    // Solo se actualizan algunas columnas, asi que el Funko recibido no es la fila guardada:
+                    // se quita de la cache y la siguiente busqueda lo lee de la base de datos
+                    return Flux.fromIterable(changed)
+                            .concatMap(funko -> Mono.defer(() -> {
+                                        written(funko.getId());
+                                        return cache.remove(funko.getId());
+                                    })
+                                    .doOnSuccess(v -> notification.notify(new Notificacion<>(Notificacion.Tipo.UPDATED, funko))))
+                            .thenMany(Flux.fromArray(results));
+                });
+    }
+
+    /**
+     * Elimina varios Funkos en una sola transaccion, los quita de la cache y genera una notificacion por cada uno.
+     *
+     * @param ids Identificadores de los Funkos a ser eliminados.
+     * @return Flux con el resultado de cada identificador, en el mismo orden.
+     */
+    @Override
+    public Flux<BatchResult> deleteAllById(List<Long> ids) {
+        logger.debug("Borrando en lote " + ids.size() + " funkos");
+        return changingCatalog(funkosRepository.deleteAllById(ids)
+                .collectMap(Funko::getId))
+                .flatMapMany(deleted -> {
+                    List<BatchResult> results = new ArrayList<>(ids.size());
+                    for (int i = 0; i < ids.size(); i++) {
+                        long id = ids.get(i);
+                        results.add(deleted.containsKey(id)
+                                ? new BatchResult(i, id, BatchResult.Status.OK, null)
+                                : new BatchResult(i, id, BatchResult.Status.NOT_FOUND, "Funko con id " + id + " no encontrado"));
+                    }
+                    return Flux.fromIterable(deleted.values())
+                            .concatMap(funko -> Mono.defer(() -> {
+                                        written(funko.getId());
+                                        return cache.remove(funko.getId());
+                                    })
+                                    .doOnSuccess(v -> notification.notify(new Notificacion<>(Notificacion.Tipo.DELETED, funko))))
+                            .thenMany(Flux.fromIterable(results));
+                });
+    }
+
+    private boolean isValid(Funko funko) {
+        return funko != null && funko.getCod() != null && funko.getName() != null
+                && funko.getModel() != null && funko.getReleaseData() != null;
+    }
+
+    /**
+     * Crea los resultados de un lote con todos los elementos como INVALID, para ir rellenando los procesados.
+     */
+    private BatchResult[] invalidResults(List<Funko> funkos) {
+        BatchResult[] results = new BatchResult[funkos.size()];
+        for (int i = 0; i < funkos.size(); i++) {
+            long id = funkos.get(i) != null ? funkos.get(i).getId() : 0;
+            results[i] = new BatchResult(i, id, BatchResult.Status.INVALID, "Faltan datos obligatorios del Funko");
+        }
+        return results;
+    }
+
     /**
      * Importa una lista de Funos desde un archivo CSV.
      * @return Flux que contiene los Funkos importados
@@ -170,6 +550,43 @@ public class FunkosServiceImpl implements FunkosService {
         return storage.importCsv();
     }
 
+    /**
+     * Carga en la base de datos los Funkos del archivo CSV por lotes, sin pasar por la cache ni notificar
+     * cada Funko: al terminar se envia una unica notificacion IMPORTED con el total.
+     * Las lineas sin los datos obligatorios se descartan. Al terminar se vacia la cache negativa, porque los ids
+     * y UUIDs importados no se conocen uno a uno.
+     * @return Mono con el numero de Funkos importados
+     */
+    public Mono<Long> importAll() {
+        logger.debug("Cargando funkos desde csv en lotes");
+        return changingCatalog(funkosRepository.importAll(storage.importCsv().filter(this::isValid)))
+                .doOnSuccess(total -> negativeCache.clear())
+                .doOnSuccess(total -> notification.notify(new Notificacion<>(Notificacion.Tipo.IMPORTED, total.longValue())));
+    }
+
+    /**
+     * Importa el archivo CSV de forma incremental, sin borrar lo ya importado. Si la huella del archivo hasta el
+     * ultimo punto de control no ha cambiado (por ejemplo, porque solo se han añadido lineas) se sigue desde esa
+     * posicion; si ha cambiado se vuelve a leer entero. Cada lote se inserta o actualiza por su codigo y confirma
+     * su punto de control, asi que los Funkos iguales a los guardados no se tocan y una importacion interrumpida
+     * continua donde se quedo. Las lineas que se han borrado del archivo no se borran de la base de datos.
+     * Al terminar se vacia la cache negativa y se envia una notificacion IMPORTED con el numero de Funkos insertados o modificados.
+     * @return Mono con el numero de Funkos insertados o modificados
+     */
+    public Mono<Long> importIncremental() {
+        String fileName = storage.csvFileName();
+        return funkosRepository.prepareIncrementalImport()
+                .then(funkosRepository.findCheckpoint(fileName)
+                        .defaultIfEmpty(new ImportCheckpoint(fileName, "", 0)))
+                .flatMapMany(checkpoint -> storage.importCsvBatches(checkpoint.byteOffset(), checkpoint.fingerprint()))
+                .concatMap(batch -> changingCatalog(funkosRepository.mergeAll(
+                        batch.funkos().stream().filter(this::isValid).toList(),
+                        new ImportCheckpoint(fileName, batch.fingerprint(), batch.endOffset()))))
+                .reduce(0L, Long::sum)
+                .doOnSuccess(total -> negativeCache.clear())
+                .doOnSuccess(total -> notification.notify(new Notificacion<>(Notificacion.Tipo.IMPORTED, total.longValue())));
+    }
+
     /**
      * Elimina todos los Funkos del sistema y borra la cache
      * @return Mono que indica la finalizacion de la eliminacion de todos los funkos
@@ -179,9 +596,34 @@ public class FunkosServiceImpl implements FunkosService {
     public Mono<Void> deleteAll() {
         logger.debug("Borrando todos los funkos");
         cache.clear();
-        return funkosRepository.deleteAll()
+        return changingCatalog(funkosRepository.deleteAll())
+                .doOnSuccess(v -> {
+                    // Las consultas que empezaron antes del borrado podrian haber vuelto a llenar la cache
+                    writtenAll();
+                    cache.clear();
+                })
                 .then(Mono.empty());
     }
+    /**
+     * Obtiene las estadisticas de la cache negativa: sus aciertos son las consultas a la base de datos que se han
+     * evitado para ids y UUIDs que no existen.
+     *
+     * @return Estadisticas acumuladas de la cache negativa
+     */
+    public CacheStats getNegativeCacheStats() {
+        return negativeCache.getStats();
+    }
+
+    /**
+     * Obtiene las estadisticas de la cache de consultas: aciertos, fallos (incluidos los resultados de versiones
+     * anteriores del catalogo) y consultas expulsadas.
+     *
+     * @return Estadisticas acumuladas de la cache de consultas
+     */
+    public CacheStats getQueryCacheStats() {
+        return queryCache.getStats();
+    }
+
     /**
      * Obtiene un Flujo (Flux) de notificaciones de Funkos.
      *
@@ -2,6 +2,7 @@ package develop.server.services.services.funkos;
 
 import develop.common.models.Funko;
 import develop.server.services.services.storage.Storage;
+import reactor.core.publisher.Flux;
 
 /**
  * Una interfaz que define las operaciones de almacenamiento especificas para Funko.
@@ -9,4 +10,21 @@ import develop.server.services.services.storage.Storage;
  *
  */
 public interface FunkosStorage extends Storage<Funko> {
+
+    /**
+     * Nombre del archivo CSV del que se importan los Funkos.
+     *
+     * @return El nombre del archivo, relativo al directorio de la aplicacion.
+     */
+    String csvFileName();
+
+    /**
+     * Importa los Funkos del archivo CSV por lotes, continuando desde una importacion anterior si lo que se
+     * importo entonces no ha cambiado.
+     *
+     * @param resumeOffset      Posicion hasta la que se importo el archivo (0 para leerlo entero).
+     * @param resumeFingerprint Huella del archivo hasta esa posicion.
+     * @return Un Flux que emite los lotes en el orden del archivo, con la posicion en la que termina cada uno y su huella.
+     */
+    Flux<FunkosCsvBatch> importCsvBatches(long resumeOffset, String resumeFingerprint);
 }
@@ -1,16 +1,12 @@
 package develop.server.services.services.funkos;
 
 import develop.common.models.Funko;
-import develop.common.models.Model;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.*;
+import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
-import java.util.UUID;
 import reactor.core.publisher.Flux;
 /**
  * Implementacion de la interfaz FunkosStorage que se encarga de importar Funkos desde un
@@ -38,53 +34,41 @@ public class FunkosStorageImpl implements FunkosStorage {
     }
     /**
      * Importa Funkos desde un archivo CSV y los emite como elementos de un Flux.
+     * El archivo se lee con {@link FunkosCsvParser}, que lo procesa por trozos en paralelo sin cargarlo entero.
      *
      * @return Un Flux que emite Funkos importados desde el archivo CSV.
      */
     @Override
     public Flux<Funko> importCsv() {
-        return Flux.create(sink -> {
-            String dataPath = "data" + File.separator + "funkos.csv";
-            String appPath = System.getProperty("user.dir");
-            Path filePath = Paths.get(appPath, dataPath);
-            logger.debug("Leyendo el archivo: " + filePath.toString());
-
-            try (BufferedReader reader = new BufferedReader(new FileReader(filePath.toString()))) {
-                reader.lines().skip(1).map(this::getFunko).forEach(sink::next);
-            } catch (FileNotFoundException e) {
-                logger.error("No se encontró el archivo: " + filePath.toString());
-                sink.error(e);
-            } catch (IOException e) {
-                logger.error("Error al leer el archivo: " + filePath.toString());
-                sink.error(e);
-            }
-            sink.complete();
-        });
+        Path filePath = csvPath();
+        logger.debug("Leyendo el archivo: " + filePath.toString());
+        return FunkosCsvParser.parse(filePath)
+                .doOnError(e -> logger.error("Error al leer el archivo: " + filePath + ": " + e.getMessage()));
     }
 
-    private UUID getUUID(String uuid) {
-            return uuid.length() > 36 ? UUID.fromString(uuid.substring(0, 36)) : UUID.fromString(uuid);
+    @Override
+    public String csvFileName() {
+        return "data" + File.separator + "funkos.csv";
     }
 
-    private LocalDate getDate(String date) {
-        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        return LocalDate.parse(date, formatter);
-
+    /**
+     * Importa los Funkos del archivo CSV por lotes (un lote por trozo del archivo). Si la huella hasta
+     * {@code resumeOffset} coincide, esa parte no se vuelve a leer; la huella solo cubre la cabecera y el final de
+     * lo importado, asi que un cambio en mitad de esa parte no se detecta.
+     *
+     * @param resumeOffset      Posicion hasta la que se importo el archivo (0 para leerlo entero).
+     * @param resumeFingerprint Huella del archivo hasta esa posicion.
+     * @return Un Flux que emite los lotes en el orden del archivo, con la posicion en la que termina cada uno y su huella.
+     */
+    @Override
+    public Flux<FunkosCsvBatch> importCsvBatches(long resumeOffset, String resumeFingerprint) {
+        Path filePath = csvPath();
+        logger.debug("Leyendo el archivo: " + filePath + " (importado hasta la posición " + resumeOffset + ")");
+        return FunkosCsvParser.parseBatches(filePath, resumeOffset, resumeFingerprint)
+                .doOnError(e -> logger.error("Error al leer el archivo: " + filePath + ": " + e.getMessage()));
     }
 
-    private Funko getFunko(String linea) {
-        String[] campos = linea.split(",");
-        UUID cod = getUUID(campos[0]);
-        String name = campos[1];
-        Model model = Model.valueOf(campos[2]);
-        double price = Double.parseDouble(campos[3]);
-        LocalDate releaseData = getDate(campos[4]);
-        return Funko.builder()
-                .cod(cod)
-                .name(name)
-                .model(model)
-                .price(price)
-                .releaseData(releaseData)
-                .build();
+    private Path csvPath() {
+        return Paths.get(System.getProperty("user.dir"), csvFileName());
     }
-}
\ No newline at end of file
+}
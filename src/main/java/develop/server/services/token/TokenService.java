@@ -3,30 +3,39 @@ package develop.server.services.token;
 import com.auth0.jwt.JWT;
 import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
+import com.auth0.jwt.interfaces.Claim;
 import com.auth0.jwt.interfaces.DecodedJWT;
 import develop.common.models.User;
+import develop.server.repositories.users.UsersRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 /**
  * Clase que proporciona servicios relacionados con la creacion y verificacion de tokens (JSON).
+ * Los algoritmos y verificadores se crean una sola vez por secreto, y los tokens ya verificados se guardan
+ * con sus claims y su usuario hasta que expiran, asi que verificar de nuevo un token es una busqueda en un mapa.
  */
 public class TokenService {
-    private static TokenService INSTANCE = null;
+    private static final TokenService INSTANCE = new TokenService();
+    private static final int MAX_VERIFIED_TOKENS = 10_000; // Tokens verificados que se guardan como maximo
     private final Logger logger = LoggerFactory.getLogger(TokenService.class);
+    private final Map<String, Algorithm> algorithms = new ConcurrentHashMap<>();
+    private final Map<String, JWTVerifier> verifiers = new ConcurrentHashMap<>();
+    private final Map<String, VerifiedToken> verifiedTokens = new ConcurrentHashMap<>();
 
     private TokenService() {
     }
     /**
      * Obtiene una instancia unica de la clase TokenService.
+     * Se crea al cargar la clase, asi no hace falta sincronizar en cada peticion.
      *
      * @return La instancia unica de TokenService.
      */
-    public synchronized static TokenService getInstance() {
-        if (INSTANCE == null) {
-            INSTANCE = new TokenService();
-        }
+    public static TokenService getInstance() {
         return INSTANCE;
     }
     /**
@@ -39,38 +48,28 @@ public class TokenService {
      */
     public String createToken(User user, String tokenSecret, long tokenExpiration) {
         logger.debug("Creando token");
-        Algorithm algorithm = Algorithm.HMAC256(tokenSecret);
         return JWT.create()
                 .withClaim("userid", user.id())
                 .withClaim("username", user.username())
                 .withClaim("rol", user.role().toString())
                 .withIssuedAt(new Date())
                 .withExpiresAt(new Date(System.currentTimeMillis() + tokenExpiration))
-                .sign(algorithm);
+                .sign(algorithm(tokenSecret));
     }
     /**
-     * Crea un token JWT con los datos del usuario, el secreto y el tiempo de expiracion especificados.
+     * Verifica un token JWT y comprueba que sus claims corresponden al usuario indicado.
      *
-     * @param user           El usuario para el que se crea el token.
-     * @param tokenSecret    El secreto para firmar el token.
-     * tokenExpiration El tiempo de expiración del token en milisegundos.
-     * @return El token JWT creado.
+     * @param token       El token JWT a verificar.
+     * @param tokenSecret El secreto para verificar la firma del token.
+     * @param user        El usuario que deberia contener el token.
+     * @return true si el token es valido y es del usuario, de lo contrario, false.
      */
     public boolean verifyToken(String token, String tokenSecret, User user) {
-        logger.debug("Verificando token");
-        Algorithm algorithm = Algorithm.HMAC256(tokenSecret);
-        try {
-            JWTVerifier verifier = JWT.require(algorithm)
-                    .build(); // Creamos el verificador
-            DecodedJWT decodedJWT = verifier.verify(token);
-            logger.debug("Token verificado");
-            return decodedJWT.getClaim("userid").asLong() == user.id() &&
-                    decodedJWT.getClaim("username").asString().equals(user.username()) &&
-                    decodedJWT.getClaim("rol").asString().equals(user.role().toString());
-        } catch (Exception e) {
-            logger.error("Error al verificar el token: " + e.getMessage());
-            return false;
-        }
+        var claims = getClaims(token, tokenSecret);
+        return claims != null &&
+                claims.get("userid").asLong() == user.id() &&
+                claims.get("username").asString().equals(user.username()) &&
+                claims.get("rol").asString().equals(user.role().toString());
     }
     /**
      * Verifica la validez de un token JWT con respecto al secreto proporcionado.
@@ -80,18 +79,7 @@ public class TokenService {
      * @return true si el token es valido con el secreto, de lo contrario, false.
      */
     public boolean verifyToken(String token, String tokenSecret) {
-        logger.debug("Verificando token");
-        Algorithm algorithm = Algorithm.HMAC256(tokenSecret);
-        try {
-            JWTVerifier verifier = JWT.require(algorithm)
-                    .build();
-            DecodedJWT decodedJWT = verifier.verify(token);
-            logger.debug("Token verificado");
-            return true;
-        } catch (Exception e) {
-            logger.error("Error al verificar el token: " + e.getMessage());
-            return false;
-        }
+        return verify(token, tokenSecret) != null;
     }
     /**
      * Obtiene los claims contenidos en un token JWT, verificando su validez con respecto al secreto proporcionado.
@@ -100,18 +88,96 @@ public class TokenService {
      * @param tokenSecret El secreto para verificar la firma del token.
      * @return Un mapa de reclamaciones del token o null si el token no es valido.
      */
-    public java.util.Map<String, com.auth0.jwt.interfaces.Claim> getClaims(String token, String tokenSecret) {
+    public Map<String, Claim> getClaims(String token, String tokenSecret) {
+        var verified = verify(token, tokenSecret);
+        return verified != null ? verified.claims() : null;
+    }
+    /**
+     * Obtiene el usuario de un token JWT valido. Si el token ya se ha verificado y no ha expirado
+     * no se vuelve a comprobar la firma ni a buscar el usuario.
+     *
+     * @param token       El token JWT.
+     * @param tokenSecret El secreto para verificar la firma del token.
+     * @return El usuario del token, o vacio si el token no es valido o el usuario no existe.
+     */
+    public Optional<User> resolveUser(String token, String tokenSecret) {
+        var verified = verify(token, tokenSecret);
+        return verified != null ? Optional.ofNullable(verified.user()) : Optional.empty();
+    }
+    /**
+     * Devuelve el instante de expiracion de un token JWT valido.
+     *
+     * @param token       El token JWT.
+     * @param tokenSecret El secreto para verificar la firma del token.
+     * @return Los milisegundos desde la epoca en los que expira el token, o 0 si no es valido.
+     */
+    public long getExpiresAt(String token, String tokenSecret) {
+        var verified = verify(token, tokenSecret);
+        return verified != null ? verified.expiresAt() : 0;
+    }
+
+    /**
+     * Verifica un token, primero en los ya verificados y si no con la firma.
+     *
+     * @return El token verificado, o null si no es valido.
+     */
+    private VerifiedToken verify(String token, String tokenSecret) {
+        if (token == null) {
+            return null;
+        }
+        var cached = verifiedTokens.get(token);
+        long now = System.currentTimeMillis();
+        if (cached != null && cached.secret().equals(tokenSecret)) {
+            if (now < cached.expiresAt()) {
+                return cached;
+            }
+            verifiedTokens.remove(token, cached);
+            logger.error("Error al verificar el token: el token ha expirado");
+            return null;
+        }
         logger.debug("Verificando token");
-        Algorithm algorithm = Algorithm.HMAC256(tokenSecret);
         try {
-            JWTVerifier verifier = JWT.require(algorithm)
-                    .build();
-            DecodedJWT decodedJWT = verifier.verify(token);
+            DecodedJWT decodedJWT = verifier(tokenSecret).verify(token);
             logger.debug("Token verificado");
-            return decodedJWT.getClaims();
+            var claims = decodedJWT.getClaims();
+            var userId = claims.get("userid");
+            User user = userId != null && userId.asInt() != null
+                    ? UsersRepository.getInstance().findByById(userId.asInt()).orElse(null)
+                    : null;
+            long expiresAt = decodedJWT.getExpiresAt() != null ? decodedJWT.getExpiresAt().getTime() : Long.MAX_VALUE;
+            var verified = new VerifiedToken(tokenSecret, claims, user, expiresAt);
+            remember(token, verified, now);
+            return verified;
         } catch (Exception e) {
             logger.error("Error al verificar el token: " + e.getMessage());
             return null;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Guarda un token verificado. Si se llega al maximo se quitan los expirados y, si aun no hay sitio, todos.
+     */
+    private void remember(String token, VerifiedToken verified, long now) {
+        if (verifiedTokens.size() >= MAX_VERIFIED_TOKENS) {
+            verifiedTokens.values().removeIf(entry -> entry.expiresAt() <= now);
+            if (verifiedTokens.size() >= MAX_VERIFIED_TOKENS) {
+                verifiedTokens.clear();
+            }
+        }
+        verifiedTokens.put(token, verified);
+    }
+
+    private Algorithm algorithm(String tokenSecret) {
+        return algorithms.computeIfAbsent(tokenSecret, Algorithm::HMAC256);
+    }
+
+    private JWTVerifier verifier(String tokenSecret) {
+        return verifiers.computeIfAbsent(tokenSecret, secret -> JWT.require(algorithm(secret)).build());
+    }
+
+    /**
+     * Token ya verificado con el secreto usado, sus claims, su usuario (null si no existe) y su expiracion.
+     */
+    private record VerifiedToken(String secret, Map<String, Claim> claims, User user, long expiresAt) {
+    }
+}
@@ -9,3 +9,13 @@ CREATE TABLE IF NOT EXISTS funkos (
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
     );
+
+CREATE INDEX IF NOT EXISTS idx_funkos_modelo ON funkos (modelo);
+CREATE INDEX IF NOT EXISTS idx_funkos_fecha_lanzamiento ON funkos (fecha_lanzamiento);
+
+CREATE TABLE IF NOT EXISTS import_checkpoints (
+    file_name VARCHAR(255) PRIMARY KEY,
+    fingerprint VARCHAR(64) NOT NULL,
+    byte_offset BIGINT NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+    );
@@ -0,0 +1,160 @@
+package develop.protocol;
+
+import develop.common.models.Funko;
+import develop.common.models.Model;
+import develop.common.models.Request;
+import develop.common.models.Response;
+import develop.common.protocol.BinaryCodec;
+import develop.common.protocol.FrameReader;
+import develop.common.protocol.JsonCodec;
+import develop.common.protocol.WireCodec;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WireCodecTest {
+    private final WireCodec binary = BinaryCodec.getInstance();
+    private final WireCodec json = JsonCodec.getInstance();
+
+    private Funko funko(long id, String name) {
+        return Funko.builder()
+                .id(id)
+                .cod(UUID.randomUUID())
+                .myId(id + 100)
+                .name(name)
+                .model(Model.MARVEL)
+                .price(19.95)
+                .releaseData(LocalDate.of(2023, 5, 4))
+                .createdAt(LocalDateTime.of(2023, 5, 4, 10, 30, 15, 123456789))
+                .updatedAt(LocalDateTime.of(2023, 6, 1, 8, 0))
+                .build();
+    }
+
+    @Test
+    void binaryFunkoRoundTrip() {
+        var funko = funko(7, "Spider-Man \"Ñandú\" 🕷");
+
+        var decoded = binary.decodeFunko(binary.encodeFunko(funko));
+
+        assertEquals(funko, decoded);
+    }
+
+    @Test
+    void binaryFunkoListRoundTrip() {
+        var funkos = List.of(funko(1, "Uno"), funko(2, "Dos"), funko(-3, "Tres"));
+
+        var decoded = binary.decodeFunkos(binary.encodeFunkos(funkos));
+
+        assertEquals(funkos, decoded);
+    }
+
+    @Test
+    void binaryFramesRoundTripWithBinaryContent() {
+        var request = new Request(Request.Type.POST, binary.encodeFunko(funko(91, "Pepe")), "token", null, 42L);
+        var response = new Response(Response.Status.OK, binary.encodeFunkos(List.of(funko(1, "Uno"))), null, 42L);
+
+        assertAll(
+                () -> assertEquals(request, binary.decodeRequest(binary.encodeRequest(request))),
+                () -> assertEquals(response, binary.decodeResponse(binary.encodeResponse(response)))
+        );
+    }
+
+    @Test
+    void nextCursorRoundTripsInBothCodecs() {
+        var binaryResponse = new Response(Response.Status.OK, binary.encodeFunkos(List.of(funko(40, "Cuarenta"))), null, 7L, 40L);
+        var jsonResponse = new Response(Response.Status.OK, json.encodeFunkos(List.of(funko(40, "Cuarenta"))), null, 7L, 40L);
+
+        assertAll(
+                () -> assertEquals(40L, binary.decodeResponse(binary.encodeResponse(binaryResponse)).nextCursor()),
+                () -> assertEquals(40L, json.decodeResponse(json.encodeResponse(jsonResponse)).nextCursor()),
+                () -> assertNull(binary.decodeResponse(binary.encodeResponse(new Response(Response.Status.OK, null, null, 7L))).nextCursor())
+        );
+    }
+
+    @Test
+    void preparedResponsesMatchEncodedResponses() {
+        var funko = funko(5, "Spider-Man \"Ñandú\" 🕷");
+        var binaryPrepared = binary.prepareResponse(Response.Status.OK, binary.encodeFunko(funko));
+        var jsonPrepared = json.prepareResponse(Response.Status.OK, json.encodeFunko(funko));
+
+        var binaryDecoded = binary.decodeResponse(binaryPrepared.toFrame(300L));
+        var jsonFrame = jsonPrepared.toFrame(300L);
+        var jsonDecoded = json.decodeResponse(jsonFrame);
+
+        assertAll(
+                () -> assertArrayEquals(binary.encodeResponse(new Response(Response.Status.OK, binary.encodeFunko(funko), null, 300L)), binaryPrepared.toFrame(300L)),
+                () -> assertEquals(funko, binary.decodeFunko(binaryDecoded.content())),
+                () -> assertNull(binary.decodeResponse(binaryPrepared.toFrame(null)).requestId()),
+                () -> assertEquals(funko, json.decodeFunko(jsonDecoded.content())),
+                () -> assertEquals(300L, jsonDecoded.requestId()),
+                () -> assertNotNull(jsonDecoded.createdAt()),  // La marca de tiempo se pone al construir cada trama
+                () -> assertEquals('\n', jsonFrame[jsonFrame.length - 1])
+        );
+    }
+
+    @Test
+    void binaryIsSmallerThanJson() {
+        var funkos = List.of(funko(1, "Uno"), funko(2, "Dos"), funko(3, "Tres"));
+        var binaryFrame = binary.encodeResponse(new Response(Response.Status.OK, binary.encodeFunkos(funkos), null, 1L));
+        var jsonFrame = json.encodeResponse(new Response(Response.Status.OK, json.encodeFunkos(funkos), LocalDateTime.now().toString(), 1L));
+
+        assertTrue(binaryFrame.length * 2 < jsonFrame.length);
+    }
+
+    @Test
+    void frameLengthWaitsForCompleteFrame() throws IOException {
+        var frame = binary.encodeRequest(new Request(Request.Type.GETBYID, "1", "token", null, 1L));
+
+        assertAll(
+                () -> assertEquals(-1, binary.frameLength(ByteBuffer.wrap(frame, 0, frame.length - 1))),
+                () -> assertEquals(frame.length, binary.frameLength(ByteBuffer.wrap(frame))),
+                () -> assertEquals(-1, json.frameLength(ByteBuffer.wrap("{\"type\":\"GETALL\"".getBytes()))),
+                () -> assertEquals(3, json.frameLength(ByteBuffer.wrap("{}\n{".getBytes())))
+        );
+    }
+
+    @Test
+    void jsonFrameWithoutNewlineIsLimited() {
+        ByteBuffer unfinished = ByteBuffer.allocate(16 * 1024 * 1024);
+        Arrays.fill(unfinished.array(), (byte) 'a');
+
+        assertAll(
+                () -> assertEquals(-1, json.frameLength(unfinished.duplicate().limit(unfinished.capacity() - 1))),
+                () -> assertThrows(IOException.class, () -> json.frameLength(unfinished))
+        );
+    }
+
+    @Test
+    void frameReaderReadsConsecutiveFrames() throws IOException {
+        var stream = new ByteArrayOutputStream();
+        for (long i = 1; i <= 3; i++) {
+            stream.write(binary.encodeRequest(new Request(Request.Type.GETBYID, String.valueOf(i), "token", null, i)));
+        }
+        var reader = new FrameReader(new ByteArrayInputStream(stream.toByteArray()), binary);
+
+        assertAll(
+                () -> assertEquals(1L, binary.decodeRequest(reader.readFrame()).requestId()),
+                () -> assertEquals(2L, binary.decodeRequest(reader.readFrame()).requestId()),
+                () -> assertEquals(3L, binary.decodeRequest(reader.readFrame()).requestId()),
+                () -> assertNull(reader.readFrame())
+        );
+    }
+
+    @Test
+    void negotiatesByFirstByte() {
+        assertAll(
+                () -> assertSame(binary, WireCodec.forFirstByte(WireCodec.BINARY_MAGIC)),
+                () -> assertSame(json, WireCodec.forFirstByte((byte) '{'))
+        );
+    }
+}
@@ -0,0 +1,198 @@
+package develop.repositories.funkos;
+
+import develop.common.models.Funko;
+import develop.common.models.IdGenerator;
+import develop.common.models.Model;
+import develop.server.repositories.funkos.FunkosOffHeapRepository;
+import develop.server.repositories.funkos.FunkosRepository;
+import develop.server.repositories.funkos.ImportCheckpoint;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FunkosOffHeapRepositoryTest {
+    private FunkosRepository funkosRepository;
+
+    @BeforeEach
+    void setup() {
+        funkosRepository = FunkosOffHeapRepository.getInstance(IdGenerator.getInstance());
+        funkosRepository.deleteAll().block();
+        IdGenerator.getInstance().resetId();
+    }
+
+    private static Funko funko(String name, Model model, LocalDate releaseData) {
+        return Funko.builder().cod(UUID.randomUUID()).name(name).model(model).price(9.99).releaseData(releaseData).build();
+    }
+
+    @Test
+    void saveAndFindFunko() {
+        // Arrange
+        Funko funko = funko("Test", Model.OTROS, LocalDate.of(2020, 1, 1));
+
+        // Act
+        Funko saved = funkosRepository.save(funko).block();
+        Funko byId = funkosRepository.findById(saved.getId()).block();
+        Funko byUuid = funkosRepository.findByUuid(funko.getCod()).block();
+
+        // Asserts
+        assertAll(() -> assertEquals(1L, saved.getMyId()),
+                () -> assertEquals(funko, byId), // Se guardan todos los campos, fechas incluidas
+                () -> assertEquals(funko, byUuid),
+                () -> assertNotSame(funko, byId),
+                () -> assertNull(funkosRepository.findById(saved.getId() + 1).block()),
+                () -> assertNull(funkosRepository.findByUuid(UUID.randomUUID()).block())
+        );
+    }
+
+    @Test
+    void findFunkosFiltrandoSinCrearlos() {
+        // Arrange
+        funkosRepository.saveAll(List.of(
+                funko("Spiderman", Model.MARVEL, LocalDate.of(2022, 5, 1)),
+                funko("Stitch", Model.DISNEY, LocalDate.of(2021, 1, 1)),
+                funko("Iron Man", Model.MARVEL, LocalDate.of(2021, 1, 1)),
+                funko("Ñoño Man", Model.ANIME, LocalDate.of(2019, 1, 1))
+        )).blockLast();
+
+        // Act
+        List<String> byNombre = funkosRepository.findByNombre("Man").map(Funko::getName).collectList().block();
+        List<String> byModel = funkosRepository.findByModel(Model.MARVEL).map(Funko::getName).collectList().block();
+        List<String> byDate = funkosRepository.findByReleaseDateBetween(LocalDate.of(2020, 1, 1), LocalDate.of(2022, 5, 1))
+                .map(Funko::getName).collectList().block();
+
+        // Asserts
+        assertAll(() -> assertEquals(List.of("Iron Man", "Ñoño Man"), byNombre),
+                () -> assertEquals(List.of("Ñoño Man"), funkosRepository.findByNombre("Ñoño").map(Funko::getName).collectList().block()),
+                () -> assertEquals(List.of("Spiderman", "Iron Man"), byModel),
+                () -> assertEquals(List.of("Stitch", "Iron Man", "Spiderman"), byDate)
+        );
+    }
+
+    @Test
+    void findPagesDespuesDeBorrar() {
+        // Arrange
+        List<Funko> saved = funkosRepository.saveAll(IntStream.range(0, 5_000)
+                .mapToObj(i -> funko("Funko " + i, Model.OTROS, LocalDate.of(2020, 1, 1)))
+                .toList()).collectList().block();
+        funkosRepository.deleteAllById(saved.stream().filter(funko -> funko.getId() % 2 == 0).map(Funko::getId).toList()).blockLast();
+
+        // Act
+        List<Funko> all = funkosRepository.findAll().collectList().block();
+        List<Funko> page = funkosRepository.findPage(all.get(1_999).getId(), 3).collectList().block();
+        List<Funko> offset = funkosRepository.findAll(3, 2_000).collectList().block();
+
+        // Asserts
+        assertAll(() -> assertEquals(2_500, all.size()),
+                () -> assertTrue(all.stream().allMatch(funko -> funko.getId() % 2 == 1)),
+                () -> assertEquals(all.subList(2_000, 2_003), page),
+                () -> assertEquals(all.subList(2_000, 2_003), offset)
+        );
+    }
+
+    @Test
+    void updateAndDeleteFunko() {
+        // Arrange
+        Funko saved = funkosRepository.save(funko("Antes", Model.OTROS, LocalDate.of(2020, 1, 1))).block();
+        Funko changes = Funko.builder().id(saved.getId()).name("Después").model(Model.ANIME).price(19.99).releaseData(LocalDate.of(2024, 1, 1)).build();
+
+        // Act
+        Funko updated = funkosRepository.update(changes).block();
+        Funko deleted = funkosRepository.deleteAndGetById(saved.getId()).block();
+
+        // Asserts
+        assertAll(() -> assertEquals("Después", updated.getName()),
+                () -> assertEquals(Model.ANIME, updated.getModel()),
+                () -> assertEquals(19.99, updated.getPrice()),
+                () -> assertEquals(saved.getCod(), updated.getCod()), // El codigo y la fecha de lanzamiento no se actualizan
+                () -> assertEquals(saved.getReleaseData(), updated.getReleaseData()),
+                () -> assertEquals(updated, deleted),
+                () -> assertNull(funkosRepository.update(changes).block()),
+                () -> assertFalse(funkosRepository.deleteById(saved.getId()).block()),
+                () -> assertEquals(List.of(false), funkosRepository.updateAll(List.of(changes)).collectList().block())
+        );
+    }
+
+    @Test
+    void compactaTrasBorrarLaMayoria() {
+        // Arrange
+        List<Funko> funkos = new ArrayList<>();
+        for (int i = 0; i < 40_000; i++) {
+            funkos.add(funko("Funko " + (i % 100), Model.values()[i % 4], LocalDate.of(2020, 1, 1)));
+        }
+        List<Long> ids = funkosRepository.saveAll(funkos).map(Funko::getId).collectList().block();
+        Funko last = funkos.get(funkos.size() - 1);
+
+        // Act
+        funkosRepository.deleteAllById(ids.subList(0, 39_990)).blockLast();
+        Funko saved = funkosRepository.save(funko("Nuevo", Model.OTROS, LocalDate.of(2020, 1, 1))).block();
+
+        // Asserts
+        assertAll(() -> assertEquals(11, funkosRepository.findAll().count().block()),
+                () -> assertEquals(last, funkosRepository.findByUuid(last.getCod()).block()),
+                () -> assertEquals(last, funkosRepository.findById(last.getId()).block()),
+                () -> assertEquals(ids.get(ids.size() - 1) + 1, saved.getId()), // Los ID no se reutilizan
+                () -> assertEquals(2, funkosRepository.findByModel(Model.MARVEL).count().block())
+        );
+    }
+
+    @Test
+    void codigoRepetidoPasaAlSiguiente() {
+        // Arrange
+        UUID cod = UUID.randomUUID();
+        List<Funko> saved = funkosRepository.saveAll(List.of(
+                Funko.builder().cod(cod).name("Original").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build(),
+                Funko.builder().cod(cod).name("Repetido").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build(),
+                Funko.builder().cod(cod).name("Otro repetido").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build()
+        )).collectList().block();
+
+        // Act
+        String first = funkosRepository.findByUuid(cod).map(Funko::getName).block();
+        funkosRepository.deleteById(saved.get(1).getId()).block(); // Un repetido que no es el que se encuentra
+        String afterRepeated = funkosRepository.findByUuid(cod).map(Funko::getName).block();
+        funkosRepository.deleteById(saved.get(0).getId()).block();
+        String second = funkosRepository.findByUuid(cod).map(Funko::getName).block();
+        funkosRepository.deleteById(saved.get(2).getId()).block();
+
+        // Asserts
+        assertAll(() -> assertEquals("Original", first),
+                () -> assertEquals("Original", afterRepeated),
+                () -> assertEquals("Otro repetido", second),
+                () -> assertNull(funkosRepository.findByUuid(cod).block())
+        );
+    }
+
+    @Test
+    void importIncremental() {
+        // Arrange
+        UUID cod = UUID.randomUUID();
+        funkosRepository.importAll(Flux.just(
+                Funko.builder().cod(cod).name("Original").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build(),
+                Funko.builder().cod(cod).name("Repetido").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build()
+        )).block();
+        IdGenerator.getInstance().resetId();
+        funkosRepository.prepareIncrementalImport().block();
+        UUID nuevo = UUID.randomUUID();
+
+        // Act
+        Long merged = funkosRepository.mergeAll(List.of(
+                Funko.builder().cod(cod).name("Original").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build(),
+                Funko.builder().cod(nuevo).name("Nuevo").model(Model.ANIME).price(29.99).releaseData(LocalDate.of(2021, 1, 1)).build()
+        ), new ImportCheckpoint("funkos.csv", "huella", 100)).block();
+        List<Funko> found = funkosRepository.findAll().collectList().block();
+
+        // Asserts
+        assertAll(() -> assertEquals(1L, merged), // Solo el nuevo
+                () -> assertEquals(List.of("Original", "Nuevo"), found.stream().map(Funko::getName).toList()),
+                () -> assertEquals(2L, found.get(1).getMyId()), // Sigue despues del MyId mas alto guardado
+                () -> assertEquals(new ImportCheckpoint("funkos.csv", "huella", 100), funkosRepository.findCheckpoint("funkos.csv").block())
+        );
+    }
+}
@@ -5,9 +5,12 @@ import develop.common.models.IdGenerator;
 import develop.common.models.Model;
 import develop.server.repositories.funkos.FunkosRepository;
 import develop.server.repositories.funkos.FunkosRepositoryImpl;
+import develop.server.repositories.funkos.ImportCheckpoint;
 import develop.server.services.services.database.DatabaseManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
@@ -25,6 +28,15 @@ import static org.junit.jupiter.api.Assertions.*;
         IdGenerator.getInstance().resetId();
     }
 
+    private static Long codIndexes() {
+        return DatabaseManager.getInstance().getConnectionPool().create()
+                .flatMap(connection -> Mono.from(connection.createStatement(
+                                "SELECT COUNT(*) AS total FROM INFORMATION_SCHEMA.INDEXES WHERE INDEX_NAME IN ('IDX_FUNKOS_COD', 'UQ_FUNKOS_COD')").execute())
+                        .flatMap(result -> Mono.from(result.map((row, rowMetadata) -> row.get("total", Long.class))))
+                        .doFinally(signal -> Mono.from(connection.close()).subscribe()))
+                .block();
+    }
+
     @Test
     void saveFunko(){
         Funko funko = Funko.builder()
@@ -51,6 +63,36 @@ import static org.junit.jupiter.api.Assertions.*;
         );
     }
 
+    @Test
+    void saveFunkoTakesMyIdOnSubscribe(){
+        Funko unsaved = Funko.builder().cod(UUID.randomUUID()).name("Sin guardar").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+        Funko funko = Funko.builder().cod(UUID.randomUUID()).name("Guardado").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+
+        funkosRepository.save(unsaved); // Nadie se suscribe, asi que no se inserta ni gasta un MyId
+        Funko saved = funkosRepository.save(funko).block();
+
+        assertAll(() -> assertEquals(1L, saved.getMyId()),
+                () -> assertEquals(1L, funkosRepository.findAll().count().block())
+        );
+    }
+
+    @Test
+    void saveFunkoReturnsGeneratedIds(){
+        Funko first = Funko.builder().cod(UUID.randomUUID()).name("Uno").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+        Funko second = Funko.builder().cod(UUID.randomUUID()).name("Dos").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+
+        Funko savedFirst = funkosRepository.save(first).block();
+        Funko savedSecond = funkosRepository.save(second).block();
+        Funko found = funkosRepository.findById(savedSecond.getId()).block();
+
+        assertAll(() -> assertEquals(1L, savedFirst.getId()),
+                () -> assertEquals(2L, savedSecond.getId()),
+                () -> assertNotNull(found),
+                () -> assertEquals(savedSecond.getCod(), found.getCod()),
+                () -> assertEquals(savedSecond.getMyId(), found.getMyId())
+        );
+    }
+
     @Test
     void findFunkoById() {
         Funko funko = Funko.builder()
@@ -229,6 +271,45 @@ import static org.junit.jupiter.api.Assertions.*;
         assertFalse(foundFunko.isPresent());
     }
 
+    @Test
+    void updateFunkoNoExiste(){
+        Funko funko = Funko.builder().id(99L).cod(UUID.randomUUID()).name("No existe").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+
+        // Act
+        Optional<Funko> updated = funkosRepository.update(funko).blockOptional();
+
+        // Asserts
+        assertFalse(updated.isPresent());
+    }
+
+    @Test
+    void deleteFunkoNoExiste(){
+        // Act
+        Boolean deleted = funkosRepository.deleteById(99L).block();
+
+        // Asserts
+        assertFalse(deleted);
+    }
+
+    @Test
+    void deleteAndGetFunkoById(){
+        // Arrange
+        Funko savedFunko = funkosRepository.save(Funko.builder().cod(UUID.randomUUID()).name("Test").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build()).block();
+
+        // Act
+        Optional<Funko> deleted = funkosRepository.deleteAndGetById(savedFunko.getId()).blockOptional();
+        Optional<Funko> deletedAgain = funkosRepository.deleteAndGetById(savedFunko.getId()).blockOptional();
+        Optional<Funko> foundFunko = funkosRepository.findById(savedFunko.getId()).blockOptional();
+
+        // Asserts
+        assertAll(() -> assertTrue(deleted.isPresent()),
+                () -> assertEquals(savedFunko.getCod(), deleted.get().getCod()),
+                () -> assertEquals("Test", deleted.get().getName()),
+                () -> assertFalse(deletedAgain.isPresent()),
+                () -> assertFalse(foundFunko.isPresent())
+        );
+    }
+
     @Test
     void deleteAllFunkos(){
         // Arrange
@@ -257,4 +338,214 @@ import static org.junit.jupiter.api.Assertions.*;
         // Asserts
         assertEquals(0, foundAlumnos.size());
     }
+
+    @Test
+    void saveAllFunkos(){
+        // Arrange
+        var funkos = List.of(
+                Funko.builder().cod(UUID.randomUUID()).name("Lote-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build(),
+                Funko.builder().cod(UUID.randomUUID()).name("Lote-2").model(Model.MARVEL).price(19.99).releaseData(LocalDate.of(2021, 1, 1)).build(),
+                Funko.builder().cod(UUID.randomUUID()).name("Lote-3").model(Model.ANIME).price(29.99).releaseData(LocalDate.of(2022, 1, 1)).build()
+        );
+
+        // Act
+        List<Funko> saved = funkosRepository.saveAll(funkos).collectList().block();
+        List<Funko> found = funkosRepository.findAll().collectList().block();
+
+        // Asserts
+        assertAll(() -> assertEquals(3, saved.size()),
+                () -> assertEquals(List.of(1L, 2L, 3L), saved.stream().map(Funko::getId).toList()),
+                () -> assertEquals("Lote-2", saved.get(1).getName()),
+                () -> assertEquals(3, found.size())
+        );
+    }
+
+    @Test
+    void updateAllFunkos(){
+        // Arrange
+        Funko saved = funkosRepository.save(Funko.builder().cod(UUID.randomUUID()).name("Test").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build()).block();
+        saved.setId(1L);
+        saved.setName("Updated");
+        Funko missing = Funko.builder().id(99L).cod(UUID.randomUUID()).name("No existe").model(Model.OTROS).price(1.0).releaseData(LocalDate.of(2020, 1, 1)).build();
+
+        // Act
+        List<Boolean> updated = funkosRepository.updateAll(List.of(saved, missing)).collectList().block();
+        Optional<Funko> found = funkosRepository.findById(1L).blockOptional();
+
+        // Asserts
+        assertAll(() -> assertEquals(List.of(true, false), updated),
+                () -> assertTrue(found.isPresent()),
+                () -> assertEquals("Updated", found.get().getName())
+        );
+    }
+
+    @Test
+    void deleteAllFunkosById(){
+        // Arrange
+        funkosRepository.saveAll(List.of(
+                Funko.builder().cod(UUID.randomUUID()).name("Lote-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build(),
+                Funko.builder().cod(UUID.randomUUID()).name("Lote-2").model(Model.MARVEL).price(19.99).releaseData(LocalDate.of(2021, 1, 1)).build()
+        )).blockLast();
+
+        // Act
+        List<Funko> deleted = funkosRepository.deleteAllById(List.of(1L, 99L)).collectList().block();
+        List<Funko> found = funkosRepository.findAll().collectList().block();
+
+        // Asserts
+        assertAll(() -> assertEquals(1, deleted.size()),
+                () -> assertEquals("Lote-1", deleted.get(0).getName()),
+                () -> assertEquals(1, found.size()),
+                () -> assertEquals(2L, found.get(0).getId())
+        );
+    }
+
+    @Test
+    void findFunkosByModel(){
+        // Arrange
+        funkosRepository.saveAll(List.of(
+                Funko.builder().cod(UUID.randomUUID()).name("Marvel-1").model(Model.MARVEL).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build(),
+                Funko.builder().cod(UUID.randomUUID()).name("Disney-1").model(Model.DISNEY).price(19.99).releaseData(LocalDate.of(2021, 1, 1)).build(),
+                Funko.builder().cod(UUID.randomUUID()).name("Marvel-2").model(Model.MARVEL).price(29.99).releaseData(LocalDate.of(2022, 1, 1)).build()
+        )).blockLast();
+
+        // Act
+        List<Funko> found = funkosRepository.findByModel(Model.MARVEL).collectList().block();
+
+        // Asserts
+        assertAll(() -> assertEquals(2, found.size()),
+                () -> assertTrue(found.stream().allMatch(f -> f.getModel() == Model.MARVEL))
+        );
+    }
+
+    @Test
+    void findFunkosByReleaseDateBetween(){
+        // Arrange
+        funkosRepository.saveAll(List.of(
+                Funko.builder().cod(UUID.randomUUID()).name("2020").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 12, 31)).build(),
+                Funko.builder().cod(UUID.randomUUID()).name("2021-A").model(Model.OTROS).price(19.99).releaseData(LocalDate.of(2021, 6, 1)).build(),
+                Funko.builder().cod(UUID.randomUUID()).name("2021-B").model(Model.OTROS).price(19.99).releaseData(LocalDate.of(2021, 1, 1)).build(),
+                Funko.builder().cod(UUID.randomUUID()).name("2022").model(Model.OTROS).price(29.99).releaseData(LocalDate.of(2022, 1, 1)).build()
+        )).blockLast();
+
+        // Act
+        List<Funko> found = funkosRepository.findByReleaseDateBetween(LocalDate.of(2021, 1, 1), LocalDate.of(2021, 12, 31)).collectList().block();
+
+        // Asserts
+        assertAll(() -> assertEquals(2, found.size()),
+                () -> assertEquals("2021-B", found.get(0).getName()),
+                () -> assertEquals("2021-A", found.get(1).getName())
+        );
+    }
+
+    @Test
+    void findFunkosPage(){
+        // Arrange
+        funkosRepository.saveAll(List.of(
+                Funko.builder().cod(UUID.randomUUID()).name("Lote-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build(),
+                Funko.builder().cod(UUID.randomUUID()).name("Lote-2").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build(),
+                Funko.builder().cod(UUID.randomUUID()).name("Lote-3").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build()
+        )).blockLast();
+
+        // Act
+        List<Funko> first = funkosRepository.findPage(0L, 2).collectList().block();
+        List<Funko> second = funkosRepository.findPage(first.get(1).getId(), 2).collectList().block();
+
+        // Asserts
+        assertAll(() -> assertEquals(List.of(1L, 2L), first.stream().map(Funko::getId).toList()),
+                () -> assertEquals(List.of(3L), second.stream().map(Funko::getId).toList()),
+                () -> assertEquals("Lote-3", second.get(0).getName())
+        );
+    }
+
+    @Test
+    void findAllFunkosWithLimitAndOffset(){
+        // Arrange
+        funkosRepository.saveAll(List.of(
+                Funko.builder().cod(UUID.randomUUID()).name("Lote-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build(),
+                Funko.builder().cod(UUID.randomUUID()).name("Lote-2").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build(),
+                Funko.builder().cod(UUID.randomUUID()).name("Lote-3").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build()
+        )).blockLast();
+
+        // Act
+        List<Funko> page = funkosRepository.findAll(1, 1).collectList().block();
+
+        // Asserts
+        assertAll(() -> assertEquals(1, page.size()),
+                () -> assertEquals("Lote-2", page.get(0).getName())
+        );
+    }
+
+    @Test
+    void importAllFunkos(){
+        // Arrange
+        var funkos = Flux.range(1, 12_345)
+                .map(i -> Funko.builder().cod(UUID.randomUUID()).name("Import-" + i).model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build());
+
+        // Act
+        Long imported = funkosRepository.importAll(funkos).block();
+        List<Funko> found = funkosRepository.findAll().collectList().block();
+
+        // Asserts
+        assertAll(() -> assertEquals(12_345L, imported),
+                () -> assertEquals(1L, codIndexes()), // El indice por codigo se crea al terminar la carga
+                () -> assertEquals(12_345, found.size()),
+                () -> assertEquals(12_345, found.stream().map(Funko::getMyId).distinct().count())
+        );
+    }
+
+    @Test
+    void prepareIncrementalImportBorraCodigosRepetidos(){
+        // Arrange
+        UUID cod = UUID.randomUUID();
+        funkosRepository.saveAll(List.of(
+                Funko.builder().cod(cod).name("Original").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build(),
+                Funko.builder().cod(cod).name("Repetido").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build(),
+                Funko.builder().cod(UUID.randomUUID()).name("Otro").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build()
+        )).blockLast();
+        IdGenerator.getInstance().resetId();
+
+        // Act
+        funkosRepository.prepareIncrementalImport().block();
+        List<Funko> found = funkosRepository.findAll().collectList().block();
+        Long codIndexes = codIndexes();
+
+        // Asserts
+        assertAll(() -> assertEquals(List.of("Original", "Otro"), found.stream().map(Funko::getName).toList()),
+                () -> assertEquals(4L, IdGenerator.getInstance().getIdAndIncrement()), // Sigue despues del MyId mas alto guardado
+                () -> assertEquals(1L, codIndexes) // Solo queda el indice unico sobre el codigo
+        );
+    }
+
+    @Test
+    void mergeAllFunkos(){
+        // Arrange
+        funkosRepository.prepareIncrementalImport().block();
+        UUID igual = UUID.randomUUID();
+        UUID cambia = UUID.randomUUID();
+        UUID nuevo = UUID.randomUUID();
+        funkosRepository.mergeAll(List.of(
+                Funko.builder().cod(igual).name("Igual").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build(),
+                Funko.builder().cod(cambia).name("Antes").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build()
+        ), new ImportCheckpoint("funkos.csv", "huella-1", 100)).block();
+
+        // Act
+        Long merged = funkosRepository.mergeAll(List.of(
+                Funko.builder().cod(igual).name("Igual").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build(),
+                Funko.builder().cod(cambia).name("Después").model(Model.MARVEL).price(19.99).releaseData(LocalDate.of(2020, 1, 1)).build(),
+                Funko.builder().cod(nuevo).name("Nuevo-1").model(Model.ANIME).price(29.99).releaseData(LocalDate.of(2021, 1, 1)).build(),
+                Funko.builder().cod(nuevo).name("Nuevo-2").model(Model.ANIME).price(29.99).releaseData(LocalDate.of(2021, 1, 1)).build()
+        ), new ImportCheckpoint("funkos.csv", "huella-2", 250)).block();
+        List<Funko> found = funkosRepository.findAll().collectList().block();
+        ImportCheckpoint checkpoint = funkosRepository.findCheckpoint("funkos.csv").block();
+
+        // Asserts
+        assertAll(() -> assertEquals(2L, merged), // Solo el modificado y el nuevo
+                () -> assertEquals(3, found.size()),
+                () -> assertEquals("Después", found.get(1).getName()),
+                () -> assertEquals(Model.MARVEL, found.get(1).getModel()),
+                () -> assertEquals("Nuevo-2", found.get(2).getName()),
+                () -> assertEquals(3L, found.get(2).getMyId()), // Solo se toma MyId para los insertados
+                () -> assertEquals(new ImportCheckpoint("funkos.csv", "huella-2", 250), checkpoint)
+        );
+    }
 }
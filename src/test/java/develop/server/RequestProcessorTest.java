@@ -0,0 +1,166 @@
+package develop.server;
+
+import com.google.gson.Gson;
+import develop.common.models.Login;
+import develop.common.models.Request;
+import develop.common.models.Response;
+import develop.common.protocol.JsonCodec;
+import develop.common.protocol.WireCodec;
+import develop.server.exceptions.server.ServerException;
+import develop.server.services.services.funkos.FunkosService;
+import develop.server.services.token.TokenService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RequestProcessorTest {
+    private static final byte[] FUNKO_FRAME = {1, 2, 3};
+
+    @Mock
+    FunkosService funkosService;
+
+    private final List<Response> responses = new ArrayList<>();
+    private final List<byte[]> frames = new ArrayList<>();
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+    private final ClientConnection connection = new ClientConnection() {
+        @Override
+        public void send(Response response) {
+            responses.add(response);
+        }
+
+        @Override
+        public void sendFrame(byte[] frame) {
+            frames.add(frame);
+        }
+
+        @Override
+        public WireCodec codec() {
+            return JsonCodec.getInstance();
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @BeforeEach
+    void setup() {
+        responses.clear();
+        frames.clear();
+    }
+
+    private String login(RequestProcessor processor) throws Exception {
+        processor.process(new Request(Request.Type.LOGIN, new Gson().toJson(new Login("pepe", "pepe1234")), null, null));
+        Response response = responses.get(responses.size() - 1);
+        assertEquals(Response.Status.TOKEN, response.status());
+        return response.content();
+    }
+
+    private Request getById() {
+        return new Request(Request.Type.GETBYID, "1", null, null, 7L);
+    }
+
+    @Test
+    void sesionSinTokenTrasElLogin() throws Exception {
+        // Arrange
+        when(funkosService.findResponseById(eq(1L), any())).thenReturn(Mono.just(requestId -> FUNKO_FRAME));
+        var processor = new RequestProcessor(connection, funkosService, true, clock::get);
+        login(processor);
+
+        // Act
+        processor.process(getById());
+
+        // Assert
+        assertAll(() -> assertEquals(1, frames.size(), "No se ha respondido a la petición sin token"),
+                () -> assertArrayEquals(FUNKO_FRAME, frames.get(0))
+        );
+    }
+
+    @Test
+    void idNoValidoRespondeConError() throws Exception {
+        // Arrange
+        var processor = new RequestProcessor(connection, funkosService, true, clock::get);
+        login(processor);
+
+        // Act
+        processor.process(new Request(Request.Type.GETBYID, "uno", null, null, 7L));
+
+        // Assert
+        var response = responses.get(responses.size() - 1);
+        assertAll(() -> assertEquals(Response.Status.ERROR, response.status()),
+                () -> assertEquals(7L, response.requestId()),
+                () -> assertEquals("Id no válido: uno", response.content()),
+                () -> assertTrue(frames.isEmpty())
+        );
+    }
+
+    @Test
+    void sinModoSesionHaceFaltaElToken() throws Exception {
+        // Arrange
+        var processor = new RequestProcessor(connection, funkosService, false, clock::get);
+        login(processor);
+
+        // Act
+        var error = assertThrows(ServerException.class, () -> processor.process(getById()));
+
+        // Assert
+        assertAll(() -> assertEquals("Token no válido", error.getMessage()),
+                () -> assertEquals(Response.Status.ERROR, responses.get(responses.size() - 1).status()),
+                () -> assertTrue(frames.isEmpty())
+        );
+    }
+
+    @Test
+    void sesionExpiradaSeRechaza() throws Exception {
+        // Arrange
+        var processor = new RequestProcessor(connection, funkosService, true, clock::get);
+        var token = login(processor);
+        clock.set(TokenService.getInstance().getExpiresAt(token, Server.TOKEN_SECRET));
+
+        // Act
+        var error = assertThrows(ServerException.class, () -> processor.process(getById()));
+
+        // Assert
+        assertAll(() -> assertEquals("Token no válido", error.getMessage()),
+                () -> assertEquals(Response.Status.ERROR, responses.get(responses.size() - 1).status()),
+                () -> assertTrue(frames.isEmpty())
+        );
+    }
+
+    @Test
+    void reauthRenuevaElTokenYAlargaLaSesion() throws Exception {
+        // Arrange
+        when(funkosService.findResponseById(eq(1L), any())).thenReturn(Mono.just(requestId -> FUNKO_FRAME));
+        var processor = new RequestProcessor(connection, funkosService, true, clock::get);
+        var token = login(processor);
+        long expiresAt = TokenService.getInstance().getExpiresAt(token, Server.TOKEN_SECRET);
+        Thread.sleep(1_100); // La expiracion del token va en segundos
+
+        // Act
+        processor.process(new Request(Request.Type.REAUTH, null, null, null, 2L));
+        var renewed = responses.get(responses.size() - 1);
+        clock.set(expiresAt); // La sesion del login ya habria expirado
+        processor.process(getById());
+
+        // Assert
+        assertAll(() -> assertEquals(Response.Status.TOKEN, renewed.status()),
+                () -> assertEquals(2L, renewed.requestId()),
+                () -> assertNotEquals(token, renewed.content(), "No se ha emitido un token nuevo"),
+                () -> assertTrue(TokenService.getInstance().getExpiresAt(renewed.content(), Server.TOKEN_SECRET) > expiresAt),
+                () -> assertEquals(1, frames.size(), "La sesión no se ha alargado")
+        );
+    }
+}
@@ -0,0 +1,48 @@
+package develop.services.cache;
+
+import develop.server.services.services.cache.CacheTraceRecorder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheTraceRecorderTest {
+
+    @Test
+    void grabaLasConsultasDeVariosHilos(@TempDir Path dir) throws Exception {
+        // Arrange
+        Path file = dir.resolve("traza.txt");
+        var recorder = CacheTraceRecorder.open(file);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long first = t * 1_000L;
+            threads.add(Thread.ofVirtual().unstarted(() -> {
+                for (long key = first; key < first + 1_000; key++) {
+                    recorder.record(key);
+                }
+            }));
+        }
+
+        // Act
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        recorder.close();
+        recorder.record(-1L); // Despues de cerrar ya no se graba
+
+        // Assert
+        var lines = Files.readAllLines(file);
+        assertAll(() -> assertEquals(0, recorder.dropped()),
+                () -> assertEquals(4_000, lines.size()),
+                () -> assertEquals(4_000, lines.stream().map(Long::parseLong).collect(Collectors.toSet()).size()),
+                () -> assertFalse(lines.contains("-1"))
+        );
+    }
+}
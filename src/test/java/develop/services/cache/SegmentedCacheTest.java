@@ -0,0 +1,214 @@
+package develop.services.cache;
+
+import develop.common.utils.PropertiesReader;
+import develop.server.services.services.cache.CacheExpiry;
+import develop.server.services.services.cache.CacheSimulator;
+import develop.server.services.services.cache.EvictionPolicy;
+import develop.server.services.services.cache.SegmentedCache;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentedCacheTest {
+
+    @Test
+    void removeIfYClear() {
+        var cache = new SegmentedCache<Long, String>(1000);
+        for (long i = 0; i < 100; i++) {
+            cache.put(i, "valor-" + i).block();
+        }
+
+        int removed = cache.removeIf((key, value) -> key % 2 == 0); // Quitamos los pares de todos los segmentos
+
+        assertAll(() -> assertEquals(50, removed),
+                () -> assertEquals(50, cache.size()),
+                () -> assertNull(cache.getIfPresent(2L)),
+                () -> assertEquals("valor-3", cache.getIfPresent(3L))
+        );
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void accesoConcurrente() throws InterruptedException {
+        for (EvictionPolicy.Type policy : EvictionPolicy.Type.values()) {
+            accesoConcurrente(new SegmentedCache<>(1000, policy), 1000, policy);
+        }
+    }
+
+    @Test
+    void accesoConcurrenteConLaConfiguracionPorDefecto() throws Exception {
+        // Misma cache que crea FunkosCacheImpl con cache.properties
+        var properties = new PropertiesReader("cache.properties");
+        int maxSize = Integer.parseInt(properties.getProperty("cache.maxSize"));
+        var policy = EvictionPolicy.Type.valueOf(properties.getProperty("cache.policy"));
+        var cache = new SegmentedCache<Long, Long>(maxSize, policy, Runtime.getRuntime().availableProcessors() * 4);
+
+        assertTrue(cache.segmentCount() > 1, () -> "Un solo cerrojo para toda la cache con cache.maxSize=" + maxSize);
+        accesoConcurrente(cache, maxSize, policy);
+    }
+
+    private void accesoConcurrente(SegmentedCache<Long, Long> cache, int maxSize, EvictionPolicy.Type policy) throws InterruptedException {
+        int hilos = 8;
+        int operaciones = 500_000;
+        var errores = new ConcurrentLinkedQueue<Throwable>();
+        var inicio = new CountDownLatch(1);
+        var threads = new ArrayList<Thread>();
+
+        // Cada hilo pide sobre todo claves de un grupo de 500 muy consultadas y a veces una cualquiera de 100.000;
+        // si no esta en la cache la guarda, como hace el servicio de Funkos
+        for (int t = 0; t < hilos; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                var random = ThreadLocalRandom.current();
+                try {
+                    inicio.await();
+                    for (int i = 0; i < operaciones; i++) {
+                        long key = random.nextInt(10) < 9 ? random.nextInt(500) : 500 + random.nextInt(100_000);
+                        if (cache.get(key).blockOptional().isEmpty()) {
+                            cache.put(key, key).block();
+                        }
+                        if (i % 10_000 == 0 && cache.size() > maxSize) {
+                            throw new AssertionError("La cache supera su tamaño maximo: " + cache.size());
+                        }
+                    }
+                } catch (Throwable e) {
+                    errores.add(e);
+                }
+            }));
+        }
+        inicio.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        var stats = cache.stats();
+
+        assertAll(() -> assertTrue(errores.isEmpty(), () -> "Errores: " + errores),  // Sin ConcurrentModificationException ni mapas corruptos
+                () -> assertTrue(cache.size() <= maxSize),
+                () -> assertEquals((long) hilos * operaciones, stats.hits() + stats.misses()),  // Se cuentan todas las consultas
+                () -> assertTrue(stats.hitRate() > 0.8, () -> policy + ", tasa de aciertos: " + stats.hitRate())  // El grupo consultado se queda en la cache
+        );
+    }
+
+    @Test
+    void wTinyLfuResisteRecorridos() {
+        // Traza sintetica: la mitad de las consultas son de 100 claves populares con frecuencias desiguales y la
+        // otra mitad un recorrido de claves que no se vuelven a pedir (como un GETALL o ids inventados)
+        var random = new Random(42);
+        long[] trace = new long[200_000];
+        long nextScanKey = 1_000_000;
+        for (int i = 0; i < trace.length; i++) {
+            if (random.nextBoolean()) {
+                trace[i] = nextScanKey++;
+            } else {
+                trace[i] = (long) (100 * Math.pow(random.nextDouble(), 2)); // Las claves bajas son las mas pedidas
+            }
+        }
+
+        var lru = CacheSimulator.simulate(trace, 100, EvictionPolicy.Type.LRU);
+        var tinyLfu = CacheSimulator.simulate(trace, 100, EvictionPolicy.Type.W_TINYLFU);
+
+        // El recorrido vacia la LRU, mientras que W-TinyLFU no admite claves que solo se piden una vez
+        assertTrue(tinyLfu.hitRate() > lru.hitRate() + 0.1, () -> "LRU " + lru.hitRate() + ", W-TinyLFU " + tinyLfu.hitRate());
+    }
+
+    @Test
+    void wTinyLfuNoPasaDelTamano() {
+        var cache = new SegmentedCache<Long, Long>(100, EvictionPolicy.Type.W_TINYLFU, 1);
+        for (long i = 0; i < 10_000; i++) {
+            cache.put(i % 300, i).block();
+            cache.getIfPresent(i % 7);
+        }
+        cache.remove(3L).block();
+
+        assertAll(() -> assertTrue(cache.size() <= 100),
+                () -> assertNull(cache.getIfPresent(3L)),
+                () -> assertNotNull(cache.getIfPresent(5L))  // Una clave muy usada se queda
+        );
+    }
+
+    @Test
+    void caducaTrasGuardar() {
+        var reloj = new AtomicLong(0);
+        var cache = new SegmentedCache<Long, String>(100, EvictionPolicy.Type.LRU, 1,
+                CacheExpiry.afterWrite(Duration.ofSeconds(5)).withTicker(reloj::get));
+        cache.put(1L, "uno").block();
+
+        reloj.set(Duration.ofSeconds(4).toNanos());
+        assertEquals("uno", cache.getIfPresent(1L)); // Consultarlo no alarga su vida
+
+        reloj.set(Duration.ofSeconds(6).toNanos());
+        assertAll(() -> assertNull(cache.getIfPresent(1L)),
+                () -> assertEquals(0, cache.size()),
+                () -> assertEquals(1, cache.stats().expirations())
+        );
+    }
+
+    @Test
+    void caducaTrasUsar() {
+        var reloj = new AtomicLong(0);
+        var cache = new SegmentedCache<Long, String>(100, EvictionPolicy.Type.LRU, 1,
+                CacheExpiry.afterAccess(Duration.ofSeconds(5)).withTicker(reloj::get));
+        cache.put(1L, "uno").block();
+
+        // Mientras se use antes de 5 segundos sigue en la cache
+        for (int segundo = 4; segundo <= 40; segundo += 4) {
+            reloj.set(Duration.ofSeconds(segundo).toNanos());
+            assertEquals("uno", cache.getIfPresent(1L));
+        }
+
+        reloj.set(Duration.ofSeconds(46).toNanos());
+        assertNull(cache.getIfPresent(1L));
+    }
+
+    @Test
+    void cleanUpCaducaSinRecorrerLaCache() {
+        var reloj = new AtomicLong(0);
+        var cache = new SegmentedCache<Long, Long>(10_000, EvictionPolicy.Type.W_TINYLFU, 4,
+                CacheExpiry.afterWrite(Duration.ofMinutes(90)).withTicker(reloj::get));
+
+        // Guardamos durante una hora, asi los vencimientos caen en cubos y niveles distintos de la rueda
+        for (long i = 0; i < 3_600; i++) {
+            reloj.set(Duration.ofSeconds(i).toNanos());
+            cache.put(i, i).block();
+        }
+
+        // A los 90 minutos de empezar solo ha caducado el primero; a los 150, todos, sin haber consultado ninguno
+        reloj.set(Duration.ofMinutes(90).toNanos());
+        cache.cleanUp();
+        int quedanA90 = cache.size();
+        reloj.set(Duration.ofMinutes(150).toNanos());
+        cache.cleanUp();
+
+        assertAll(() -> assertEquals(3_599, quedanA90),
+                () -> assertEquals(0, cache.size()),
+                () -> assertEquals(3_600, cache.stats().expirations())
+        );
+    }
+
+    @Test
+    void avisaDeLosValoresQueSalen() {
+        var reloj = new AtomicLong(0);
+        List<Long> salen = new ArrayList<>();
+        var cache = new SegmentedCache<Long, String>(2, EvictionPolicy.Type.LRU, 1,
+                CacheExpiry.afterWrite(Duration.ofSeconds(5)).withTicker(reloj::get), (key, value) -> salen.add(key));
+        cache.put(1L, "uno").block();
+        cache.put(2L, "dos").block();
+        cache.put(2L, "otro dos").block(); // Reemplazar no avisa
+        cache.put(3L, "tres").block();     // Expulsa el 1
+        cache.remove(2L).block();
+        cache.removeIf((key, value) -> false);
+        reloj.set(Duration.ofSeconds(6).toNanos());
+        cache.cleanUp();                   // Caduca el 3
+
+        assertEquals(List.of(1L, 2L, 3L), salen);
+    }
+}
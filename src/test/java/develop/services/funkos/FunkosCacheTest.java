@@ -2,16 +2,21 @@ package develop.services.funkos;
 
 import develop.common.models.Funko;
 import develop.common.models.Model;
+import develop.common.protocol.JsonCodec;
+import develop.server.services.services.cache.CacheExpiry;
+import develop.server.services.services.cache.EvictionPolicy;
 import develop.server.services.services.funkos.FunkosCacheImpl;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.jupiter.api.Assertions.*;
 class FunkosCacheTest {
@@ -126,6 +131,83 @@ class FunkosCacheTest {
     }
 
 
+    @Test
+    void putFunkoExpulsaElMenosUsado() {
+        for (long id = 1; id <= 10; id++) {
+            funkoCache.put(id, Funko.builder().id(id).cod(UUID.randomUUID()).name("Test-" + id).model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build()).block();
+        }
+        funkoCache.get(1L).block(); // Usamos el primero para que no sea el menos usado
+
+        funkoCache.put(11L, Funko.builder().id(11L).cod(UUID.randomUUID()).name("Test-11").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build()).block();
+
+        assertAll(() -> assertEquals(10, funkoCache.getTamano()),  // No se pasa del tamano maximo
+                () -> assertTrue(funkoCache.get(1L).blockOptional().isPresent()),   // El usado hace poco se conserva
+                () -> assertFalse(funkoCache.get(2L).blockOptional().isPresent())   // Se expulsa el usado hace mas tiempo
+        );
+    }
+
+    @Test
+    void getFunkoPorUuid() {
+        Funko funko = Funko.builder().id(1L).cod(UUID.randomUUID()).name("Test").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+        funkoCache.put(funko.getId(), funko).block();
+
+        var encontrado = funkoCache.getByUuid(funko.getCod()).blockOptional();
+        funkoCache.remove(funko.getId()).block();
+
+        assertAll(() -> assertEquals(Optional.of(funko), encontrado),  // Se encuentra por su uuid
+                () -> assertFalse(funkoCache.getByUuid(funko.getCod()).blockOptional().isPresent()),  // Al eliminarlo ya no
+                () -> assertEquals(0, funkoCache.getTamanoIndiceUuid())  // Y el indice queda vacio
+        );
+    }
+
+    @Test
+    void putFunkoExpulsadoQuitaSuUuid() {
+        UUID[] cods = new UUID[12];
+        for (int id = 1; id <= 11; id++) {
+            cods[id] = UUID.randomUUID();
+            funkoCache.put((long) id, Funko.builder().id(id).cod(cods[id]).name("Test-" + id).model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build()).block();
+        }
+
+        assertAll(() -> assertEquals(10, funkoCache.getTamanoIndiceUuid()),  // El indice no crece mas que la cache
+                () -> assertFalse(funkoCache.getByUuid(cods[1]).blockOptional().isPresent()),  // El expulsado ya no se encuentra
+                () -> assertTrue(funkoCache.getByUuid(cods[11]).blockOptional().isPresent())
+        );
+    }
+
+    @Test
+    void getRespuestaCodificadaUnaVez() {
+        Funko funko = Funko.builder().id(1L).cod(UUID.randomUUID()).name("Test").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+        funkoCache.put(funko.getId(), funko).block();
+
+        var primera = funkoCache.getResponse(1L, JsonCodec.getInstance()).block();
+        var segunda = funkoCache.getResponse(1L, JsonCodec.getInstance()).block();
+        funkoCache.put(funko.getId(), Funko.builder().id(1L).cod(funko.getCod()).name("Cambiado").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build()).block();
+        var tercera = funkoCache.getResponse(1L, JsonCodec.getInstance()).block();
+        var contenido = JsonCodec.getInstance().decodeResponse(tercera.toFrame(1L)).content();
+
+        assertAll(() -> assertSame(primera, segunda),  // La segunda vez no se vuelve a codificar
+                () -> assertNotSame(primera, tercera),  // Al reemplazar el funko se descarta su respuesta
+                () -> assertEquals("Cambiado", JsonCodec.getInstance().decodeFunko(contenido).getName()),
+                () -> assertFalse(funkoCache.getResponse(2L, JsonCodec.getInstance()).blockOptional().isPresent())
+        );
+    }
+
+    @Test
+    void funkoCaducadoQuitaSuUuid() {
+        AtomicLong now = new AtomicLong();
+        var cache = new FunkosCacheImpl(10, EvictionPolicy.Type.LRU, CacheExpiry.afterWrite(Duration.ofMinutes(2)).withTicker(now::get), null);
+        Funko funko = Funko.builder().id(1L).cod(UUID.randomUUID()).name("Test").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+        cache.put(funko.getId(), funko).block();
+
+        now.addAndGet(Duration.ofMinutes(3).toNanos());
+        cache.get(2L).block(); // Cualquier uso del segmento avanza su rueda de temporizadores
+
+        assertAll(() -> assertEquals(0, cache.getTamanoIndiceUuid()),
+                () -> assertFalse(cache.getByUuid(funko.getCod()).blockOptional().isPresent())
+        );
+        cache.shutdown();
+    }
+
     /*
     @Test
     void clearTest() throws InterruptedException {
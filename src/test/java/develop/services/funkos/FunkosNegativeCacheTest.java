@@ -0,0 +1,54 @@
+package develop.services.funkos;
+
+import develop.server.services.services.cache.CacheExpiry;
+import develop.server.services.services.funkos.FunkosNegativeCache;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FunkosNegativeCacheTest {
+
+    @Test
+    void invalidarQuitaElIdYElUuid() {
+        var cache = new FunkosNegativeCache(100, CacheExpiry.afterWrite(Duration.ofSeconds(5)));
+        var cod = UUID.randomUUID();
+        cache.addMissingId(1L, cache.stamp());
+        cache.addMissingUuid(cod, cache.stamp());
+
+        cache.invalidate(1L, cod);
+
+        assertAll(() -> assertFalse(cache.isMissingId(1L)),
+                () -> assertFalse(cache.isMissingUuid(cod))
+        );
+    }
+
+    @Test
+    void noApuntaSiSeHaInvalidadoDuranteLaBusqueda() {
+        var cache = new FunkosNegativeCache(100, CacheExpiry.afterWrite(Duration.ofSeconds(5)));
+        long stamp = cache.stamp();   // Empieza la busqueda
+        cache.invalidate(1L, null);   // Mientras, se guarda el Funko
+
+        cache.addMissingId(1L, stamp);
+
+        assertFalse(cache.isMissingId(1L));
+    }
+
+    @Test
+    void caducaYCuentaLasConsultasEvitadas() {
+        var reloj = new AtomicLong(0);
+        var cache = new FunkosNegativeCache(100, CacheExpiry.afterWrite(Duration.ofSeconds(5)).withTicker(reloj::get));
+        cache.addMissingId(1L, cache.stamp());
+
+        boolean antes = cache.isMissingId(1L);
+        reloj.set(Duration.ofSeconds(6).toNanos());
+
+        assertAll(() -> assertTrue(antes),
+                () -> assertFalse(cache.isMissingId(1L)),
+                () -> assertEquals(1, cache.getStats().hits())
+        );
+    }
+}
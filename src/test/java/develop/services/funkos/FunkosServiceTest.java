@@ -1,9 +1,15 @@
 package develop.services.funkos;
 
+import develop.common.models.BatchResult;
 import develop.common.models.Funko;
 import develop.common.models.Model;
+import develop.common.models.Notificacion;
+import develop.common.protocol.BinaryCodec;
 import develop.server.repositories.funkos.FunkosRepository;
+import develop.server.repositories.funkos.ImportCheckpoint;
+import develop.server.services.services.funkos.FunkosCsvBatch;
 import develop.server.services.services.funkos.FunkosNotification;
+import develop.server.services.services.funkos.FunkosQuery;
 import develop.server.services.services.funkos.FunkosServiceImpl;
 import develop.server.services.services.funkos.FunkosStorage;
 import org.junit.jupiter.api.Test;
@@ -13,6 +19,8 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.UUID;
@@ -66,6 +74,53 @@ class FunkosServiceTest {
         verify(repository, times(1)).findAll();
     }
 
+    @Test
+    void findAllDesdeLaCacheDeConsultas() {
+        // Arrange
+        var funkos = List.of(
+                Funko.builder().id(1L).cod(UUID.randomUUID()).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build(),
+                Funko.builder().id(2L).cod(UUID.randomUUID()).name("Test-2").model(Model.MARVEL).price(19.99).releaseData(LocalDate.of(2021, 1, 1)).build()
+        );
+        when(repository.findAll()).thenReturn(Flux.fromIterable(funkos));
+        assertTrue(service.findSnapshot(FunkosQuery.all()).blockOptional().isEmpty(), "Hay resultado antes de consultar");
+
+        // Act
+        var first = service.findAll().collectList().block();
+        var second = service.findAll().collectList().block();
+        var snapshot = service.findSnapshot(FunkosQuery.all()).block();
+
+        // Assert
+        assertAll("findAllDesdeLaCache",
+                () -> assertEquals(funkos, first),
+                () -> assertEquals(funkos, second),
+                () -> assertEquals(funkos, snapshot.funkos()),
+                () -> assertThrows(UnsupportedOperationException.class, () -> snapshot.funkos().clear(), "El resultado guardado se puede modificar")
+        );
+
+        // La segunda consulta no llega a la base de datos
+        verify(repository, times(1)).findAll();
+    }
+
+    @Test
+    void saveInvalidaLaCacheDeConsultas() {
+        // Arrange
+        var funko = Funko.builder().id(1L).cod(UUID.randomUUID()).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+        when(repository.findByModel(Model.OTROS)).thenReturn(Flux.empty()).thenReturn(Flux.just(funko));
+        when(repository.save(funko)).thenReturn(Mono.just(funko));
+
+        // Act
+        var before = service.findAllByModel(Model.OTROS).collectList().block();
+        service.save(funko).block();
+        var after = service.findAllByModel(Model.OTROS).collectList().block();
+
+        // Assert
+        assertAll("saveInvalidaLaCacheDeConsultas",
+                () -> assertTrue(before.isEmpty()),
+                () -> assertEquals(List.of(funko), after, "Se ha servido el resultado anterior al cambio")
+        );
+        verify(repository, times(2)).findByModel(Model.OTROS);
+    }
+
     @Test
     void findAllByNombre() {
         // Arrange
@@ -117,6 +172,29 @@ class FunkosServiceTest {
         verify(repository, times(1)).findById(1L);
     }
 
+    @Test
+    void findResponseById() {
+        // Arrange
+        var codec = BinaryCodec.getInstance();
+        var funko = Funko.builder().id(1L).cod(UUID.randomUUID()).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+        when(repository.findById(1L)).thenReturn(Mono.just(funko));
+
+        // Act
+        var first = service.findResponseById(1L, codec).block();
+        var second = service.findResponseById(1L, codec).block();
+
+        // Assert
+        var response = codec.decodeResponse(second.toFrame(9L));
+        assertAll("findResponseById",
+                () -> assertEquals(funko, codec.decodeFunko(codec.decodeResponse(first.toFrame(8L)).content())),
+                () -> assertEquals(funko, codec.decodeFunko(response.content())),
+                () -> assertEquals(9L, response.requestId())
+        );
+
+        // La segunda respuesta sale de la cache
+        verify(repository, times(1)).findById(1L);
+    }
+
     @Test
     void findByIdNoExiste() {
         // Cuando se llame al método al repositorio simulamos...
@@ -132,13 +210,144 @@ class FunkosServiceTest {
         verify(repository, times(1)).findById(1L);
     }
 
+    @Test
+    void findByIdConcurrenteConsultaUnaSolaVez() {
+        // Arrange
+        var funko = Funko.builder().id(1L).cod(UUID.randomUUID()).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+
+        // La consulta tarda, asi que todas las peticiones llegan mientras esta en curso
+        when(repository.findById(1L)).thenReturn(Mono.just(funko).delayElement(Duration.ofMillis(100)));
+
+        // Act
+        var result = Flux.range(0, 50)
+                .flatMap(i -> service.findById(1L))
+                .collectList()
+                .block();
+
+        // Assert
+        assertAll("findByIdConcurrente",
+                () -> assertEquals(50, result.size(), "No han respondido todas las peticiones"),
+                () -> assertTrue(result.stream().allMatch(f -> f == funko), "Alguna peticion no ha recibido el funko")
+        );
+
+        // Una sola consulta a la base de datos, y la siguiente peticion ya sale de la cache
+        service.findById(1L).block();
+        verify(repository, times(1)).findById(1L);
+    }
+
+    @Test
+    void findByIdQueSeCruzaConUnBorradoNoLoDejaEnLaCache() {
+        // Arrange
+        var funko = Funko.builder().id(1L).cod(UUID.randomUUID()).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+        Sinks.One<Funko> row = Sinks.one();
+
+        // La primera consulta lee la fila antes del borrado pero termina despues; la siguiente ya no la encuentra
+        when(repository.findById(1L)).thenReturn(row.asMono()).thenReturn(Mono.empty());
+        when(repository.deleteAndGetById(1L)).thenReturn(Mono.just(funko));
+
+        // Act
+        var load = service.findById(1L).toFuture();
+        service.deleteById(1L).block();
+        row.tryEmitValue(funko);
+
+        // Assert
+        assertAll("findByIdCruzadoConBorrado",
+                () -> assertSame(funko, load.join(), "La consulta en curso no ha recibido el funko"),
+                () -> assertThrows(Exception.class, () -> service.findById(1L).block(), "El funko borrado sigue en la cache")
+        );
+        verify(repository, times(2)).findById(1L);
+    }
+
+    @Test
+    void findByIdNoExisteConcurrente() {
+        // Cuando se llame al método al repositorio simulamos...
+        when(repository.findById(1L)).thenReturn(Mono.<Funko>empty().delaySubscription(Duration.ofMillis(100)));
+
+        // Act
+        var errors = Flux.range(0, 20)
+                .flatMap(i -> service.findById(1L)
+                        .map(Funko::getName)
+                        .onErrorResume(e -> Mono.just(e.getMessage())))
+                .collectList()
+                .block();
+
+        // Assert
+        assertEquals(20, errors.size(), "No han respondido todas las peticiones");
+        assertTrue(errors.stream().allMatch(m -> m.contains("Funko con id 1 no encontrado")), "Alguna peticion no ha recibido el error");
+
+        // Una sola consulta a la base de datos para todas las peticiones
+        verify(repository, times(1)).findById(1L);
+    }
+
+    @Test
+    void findByIdNoExisteUsaCacheNegativa() {
+        // Cuando se llame al método al repositorio simulamos...
+        when(repository.findById(1L)).thenReturn(Mono.empty());
+
+        // Act
+        var first = assertThrows(Exception.class, () -> service.findById(1L).block());
+        var second = assertThrows(Exception.class, () -> service.findById(1L).block());
+
+        // Assert
+        assertAll("findByIdNoExisteUsaCacheNegativa",
+                () -> assertTrue(first.getMessage().contains("Funko con id 1 no encontrado")),
+                () -> assertTrue(second.getMessage().contains("Funko con id 1 no encontrado")),
+                () -> assertEquals(1, service.getNegativeCacheStats().hits(), "La segunda busqueda no ha salido de la cache negativa")
+        );
+
+        // La segunda busqueda no llega a la base de datos
+        verify(repository, times(1)).findById(1L);
+    }
+
+    @Test
+    void saveGuardaEnCacheYQuitaDeLaCacheNegativa() {
+        // Arrange
+        var cod = UUID.randomUUID();
+        var funko = Funko.builder().id(1L).cod(cod).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+        when(repository.findByUuid(cod)).thenReturn(Mono.empty());
+        when(repository.findById(1L)).thenReturn(Mono.empty());
+        when(repository.save(funko)).thenReturn(Mono.just(funko));
+        assertThrows(Exception.class, () -> service.findByUuid(cod).block());
+        assertThrows(Exception.class, () -> service.findById(1L).block());
+
+        // Act
+        service.save(funko).block();
+        var byUuid = service.findByUuid(cod).block();
+        var byId = service.findById(1L).block();
+
+        // Assert
+        assertAll("saveGuardaEnCache",
+                () -> assertEquals(funko, byUuid, "El funko guardado no se encuentra por su uuid"),
+                () -> assertEquals(funko, byId, "El funko guardado no se encuentra por su id"),
+                () -> assertEquals(0, service.getNegativeCacheStats().hits(), "Se ha usado la cache negativa tras guardar")
+        );
+
+        // Las busquedas tras guardar salen de la cache, sin volver a la base de datos
+        verify(repository, times(1)).findByUuid(cod);
+        verify(repository, times(1)).findById(1L);
+    }
+
+    @Test
+    void findByUuidDesdeLaCache() {
+        // Arrange
+        var funko = Funko.builder().id(1L).cod(UUID.randomUUID()).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+        when(repository.findById(1L)).thenReturn(Mono.just(funko));
+        service.findById(1L).block(); // Queda en la cache por su id
+
+        // Act
+        var result = service.findByUuid(funko.getCod()).block();
+
+        // Assert
+        assertEquals(funko, result, "El funko no es el esperado");
+        verify(repository, never()).findByUuid(funko.getCod());
+    }
+
     @Test
     void save(){
         // Arrange
         Funko funko = Funko.builder().id(1L).cod(UUID.randomUUID()).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
 
         // Cuando se llame al método al repositorio simulamos...
-        when(repository.findByUuid(funko.getCod())).thenReturn(Mono.just(funko));
         when(repository.save(funko)).thenReturn(Mono.just(funko));
 
         // Act
@@ -155,6 +364,7 @@ class FunkosServiceTest {
 
         // Comprobamos que se ha llamado al método del repositorio y del cache
         verify(repository, times(1)).save(funko);
+        verify(repository, never()).findByUuid(funko.getCod());
     }
 
     @Test
@@ -163,7 +373,6 @@ class FunkosServiceTest {
         var funko = Funko.builder().id(1L).cod(UUID.randomUUID()).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
 
         // Cuando se llame al método al repositorio simulamos...
-        when(repository.findById(1L)).thenReturn(Mono.just(funko));
         when(repository.update(funko)).thenReturn(Mono.just(funko));
 
         // Act
@@ -178,6 +387,25 @@ class FunkosServiceTest {
                 () -> assertEquals(LocalDate.of(2020, 1, 1), result.getReleaseData(), "La fecha de creacion del funko no es el esperado")
         );
 
+        // Comprobamos que se ha llamado al método del repositorio
+        verify(repository, times(1)).update(funko);
+        verify(repository, never()).findById(1L);
+    }
+
+    @Test
+    void updateNoExiste() {
+        // Arrange
+        var funko = Funko.builder().id(1L).cod(UUID.randomUUID()).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+
+        // Cuando se llame al método al repositorio simulamos que no se actualiza ninguna fila
+        when(repository.update(funko)).thenReturn(Mono.empty());
+
+        // Act
+        var res = assertThrows(Exception.class, () -> service.update(funko).blockOptional());
+
+        // Assert
+        assertTrue(res.getMessage().contains("Funko con id 1 no encontrado"));
+
         // Comprobamos que se ha llamado al método del repositorio
         verify(repository, times(1)).update(funko);
     }
@@ -188,8 +416,7 @@ class FunkosServiceTest {
         var funko = Funko.builder().id(1L).cod(UUID.randomUUID()).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
 
         // Cuando se llame al método al repositorio simulamos...
-        when(repository.findById(1L)).thenReturn(Mono.just(funko));
-        when(repository.deleteById(1L)).thenReturn(Mono.just(true));
+        when(repository.deleteAndGetById(1L)).thenReturn(Mono.just(funko));
 
         // Act
         var result = service.deleteById(1L).block();
@@ -198,13 +425,13 @@ class FunkosServiceTest {
         assertEquals(result, funko,"No se ha borrado el funko");
 
         // Comprobamos que se ha llamado al método del repositorio
-        verify(repository, times(1)).deleteById(1L);
+        verify(repository, times(1)).deleteAndGetById(1L);
     }
 
     @Test
     void deleteNoExiste()  {
         // Cuando se llame al método al repositorio simulamos la excepción FunkoNoEncotradoException...
-        when(repository.findById(1L)).thenReturn(Mono.empty());
+        when(repository.deleteAndGetById(1L)).thenReturn(Mono.empty());
 
         // Act
         var res = assertThrows(Exception.class, () -> service.deleteById(1L).blockOptional());
@@ -213,7 +440,7 @@ class FunkosServiceTest {
         assertTrue(res.getMessage().contains("Funko con id 1 no encontrado"));
 
         // Comprobamos que se ha llamado al método del repositorio
-        verify(repository, times(1)).findById(1L);
+        verify(repository, times(1)).deleteAndGetById(1L);
     }
 
     @Test
@@ -228,6 +455,70 @@ class FunkosServiceTest {
         verify(repository, times(1)).deleteAll();
     }
 
+    @Test
+    void importAll() {
+        // Arrange
+        var listaFunkos = List.of(
+                Funko.builder().cod(UUID.randomUUID()).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build(),
+                Funko.builder().cod(UUID.randomUUID()).model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build(),
+                Funko.builder().cod(UUID.randomUUID()).name("Test-2").model(Model.MARVEL).price(19.99).releaseData(LocalDate.of(2021, 1, 1)).build()
+        );
+
+        // Cuando se llama al metodo importCsv y a la carga masiva del repositorio...
+        when(storage.importCsv()).thenReturn(Flux.fromIterable(listaFunkos));
+        when(repository.importAll(any())).thenAnswer(invocation -> invocation.<Flux<Funko>>getArgument(0).count());
+
+        // Act
+        var total = service.importAll().block();
+
+        // Assert
+        assertEquals(2L, total, "La linea sin nombre no se tenia que importar");
+
+        // Comprobamos que se envia una sola notificacion con el resumen
+        verify(notification, times(1)).notify(argThat(n -> n.getTipo() == Notificacion.Tipo.IMPORTED && n.getCantidad() == 2));
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void importIncrementalContinuaDesdeElPuntoDeControl() {
+        // Arrange
+        var funko = Funko.builder().cod(UUID.randomUUID()).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+        var invalid = Funko.builder().cod(UUID.randomUUID()).model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+
+        // Hay un punto de control guardado y el archivo devuelve un lote nuevo...
+        when(storage.csvFileName()).thenReturn("funkos.csv");
+        when(repository.prepareIncrementalImport()).thenReturn(Mono.empty());
+        when(repository.findCheckpoint("funkos.csv")).thenReturn(Mono.just(new ImportCheckpoint("funkos.csv", "huella-100", 100)));
+        when(storage.importCsvBatches(100, "huella-100")).thenReturn(Flux.just(new FunkosCsvBatch(List.of(funko, invalid), 150, "huella-150")));
+        when(repository.mergeAll(List.of(funko), new ImportCheckpoint("funkos.csv", "huella-150", 150))).thenReturn(Mono.just(1L));
+
+        // Act
+        var total = service.importIncremental().block();
+
+        // Assert
+        assertEquals(1L, total);
+
+        // Se guarda el lote con su punto de control y se avisa una vez
+        verify(repository, times(1)).mergeAll(List.of(funko), new ImportCheckpoint("funkos.csv", "huella-150", 150));
+        verify(notification, times(1)).notify(argThat(n -> n.getTipo() == Notificacion.Tipo.IMPORTED && n.getCantidad() == 1));
+    }
+
+    @Test
+    void importIncrementalSinPuntoDeControl() {
+        // Si el archivo no se ha importado nunca se lee desde el principio
+        when(storage.csvFileName()).thenReturn("funkos.csv");
+        when(repository.prepareIncrementalImport()).thenReturn(Mono.empty());
+        when(repository.findCheckpoint("funkos.csv")).thenReturn(Mono.empty());
+        when(storage.importCsvBatches(0, "")).thenReturn(Flux.empty());
+
+        // Act
+        var total = service.importIncremental().block();
+
+        // Assert
+        assertEquals(0L, total);
+        verify(storage, times(1)).importCsvBatches(0, "");
+    }
+
     @Test
     void importFile()  {
         // Arrange
@@ -261,5 +552,102 @@ class FunkosServiceTest {
         // Comprobamos que se ha llamado al metodo del almacenamiento
         verify(storage, times(1)).importCsv();
     }
-}
 
+    @Test
+    void saveAll() {
+        // Arrange
+        var valid = Funko.builder().cod(UUID.randomUUID()).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+        var invalid = Funko.builder().cod(UUID.randomUUID()).model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+        var saved = Funko.builder().id(7L).cod(valid.getCod()).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+
+        // Cuando se llame al método al repositorio simulamos...
+        when(repository.saveAll(List.of(valid))).thenReturn(Flux.just(saved));
+
+        // Act
+        var result = service.saveAll(List.of(invalid, valid)).collectList().block();
+
+        // Assert
+        assertAll("saveAll",
+                () -> assertEquals(2, result.size(), "No hay un resultado por funko"),
+                () -> assertEquals(BatchResult.Status.INVALID, result.get(0).status(), "El funko sin nombre no es invalido"),
+                () -> assertEquals(BatchResult.Status.OK, result.get(1).status(), "El funko no se ha guardado"),
+                () -> assertEquals(7L, result.get(1).id(), "El id del funko guardado no es el esperado")
+        );
+
+        // Comprobamos que se ha llamado al método del repositorio una sola vez y que se ha notificado el guardado
+        verify(repository, times(1)).saveAll(List.of(valid));
+        verify(notification, times(1)).notify(any());
+    }
+
+    @Test
+    void updateAllQuitaDeLaCache() {
+        // Arrange
+        var stored = Funko.builder().id(1L).cod(UUID.randomUUID()).myId(7L).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+        var changes = Funko.builder().id(1L).cod(UUID.randomUUID()).name("Test-2").model(Model.MARVEL).price(19.99).releaseData(LocalDate.of(2024, 1, 1)).build();
+        var updated = Funko.builder().id(1L).cod(stored.getCod()).myId(7L).name("Test-2").model(Model.MARVEL).price(19.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+        when(repository.findById(1L)).thenReturn(Mono.just(stored)).thenReturn(Mono.just(updated));
+        when(repository.updateAll(List.of(changes))).thenReturn(Flux.just(true));
+        when(repository.findByUuid(changes.getCod())).thenReturn(Mono.empty());
+        service.findById(1L).block(); // Queda en la cache por su id
+
+        // Act
+        var result = service.updateAll(List.of(changes)).collectList().block();
+        var found = service.findById(1L).block();
+
+        // Assert
+        assertAll("updateAll",
+                () -> assertEquals(BatchResult.Status.OK, result.get(0).status(), "No se ha actualizado el funko"),
+                () -> assertEquals(updated, found, "La cache no tiene la fila de la base de datos"),
+                () -> assertThrows(Exception.class, () -> service.findByUuid(changes.getCod()).block(), "Se ha indexado el codigo enviado por el cliente")
+        );
+
+        // La busqueda tras actualizar vuelve a la base de datos
+        verify(repository, times(2)).findById(1L);
+    }
+
+    @Test
+    void deleteAllById() {
+        // Arrange
+        var funko = Funko.builder().id(1L).cod(UUID.randomUUID()).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2020, 1, 1)).build();
+
+        // Cuando se llame al método al repositorio simulamos...
+        when(repository.deleteAllById(List.of(1L, 2L))).thenReturn(Flux.just(funko));
+
+        // Act
+        var result = service.deleteAllById(List.of(1L, 2L)).collectList().block();
+
+        // Assert
+        assertAll("deleteAllById",
+                () -> assertEquals(BatchResult.Status.OK, result.get(0).status(), "No se ha borrado el funko"),
+                () -> assertEquals(BatchResult.Status.NOT_FOUND, result.get(1).status(), "El funko no existe y no se ha indicado"),
+                () -> assertTrue(result.get(1).message().contains("Funko con id 2 no encontrado"))
+        );
+
+        // Comprobamos que se ha llamado al método del repositorio
+        verify(repository, times(1)).deleteAllById(List.of(1L, 2L));
+    }
+
+    @Test
+    void findAllByReleaseYear() {
+        // Arrange
+        var funkos = List.of(
+                Funko.builder().cod(UUID.randomUUID()).name("Test-1").model(Model.OTROS).price(9.99).releaseData(LocalDate.of(2023, 5, 1)).build()
+        );
+
+        // Cuando se llame al método al repositorio simulamos...
+        when(repository.findByReleaseDateBetween(LocalDate.of(2023, 1, 1), LocalDate.of(2023, 12, 31))).thenReturn(Flux.fromIterable(funkos));
+
+        // Act
+        var result = service.findAllByReleaseYear(2023).collectList().block();
+
+        // Assert
+        assertAll("findAllByReleaseYear",
+                () -> assertEquals(1, result.size(), "El numero de funkos no es el esperado"),
+                () -> assertEquals("Test-1", result.get(0).getName(), "El funko no es el esperado")
+        );
+
+        // Comprobamos que el filtro se hace en el repositorio con el rango del año
+        verify(repository, times(1)).findByReleaseDateBetween(LocalDate.of(2023, 1, 1), LocalDate.of(2023, 12, 31));
+        verify(repository, never()).findAll();
+    }
+}
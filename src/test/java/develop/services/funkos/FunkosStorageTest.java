@@ -2,12 +2,15 @@ package develop.services.funkos;
 
 
 import develop.common.models.Funko;
+import develop.common.models.Model;
 import develop.server.services.services.funkos.FunkosStorage;
 import develop.server.services.services.funkos.FunkosStorageImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import java.sql.SQLException;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -27,4 +30,35 @@ class FunkosStorageTest {
                 () -> assertEquals(90, funkos.size() ) // Sabiendo que la lista tiene 90 elementos, comprobamos que el tamano sea el correcto
         );
     }
+
+    @Test
+    void importFunkosCsvCampos() {
+        List<Funko> funkos = funkosStorage.importCsv().collectList().block();
+        assertAll(() -> assertEquals(UUID.fromString("3b6c6f58-79b9-434b-82ab-01a2d6e4434a"), funkos.get(0).getCod()),
+                () -> assertEquals("Spiderman Delight", funkos.get(0).getName()),
+                () -> assertEquals(Model.MARVEL, funkos.get(0).getModel()),
+                () -> assertEquals(15.99, funkos.get(0).getPrice()),
+                () -> assertEquals(LocalDate.of(2022, 5, 1), funkos.get(0).getReleaseData()),
+                // Los codigos de mas de 36 caracteres se recortan y los mas cortos se leen como UUID.fromString
+                () -> assertEquals(UUID.fromString("f8f7ae42-5b01-4d3b-82ab-2d1a2d6e4434"), funkos.get(1).getCod()),
+                () -> assertEquals(UUID.fromString("b6c6f58-7c6b-434b-82ab-01b2d6e4434a"), funkos.get(4).getCod()),
+                () -> assertEquals(52.99, funkos.get(89).getPrice()),
+                () -> assertEquals(LocalDate.of(2023, 10, 5), funkos.get(89).getReleaseData())
+        );
+    }
+
+    @Test
+    void importFunkosCsvBatchesDesdeElPuntoDeControl() {
+        var batches = funkosStorage.importCsvBatches(0, "").collectList().block();
+        var last = batches.get(batches.size() - 1);
+
+        // Con la huella correcta no queda nada por leer; con otra se vuelve a leer el archivo entero
+        var resumed = funkosStorage.importCsvBatches(last.endOffset(), last.fingerprint()).collectList().block();
+        var changed = funkosStorage.importCsvBatches(last.endOffset(), "otra-huella").collectList().block();
+        assertAll(() -> assertEquals(90, batches.stream().mapToInt(b -> b.funkos().size()).sum()),
+                () -> assertTrue(resumed.isEmpty()),
+                () -> assertEquals(90, changed.stream().mapToInt(b -> b.funkos().size()).sum()),
+                () -> assertEquals(last.fingerprint(), changed.get(changed.size() - 1).fingerprint())
+        );
+    }
 }
@@ -0,0 +1,71 @@
+package develop.services.token;
+
+import develop.common.models.User;
+import develop.server.repositories.users.UsersRepository;
+import develop.server.services.token.TokenService;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenServiceTest {
+    private static final String SECRET = "SecretoDePrueba";
+    TokenService tokenService = TokenService.getInstance();
+    User pepe = UsersRepository.getInstance().findByByUsername("pepe").orElseThrow();
+
+    @Test
+    void resolveUser_validToken() {
+        // Arrange
+        String token = tokenService.createToken(pepe, SECRET, 60_000);
+
+        // Act
+        Optional<User> first = tokenService.resolveUser(token, SECRET);
+        Optional<User> second = tokenService.resolveUser(token, SECRET); // Ya verificado, sale de la cache
+
+        assertAll(
+                () -> assertTrue(first.isPresent(), "El usuario no se ha resuelto"),
+                () -> assertEquals(pepe, first.get()),
+                () -> assertSame(first.get(), second.get(), "El token verificado no se ha reutilizado"),
+                () -> assertTrue(tokenService.verifyToken(token, SECRET, pepe)),
+                () -> assertEquals("pepe", tokenService.getClaims(token, SECRET).get("username").asString())
+        );
+    }
+
+    @Test
+    void resolveUser_wrongSecret() {
+        // Arrange
+        String token = tokenService.createToken(pepe, SECRET, 60_000);
+        tokenService.resolveUser(token, SECRET);
+
+        // Act
+        Optional<User> user = tokenService.resolveUser(token, "OtroSecreto");
+
+        assertAll(
+                () -> assertTrue(user.isEmpty(), "Se ha aceptado un token firmado con otro secreto"),
+                () -> assertFalse(tokenService.verifyToken(token, "OtroSecreto"))
+        );
+    }
+
+    @Test
+    void resolveUser_expiredToken() throws InterruptedException {
+        // Arrange
+        String token = tokenService.createToken(pepe, SECRET, 1_000);
+        assertTrue(tokenService.resolveUser(token, SECRET).isPresent());
+        long expiresAt = tokenService.getExpiresAt(token, SECRET);
+
+        // Act
+        Thread.sleep(Math.max(0, expiresAt - System.currentTimeMillis()) + 50);
+        Optional<User> user = tokenService.resolveUser(token, SECRET);
+
+        assertTrue(user.isEmpty(), "El token guardado no ha expirado");
+    }
+
+    @Test
+    void resolveUser_invalidToken() {
+        assertAll(
+                () -> assertTrue(tokenService.resolveUser("no.es.un.token", SECRET).isEmpty()),
+                () -> assertTrue(tokenService.resolveUser(null, SECRET).isEmpty())
+        );
+    }
+}